@@ -0,0 +1,154 @@
+package jason.asSemantics.epistemic;
+
+import jason.asSemantics.Agent;
+import jason.asSemantics.Unifier;
+import jason.asSemantics.epistemic.reasoner.HttpEpistemicReasoner;
+import jason.asSemantics.epistemic.reasoner.ReasonerConfiguration;
+import jason.asSemantics.epistemic.reasoner.StandInReasoner;
+import jason.asSemantics.epistemic.reasoner.formula.Formula;
+import jason.asSyntax.ASSyntax;
+import jason.asSyntax.Literal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the epistemic pipeline of an agent against the {@link StandInReasoner}: constraint generation,
+ * model creation and the logical consequences of epistemic literals.
+ * <p>
+ * The agent program has <i>rangeSize</i> locations, some of them blocked by constraint rules whose bodies
+ * are chains of <i>ruleDepth</i> rules.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EpistemicAgentBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Program {
+        @Param({"100", "1000"})
+        public int rangeSize;
+
+        @Param({"1", "4"})
+        public int ruleDepth;
+
+        @Param({"1", "256"})
+        public int batchSize;
+
+        @Param({"0"})
+        public long latencyMillis;
+
+        @Param({"false", "true"})
+        public boolean tableRewrites;
+
+        private StandInReasoner standIn;
+        private String source;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            standIn = new StandInReasoner(latencyMillis);
+            ReasonerConfiguration.setInstance(new ReasonerConfiguration(standIn.getHost()) {
+                @Override
+                public int getEvaluationBatchSize() {
+                    return batchSize;
+                }
+
+                // valuations are not cached, so that the consequences are evaluated by the reasoner
+                @Override
+                public int getQueryCacheSize() {
+                    return 0;
+                }
+
+                @Override
+                public boolean isTableRewrites() {
+                    return tableRewrites;
+                }
+            });
+            source = program(rangeSize, ruleDepth);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            standIn.close();
+            HttpEpistemicReasoner.closeSharedClient();
+        }
+
+        Agent newAgent() throws Exception {
+            Agent ag = new Agent();
+            ag.initAg();
+            ag.load(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), "benchmark");
+            return ag;
+        }
+
+        private static String program(int rangeSize, int ruleDepth) {
+            StringBuilder src = new StringBuilder();
+            for (int i = 1; i <= rangeSize; i++) {
+                src.append("range(loc(").append(i).append(")).\n");
+                if (i % 3 == 0)
+                    src.append("wall(").append(i).append(").\n");
+            }
+            src.append("blocked0(X) :- wall(X).\n");
+            for (int d = 1; d < ruleDepth; d++)
+                src.append("blocked").append(d).append("(X) :- blocked").append(d - 1).append("(X).\n");
+            src.append("~loc(X) :- blocked").append(ruleDepth - 1).append("(X).\n");
+            return src.toString();
+        }
+    }
+
+    /** A new agent for each invocation, as the model of an agent is only created once */
+    @State(Scope.Thread)
+    public static class NewAgent {
+        Agent ag;
+
+        @Setup(Level.Invocation)
+        public void setUp(Program program) throws Exception {
+            ag = program.newAgent();
+        }
+    }
+
+    /** An agent with a created model */
+    @State(Scope.Thread)
+    public static class ModelAgent {
+        Agent ag;
+
+        @Setup(Level.Trial)
+        public void setUp(Program program) throws Exception {
+            ag = program.newAgent();
+            ag.getEpistemic().modelCreateSem();
+        }
+    }
+
+    @Benchmark
+    public void constraintGeneration(NewAgent agent, Blackhole bh) {
+        for (Formula f : agent.ag.getEpistemic().getModelCreationConstraints())
+            bh.consume(f);
+    }
+
+    @Benchmark
+    public void modelCreation(NewAgent agent) {
+        agent.ag.getEpistemic().modelCreateSem();
+    }
+
+    @Benchmark
+    public int possibleLocations(ModelAgent agent) {
+        Literal poss = ASSyntax.createLiteral("poss", ASSyntax.createLiteral("loc", ASSyntax.createVar("X")));
+        int count = 0;
+        var it = poss.logicalConsequence(agent.ag, new Unifier());
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public boolean firstPossibleLocation(ModelAgent agent) {
+        Literal poss = ASSyntax.createLiteral("poss", ASSyntax.createLiteral("loc", ASSyntax.createVar("X")));
+        return poss.logicalConsequence(agent.ag, new Unifier()).hasNext();
+    }
+}
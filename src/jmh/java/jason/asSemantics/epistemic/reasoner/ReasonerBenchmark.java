@@ -0,0 +1,147 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import com.google.gson.JsonObject;
+import jason.asSemantics.epistemic.DELEvent;
+import jason.asSemantics.epistemic.DELEventModel;
+import jason.asSemantics.epistemic.metrics.EpistemicMetrics;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicModality;
+import jason.asSemantics.epistemic.reasoner.formula.Formula;
+import jason.asSemantics.epistemic.reasoner.formula.FormulaFactory;
+import jason.asSemantics.epistemic.reasoner.formula.ModalPropFormula;
+import jason.asSyntax.ASSyntax;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the phases of a request to the HTTP reasoner, against the {@link StandInReasoner}:
+ * building the request body (JSON or binary), the round trip with the reasoner, and the mapping of the
+ * response to formula valuations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReasonerBenchmark {
+
+    /** The stand-in reasoner, and an HTTP reasoner connected to it */
+    @State(Scope.Benchmark)
+    public static class Connection {
+        @Param({"0", "1"})
+        public long latencyMillis;
+
+        @Param({"json", "binary"})
+        public String wireFormat;
+
+        HttpEpistemicReasoner reasoner;
+        private StandInReasoner standIn;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            standIn = new StandInReasoner(latencyMillis);
+            var format = "binary".equals(wireFormat) ? ReasonerConfiguration.WireFormat.BINARY : ReasonerConfiguration.WireFormat.JSON;
+            ReasonerConfiguration.setInstance(new ReasonerConfiguration(standIn.getHost()) {
+                @Override
+                public WireFormat getWireFormat() {
+                    return format;
+                }
+            });
+            reasoner = new HttpEpistemicReasoner(new EpistemicMetrics("benchmark"));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            standIn.close();
+            HttpEpistemicReasoner.closeSharedClient();
+        }
+    }
+
+    /** The range constraints of <i>rangeSize</i> locations, each location excluding the next one */
+    @State(Scope.Benchmark)
+    public static class Constraints {
+        @Param({"100", "10000"})
+        public int rangeSize;
+
+        List<Formula> constraints;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            constraints = new ArrayList<>();
+            for (int i = 1; i <= rangeSize; i++) {
+                Formula loc = location(i);
+                constraints.add(FormulaFactory.or(loc, FormulaFactory.not(loc)));
+                if (i < rangeSize)
+                    constraints.add(FormulaFactory.implies(loc, FormulaFactory.not(location(i + 1))));
+            }
+        }
+    }
+
+    /** A batch of <i>batchSize</i> formulas to evaluate, and the response of the reasoner */
+    @State(Scope.Benchmark)
+    public static class Batch {
+        @Param({"1", "16", "256"})
+        public int batchSize;
+
+        List<ModalPropFormula> formulas;
+        JsonObject response;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            formulas = new ArrayList<>();
+            JsonObject valuations = new JsonObject();
+            for (int i = 0; i < batchSize; i++) {
+                formulas.add(FormulaFactory.modal(EpistemicModality.POSSIBLE, location(i + 1)));
+                valuations.addProperty(String.valueOf(i), i % 2 == 0);
+            }
+            response = new JsonObject();
+            response.add("result", valuations);
+        }
+    }
+
+    private static Formula location(int i) {
+        return ASSyntax.createLiteral("loc", ASSyntax.createNumber(i)).toPropFormula();
+    }
+
+    @Benchmark
+    public void buildJsonConstraints(Constraints c) throws IOException {
+        HttpEpistemicReasoner.writeConstraints(c.constraints, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public BitSet buildBinaryConstraints(Constraints c) throws IOException {
+        return new BinaryFormulaEncoder().write(c.constraints, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public boolean createModel(Connection connection, Constraints c) {
+        return connection.reasoner.createModel(c.constraints);
+    }
+
+    @Benchmark
+    public List<Boolean> evaluateBatch(Connection connection, Batch batch) {
+        return connection.reasoner.evaluateModalFormulas(batch.formulas);
+    }
+
+    @Benchmark
+    public List<Boolean> mapBatchResults(Batch batch) {
+        return HttpEpistemicReasoner.mapBatchResults(batch.response, batch.batchSize);
+    }
+
+    @Benchmark
+    public boolean applyEventModel(Connection connection) {
+        return connection.reasoner.applyEventModel(new DELEventModel(Set.of(new DELEvent("announce", location(1)))));
+    }
+
+    @Benchmark
+    public List<Boolean> applyEventModels(Connection connection) {
+        DELEventModel announce = new DELEventModel(Set.of(new DELEvent("announce", location(1))));
+        return connection.reasoner.applyEventModels(List.of(announce, announce));
+    }
+}
@@ -0,0 +1,176 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * A lightweight embedded stand-in for the external reasoner, used to benchmark the client side of the
+ * HTTP reasoner without launching the reasoner.
+ * <p>
+ * It implements the endpoints used by {@link HttpEpistemicReasoner}, accepting both wire formats. Request
+ * bodies are read completely, but formulas are not evaluated: every formula is true and every event model
+ * is applicable. Each request is answered after the configured latency, which stands for the model
+ * checking time of the reasoner.
+ */
+public class StandInReasoner implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+
+    /**
+     * Starts the stand-in on an ephemeral port of the loopback interface.
+     *
+     * @param latencyMillis the time taken to answer each request.
+     */
+    public StandInReasoner(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stand-in-reasoner");
+            t.setDaemon(true);
+            return t;
+        });
+
+        server.createContext("/api/model", exchange -> handle(exchange, request -> success(true)));
+        server.createContext("/api/evaluate", exchange -> handle(exchange, this::evaluate));
+        server.createContext("/api/single-evaluate", exchange -> handle(exchange, request -> result(true)));
+        server.createContext("/api/apply-event", exchange -> handle(exchange, request -> success(true)));
+        server.createContext("/api/apply-events", exchange -> handle(exchange, this::applyEvents));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the host to configure the HTTP reasoner with, e.g. with {@link ReasonerConfiguration#setInstance}.
+     */
+    public String getHost() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange, Function<Request, JsonObject> answer) throws IOException {
+        try {
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            byte[] body = exchange.getRequestBody().readAllBytes();
+
+            JsonObject response;
+            try {
+                response = answer.apply(new Request(contentType, body));
+            } catch (RuntimeException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            if (latencyMillis > 0)
+                Thread.sleep(latencyMillis);
+
+            byte[] content = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private JsonObject evaluate(Request request) {
+        JsonObject valuations = new JsonObject();
+        if (request.isBinary()) {
+            // formulas of binary messages are identified by their position
+            int count = binaryFormulaCount(request.body);
+            for (int i = 0; i < count; i++)
+                valuations.addProperty(String.valueOf(i), true);
+        } else {
+            for (var formula : request.json().getAsJsonArray("formulas"))
+                valuations.addProperty(formula.getAsJsonObject().get("id").getAsString(), true);
+        }
+
+        JsonObject response = new JsonObject();
+        response.add("result", valuations);
+        return response;
+    }
+
+    private JsonObject applyEvents(Request request) {
+        JsonArray success = new JsonArray();
+        for (int i = request.json().getAsJsonArray("eventModels").size(); i > 0; i--)
+            success.add(true);
+
+        JsonObject response = new JsonObject();
+        response.add("success", success);
+        return response;
+    }
+
+    /**
+     * @return the number of formulas of a message encoded by {@link BinaryFormulaEncoder}.
+     */
+    static int binaryFormulaCount(byte[] message) {
+        ByteArrayInputStream in = new ByteArrayInputStream(message);
+        // magic and version
+        in.skip(4);
+        return readVarInt(in);
+    }
+
+    private static int readVarInt(ByteArrayInputStream in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0)
+                throw new IllegalArgumentException("Truncated binary message");
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+    }
+
+    private static JsonObject success(boolean success) {
+        JsonObject response = new JsonObject();
+        response.addProperty("success", success);
+        return response;
+    }
+
+    private static JsonObject result(boolean result) {
+        JsonObject response = new JsonObject();
+        response.addProperty("result", result);
+        return response;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static final class Request {
+        final String contentType;
+        final byte[] body;
+
+        Request(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        boolean isBinary() {
+            return contentType != null && contentType.startsWith(BinaryFormulaEncoder.CONTENT_TYPE);
+        }
+
+        JsonObject json() {
+            return new JsonParser().parse(new String(body, StandardCharsets.UTF_8)).getAsJsonObject();
+        }
+    }
+}
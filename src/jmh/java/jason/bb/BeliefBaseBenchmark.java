@@ -0,0 +1,119 @@
+package jason.bb;
+
+import jason.asSemantics.Unifier;
+import jason.asSyntax.ASSyntax;
+import jason.asSyntax.Literal;
+import jason.asSyntax.PredicateIndicator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the belief base with many beliefs of the same predicate indicator (<code>pos(X,Y)</code>) and
+ * high churn: a belief is removed and added again, as when percepts change.
+ * <p>
+ * The <i>deque</i> benchmarks run the same operations on the structure of the previous belief entries (a
+ * deque next to a map, where removing scans the deque), for comparison.
+ * <p>
+ * The <i>query</i> benchmark gets the candidate beliefs of <code>pos(X,Y)</code> with X bound, which use the
+ * index of the first argument.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeliefBaseBenchmark {
+
+    @State(Scope.Thread)
+    public static class Beliefs {
+        @Param({"1000", "100000"})
+        public int beliefs;
+
+        DefaultBeliefBase bb;
+        Literal[] literals;
+        Literal query = ASSyntax.createLiteral("pos", ASSyntax.createVar("X"), ASSyntax.createVar("Y"));
+        int next = 0;
+
+        // the structure of the previous belief entries
+        Deque<Literal> deque;
+        Map<StructureWrapperForLiteral, Literal> map;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            bb = new DefaultBeliefBase();
+            deque = new LinkedBlockingDeque<>();
+            map = new ConcurrentHashMap<>();
+            literals = new Literal[beliefs];
+            for (int i = 0; i < beliefs; i++) {
+                literals[i] = ASSyntax.createLiteral("pos", ASSyntax.createNumber(i % 1000), ASSyntax.createNumber(i / 1000));
+                literals[i].addSource(BeliefBase.ASelf);
+                bb.add(literals[i]);
+
+                Literal l = literals[i].copy();
+                map.put(new StructureWrapperForLiteral(l), l);
+                deque.addFirst(l);
+            }
+        }
+
+        /** @return the beliefs in the order they were added, so each one is removed when it is the oldest */
+        Literal nextBelief() {
+            Literal l = literals[next];
+            next = (next + 1) % literals.length;
+            return l;
+        }
+    }
+
+    @Benchmark
+    public boolean removeAndAdd(Beliefs b) {
+        Literal l = b.nextBelief();
+        b.bb.remove(l);
+        return b.bb.add(l);
+    }
+
+    @Benchmark
+    public Literal contains(Beliefs b) {
+        return b.bb.contains(b.nextBelief());
+    }
+
+    @Benchmark
+    public void iterate(Beliefs b, Blackhole bh) {
+        Iterator<Literal> i = b.bb.getCandidateBeliefs(new PredicateIndicator("pos", 2));
+        while (i.hasNext())
+            bh.consume(i.next());
+    }
+
+    @Benchmark
+    public void query(Beliefs b, Blackhole bh) {
+        Unifier u = new Unifier();
+        u.unifies(ASSyntax.createVar("X"), b.nextBelief().getTerm(0));
+        Iterator<Literal> i = b.bb.getCandidateBeliefs(b.query, u);
+        while (i.hasNext())
+            bh.consume(i.next());
+    }
+
+    @Benchmark
+    public boolean dequeRemoveAndAdd(Beliefs b) {
+        Literal l = b.nextBelief();
+        Literal inMap = b.map.remove(new StructureWrapperForLiteral(l));
+        if (inMap != null)
+            b.deque.remove(inMap);
+
+        Literal copy = l.copy();
+        b.map.put(new StructureWrapperForLiteral(copy), copy);
+        b.deque.addFirst(copy);
+        return inMap != null;
+    }
+
+    @Benchmark
+    public void dequeIterate(Beliefs b, Blackhole bh) {
+        for (Literal l : b.deque)
+            bh.consume(l);
+    }
+}
@@ -13,6 +13,7 @@ import jason.asSemantics.Message;
 import jason.asSemantics.TransitionSystem;
 import jason.asSyntax.Literal;
 import jason.infra.local.LocalAgArch;
+import jason.profiling.QueryProfiling;
 import jason.runtime.RuntimeServices;
 
 /**
@@ -121,9 +122,9 @@ public class AgArch implements Comparable<AgArch>, Serializable {
      * when a new reasoning cycle is starting
      */
     public void reasoningCycleStarting() {
-        //QueryProfiling q = getTS().getAg().getQueryProfiling();
-        //if (q != null)
-        //    q.setNbReasoningCycles(getCycleNumber());
+        QueryProfiling q = getTS().getAg().getQueryProfiling();
+        if (q != null)
+            q.setNbReasoningCycles(getCycleNumber());
         if (successor != null)
             successor.reasoningCycleStarting();
     }
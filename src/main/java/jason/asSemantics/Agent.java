@@ -57,6 +57,7 @@ import jason.bb.StructureWrapperForLiteral;
 import jason.functions.Count;
 import jason.functions.RuleToFunction;
 import jason.mas2j.ClassParameters;
+import jason.profiling.QueryProfiling;
 import jason.runtime.Settings;
 import jason.runtime.SourcePath;
 import jason.util.Config;
@@ -89,9 +90,8 @@ public class Agent implements Serializable, ToDOM {
 
     private static ScheduledExecutorService scheduler = null;
 
-    //private QueryCache qCache = null;
-    //private QueryCacheSimple qCache = null;
-    //private QueryProfiling   qProfiling = null;
+    private transient QueryCacheSimple qCache = null;
+    private transient QueryProfiling   qProfiling = null;
 
     protected transient Logger logger = Logger.getLogger(Agent.class.getName());
 
@@ -151,9 +151,11 @@ public class Agent implements Serializable, ToDOM {
         // Create epistemic extension
         epistemic = new EpistemicExtension(this.getTS());
 
-        //if (ts.getSettings().hasQueryCache()) qCache = new QueryCache(this);
-        //if (ts.getSettings().hasQueryProfiling()) qProfiling = new QueryProfiling(this);
-        //if (ts.getSettings().hasQueryCache())     qCache = new QueryCacheSimple(this, qProfiling);
+        if (qProfiling == null && ts.getSettings().hasQueryProfiling()) qProfiling = new QueryProfiling(this);
+        if (qCache == null && ts.getSettings().hasQueryCache()) {
+            qCache = new QueryCacheSimple(this, qProfiling);
+            bb = new QueryCacheBB(bb, qCache); // the changes in the BB invalidate the cache
+        }
 
         if (! "false".equals(Config.get().getProperty(Config.START_WEB_MI))) MindInspectorWeb.get().registerAg(this);
 
@@ -338,8 +340,8 @@ public class Agent implements Serializable, ToDOM {
             bb.stop();
         }
 
-        //if (qProfiling != null)
-        //    qProfiling.show();
+        if (qProfiling != null)
+            qProfiling.show();
 
         //if (scheduler != null)
         //    scheduler.shutdownNow();
@@ -780,6 +782,10 @@ public class Agent implements Serializable, ToDOM {
     }
 
     public void setBB(BeliefBase bb) {
+        if (qCache != null && !(bb instanceof QueryCacheBB)) {
+            qCache.reset();
+            bb = new QueryCacheBB(bb, qCache);
+        }
         this.bb = bb;
     }
     public BeliefBase getBB() {
@@ -820,7 +826,7 @@ public class Agent implements Serializable, ToDOM {
         // stat
         int adds = 0;
         int dels = 0;
-        //long startTime = qProfiling == null ? 0 : System.nanoTime();
+        long startTime = qProfiling == null ? 0 : System.nanoTime();
 
         // to copy percepts allows the use of contains below
         Set<StructureWrapperForLiteral> perW = new HashSet<>();
@@ -864,22 +870,19 @@ public class Agent implements Serializable, ToDOM {
             }
         }
 
-        //if (qCache != null)
-        //    qCache.reset();
-        //if (qProfiling != null)
-        //    qProfiling.newUpdateCycle(getTS().getUserAgArch().getCycleNumber(), adds+dels, System.nanoTime()-startTime);
+        if (qProfiling != null)
+            qProfiling.newUpdateCycle(getTS().getAgArch().getCycleNumber(), adds+dels, System.nanoTime()-startTime);
         return adds + dels;
     }
 
 
-    /*
+    /** @return the query cache of the agent, or null if it is not enabled (qcache option) */
     public QueryCacheSimple getQueryCache() {
         return qCache;
     }
     public QueryProfiling getQueryProfiling() {
         return qProfiling;
     }
-    */
 
     /**
      * Returns true if BB contains the literal <i>bel</i> (using unification to test).
@@ -907,20 +910,29 @@ public class Agent implements Serializable, ToDOM {
      * The unifier <i>un</i> is updated by the method.
      */
     public Literal findBel(Literal bel, Unifier un) {
+        BeliefBase snapshot = bb.getSnapshot();
+        if (snapshot != null) {
+            // a consistent version of the BB, no need to lock
+            return findBel(snapshot, bel, un);
+        }
         synchronized (bb.getLock()) {
-            Iterator<Literal> relB = bb.getCandidateBeliefs(bel, un);
-            if (relB != null) {
-                while (relB.hasNext()) {
-                    Literal b = relB.next();
-
-                    // recall that order is important because of annotations!
-                    if (!b.isRule() && un.unifies(bel, b)) {
-                        return b;
-                    }
+            return findBel(bb, bel, un);
+        }
+    }
+
+    private static Literal findBel(BeliefBase bb, Literal bel, Unifier un) {
+        Iterator<Literal> relB = bb.getCandidateBeliefs(bel, un);
+        if (relB != null) {
+            while (relB.hasNext()) {
+                Literal b = relB.next();
+
+                // recall that order is important because of annotations!
+                if (!b.isRule() && un.unifies(bel, b)) {
+                    return b;
                 }
             }
-            return null;
         }
+        return null;
     }
 
 
@@ -1163,8 +1175,19 @@ public class Agent implements Serializable, ToDOM {
         return document;
     }
 
+    /**
+     * @return true if the valuation of some predicates of this agent is managed by its epistemic model.
+     */
     public boolean isEpistemic() {
-        return true;
+        return epistemic != null && epistemic.hasManagedPredicates();
+    }
+
+    /**
+     * @return true if the logical consequences of the literal have to be evaluated by the epistemic model,
+     * false if they can be found by unification with the belief base.
+     */
+    public boolean isEpistemicallyManaged(Literal l) {
+        return epistemic != null && epistemic.isManaged(l);
     }
 
     public EpistemicExtension getEpistemic() {
@@ -0,0 +1,103 @@
+package jason.asSemantics;
+
+import java.util.Iterator;
+
+import jason.asSyntax.Literal;
+import jason.asSyntax.PredicateIndicator;
+import jason.bb.BeliefBase;
+import jason.bb.ChainBBAdapter;
+
+/**
+ * Belief base of the agents with a query cache: changes of the beliefs and rules are forwarded to the
+ * agent's belief base and drop the cached queries that depend on them.
+ */
+class QueryCacheBB extends ChainBBAdapter {
+
+    private final QueryCacheSimple qCache;
+
+    QueryCacheBB(BeliefBase bb, QueryCacheSimple qCache) {
+        super(bb);
+        this.qCache = qCache;
+    }
+
+    @Override
+    public boolean add(Literal l) {
+        boolean r = super.add(l);
+        qCache.invalidate(l.getPredicateIndicator());
+        return r;
+    }
+
+    @Override
+    public boolean add(int index, Literal l) {
+        boolean r = super.add(index, l);
+        qCache.invalidate(l.getPredicateIndicator());
+        return r;
+    }
+
+    @Override
+    public boolean remove(Literal l) {
+        boolean r = super.remove(l);
+        if (r)
+            qCache.invalidate(l.getPredicateIndicator());
+        return r;
+    }
+
+    @Override
+    public boolean abolish(PredicateIndicator pi) {
+        boolean r = super.abolish(pi);
+        qCache.invalidate(pi);
+        return r;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        qCache.reset();
+    }
+
+    @Override
+    public Iterator<Literal> iterator() {
+        return wrap(super.iterator());
+    }
+
+    @Override
+    public Iterator<Literal> getCandidateBeliefs(PredicateIndicator pi) {
+        return wrap(super.getCandidateBeliefs(pi));
+    }
+
+    @Override
+    public Iterator<Literal> getCandidateBeliefs(Literal l, Unifier u) {
+        return wrap(super.getCandidateBeliefs(l, u));
+    }
+
+    @Override
+    public Iterator<Literal> getPercepts() {
+        return wrap(super.getPercepts());
+    }
+
+    /** @return an iterator that drops the cached queries of the beliefs removed by it */
+    private Iterator<Literal> wrap(final Iterator<Literal> i) {
+        if (i == null)
+            return null;
+        return new Iterator<Literal>() {
+            Literal last;
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+            public Literal next() {
+                last = i.next();
+                return last;
+            }
+            public void remove() {
+                i.remove();
+                qCache.invalidate(last.getPredicateIndicator());
+            }
+        };
+    }
+
+    /** the clone is the agent's belief base, the clone of the agent has its own cache */
+    @Override
+    public BeliefBase clone() {
+        return nextBB.clone();
+    }
+}
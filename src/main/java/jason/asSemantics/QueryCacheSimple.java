@@ -1,43 +1,282 @@
 package jason.asSemantics;
 
+import jason.asSyntax.ArithExpr;
+import jason.asSyntax.ArithFunctionTerm;
+import jason.asSyntax.InternalActionLiteral;
 import jason.asSyntax.Literal;
+import jason.asSyntax.LogExpr;
+import jason.asSyntax.LogicalFormula;
+import jason.asSyntax.PredicateIndicator;
+import jason.asSyntax.Rule;
+import jason.asSyntax.Structure;
+import jason.asSyntax.Term;
+import jason.asSyntax.VarTerm;
 import jason.profiling.QueryProfiling;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
+/**
+ * Cache of the answers of the queries evaluated by unification with the belief base (see
+ * {@link Literal#logicalConsequence(Agent, Unifier)}), enabled by the <code>qcache</code> option of the agent.
+ * <p>
+ * The answers of a query (the literal with the bindings of its unifier, its variables renamed) are stored
+ * once all of them were consumed, together with the predicate indicators the query depends on: its own, and
+ * those of the literals evaluated by the rules used to answer it. A change in the belief base
+ * (add, remove, abolish) of a predicate indicator drops only the entries that depend on it.
+ * <p>
+ * Queries are not cached if they have annotations, if some answer is not ground, or if they use rules with
+ * internal actions, functions or epistemic literals, whose values do not depend on the belief base only.
+ */
 public class QueryCacheSimple {
 
+    // queries being evaluated by the current thread, the innermost first
+    private static final ThreadLocal<Deque<Recording>> evaluating = ThreadLocal.withInitial(ArrayDeque::new);
+
     private QueryProfiling prof;
 
-    private Map<Literal, List<Unifier>> cache = null;
+    private Map<String, Entry> cache = null;
+    private Map<PredicateIndicator, Set<String>> dependents = null;
+    private long version = 0; // incremented by each change, answers found during a change are not stored
     protected Logger logger = null;
 
     public QueryCacheSimple(Agent ag, QueryProfiling p) {
         this.prof = p;
-        logger    = Logger.getLogger(QueryCacheSimple.class.getName()+"-"+ag.getTS().getAgArch().getAgName());
-        cache     = new HashMap<Literal,List<Unifier>>();
+        logger     = Logger.getLogger(QueryCacheSimple.class.getName()+"-"+ag.getTS().getAgArch().getAgName());
+        cache      = new HashMap<>();
+        dependents = new HashMap<>();
     }
 
-    public void reset() {
+    public synchronized void reset() {
         cache.clear();
+        dependents.clear();
+        version++;
+    }
+
+    /** drops the queries that depend on the beliefs or rules of pi */
+    public synchronized void invalidate(PredicateIndicator pi) {
+        version++;
+        Set<String> keys = dependents.remove(pi);
+        if (keys == null)
+            return;
+        for (String k: keys) {
+            Entry e = cache.remove(k);
+            if (e == null)
+                continue;
+            for (PredicateIndicator d: e.deps) {
+                Set<String> s = dependents.get(d);
+                if (s != null) {
+                    s.remove(k);
+                    if (s.isEmpty())
+                        dependents.remove(d);
+                }
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return cache.size();
     }
 
-    public Iterator<Unifier> getCache(final Literal f) {
-        List<Unifier> l = cache.get(f);
-        if (l == null)
+    /**
+     * @return the answers of the query in the cache, or null if they are not cached
+     */
+    public Iterator<Unifier> getCache(final Literal query, final Unifier un) {
+        if (query.isVar() || query.getNS().isVar()) {
+            notCacheable();
+            return null;
+        }
+        dependsOn(query.getPredicateIndicator());
+        if (!isCacheable(query))
+            return null;
+
+        if (prof != null)
+            prof.queryStared(query);
+
+        Entry e;
+        synchronized (this) {
+            e = cache.get(key(query, un));
+        }
+        if (e == null)
             return null;
+
         if (prof != null)
             prof.incHits();
-        return l.iterator();
+        for (PredicateIndicator d: e.deps)
+            dependsOn(d);
+
+        final Iterator<Literal> i = e.answers.iterator();
+        return new Iterator<Unifier>() {
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+            public Unifier next() {
+                Unifier u = un.clone();
+                u.unifiesNoUndo(query, i.next());
+                return u;
+            }
+        };
+    }
+
+    /**
+     * @return the answers of the query, stored in the cache once they are all consumed
+     */
+    public Iterator<Unifier> record(Literal query, Unifier un, Iterator<Unifier> answers) {
+        if (query.isVar() || query.getNS().isVar() || !isCacheable(query))
+            return answers;
+        return new Recording(query, un, answers);
+    }
+
+    /** checks the body of a rule used to answer the queries being evaluated */
+    public void ruleUsed(Rule r) {
+        if (!evaluating.get().isEmpty() && !isCacheable(r.getBody()))
+            notCacheable();
+    }
+
+    /** the queries being evaluated can not be cached (e.g. they depend on the epistemic model) */
+    public void notCacheable() {
+        for (Recording r: evaluating.get())
+            r.cacheable = false;
     }
 
-    public void queryFinished(Literal f, List<Unifier> r) {
-        //System.out.println("finished "+f+" with "+r);
-        cache.put(f, r);
+    private void dependsOn(PredicateIndicator pi) {
+        for (Recording r: evaluating.get())
+            r.deps.add(pi);
     }
 
+    private synchronized void finished(Recording r) {
+        if (prof != null)
+            prof.queryFinished(r.query, System.nanoTime() - r.startTime);
+        if (!r.cacheable || r.version != version)
+            return;
+
+        Entry e = new Entry(r.answers, r.deps);
+        if (cache.put(r.key, e) == null) {
+            for (PredicateIndicator d: e.deps)
+                dependents.computeIfAbsent(d, k -> new HashSet<>()).add(r.key);
+        }
+    }
+
+    private static boolean isCacheable(Literal query) {
+        return !query.hasAnnot();
+    }
+
+    private static boolean isCacheable(LogicalFormula f) {
+        if (f instanceof LogExpr) {
+            LogExpr e = (LogExpr) f;
+            return isCacheable(e.getLHS()) && (e.isUnary() || isCacheable(e.getRHS()));
+        } else if (f instanceof InternalActionLiteral || f.isVar()) {
+            return false;
+        } else if (f instanceof Structure) { // relational expressions and literals
+            return isCacheable((Structure) f);
+        }
+        return f instanceof Literal;
+    }
+
+    /** @return false if some term is evaluated by a function */
+    private static boolean isCacheable(Structure s) {
+        for (int i = 0; i < s.getArity(); i++) {
+            Term t = s.getTerm(i);
+            if (t instanceof InternalActionLiteral || (t instanceof ArithFunctionTerm && !(t instanceof ArithExpr)))
+                return false;
+            if (t instanceof Structure && !t.isVar() && !isCacheable((Structure) t))
+                return false;
+        }
+        return true;
+    }
+
+    /** @return the query with the bindings of un and its variables renamed in the order they occur */
+    static String key(Literal query, Unifier un) {
+        Term q = query.capply(un);
+        rename(q, new HashMap<>());
+        return q.toString();
+    }
+
+    private static Term rename(Term t, Map<VarTerm, VarTerm> vars) {
+        if (t.isVar()) {
+            return vars.computeIfAbsent((VarTerm) t, v -> new VarTerm("V" + vars.size()));
+        }
+        if (t instanceof Structure) {
+            Structure s = (Structure) t;
+            for (int i = 0; i < s.getArity(); i++)
+                s.setTerm(i, rename(s.getTerm(i), vars));
+        }
+        return t;
+    }
+
+    private static final class Entry {
+        final List<Literal> answers;
+        final Set<PredicateIndicator> deps;
+
+        Entry(List<Literal> answers, Set<PredicateIndicator> deps) {
+            this.answers = answers;
+            this.deps = deps;
+        }
+    }
+
+    /** the answers of a query being evaluated, while they are consumed */
+    private final class Recording implements Iterator<Unifier> {
+        final Literal query;
+        final String key;
+        final Iterator<Unifier> it;
+        final long version;
+        final long startTime = System.nanoTime();
+        final List<Literal> answers = new ArrayList<>();
+        final Set<PredicateIndicator> deps = new HashSet<>();
+        boolean cacheable = true;
+        boolean done = false;
+
+        Recording(Literal query, Unifier un, Iterator<Unifier> it) {
+            this.query = query;
+            this.key = key(query, un);
+            this.it = it;
+            synchronized (QueryCacheSimple.this) {
+                this.version = QueryCacheSimple.this.version;
+            }
+            deps.add(query.getPredicateIndicator());
+        }
+
+        public boolean hasNext() {
+            Deque<Recording> active = evaluating.get();
+            active.push(this);
+            boolean hn;
+            try {
+                hn = it.hasNext();
+            } finally {
+                active.pop();
+            }
+            if (!hn && !done) {
+                done = true;
+                finished(this);
+            }
+            return hn;
+        }
+
+        public Unifier next() {
+            Deque<Recording> active = evaluating.get();
+            active.push(this);
+            Unifier u;
+            try {
+                u = it.next();
+            } finally {
+                active.pop();
+            }
+            if (u != null && cacheable) {
+                Literal a = (Literal) query.capply(u);
+                if (a.isGround())
+                    answers.add(a);
+                else
+                    cacheable = false;
+            }
+            return u;
+        }
+    }
 }
@@ -1698,6 +1698,11 @@ public class TransitionSystem implements Serializable {
     }
 
     public void sense() {
+        // the belief events of the sense phase are applied to the epistemic model as a single batch
+        EpistemicExtension epistemic = ag.getEpistemic();
+        if (epistemic != null)
+            epistemic.beginEventBatch();
+
         try {
             if (logger.isLoggable(Level.FINE)) logger.fine("Start sense");
 
@@ -1733,6 +1738,14 @@ public class TransitionSystem implements Serializable {
         } catch (Exception e) {
             logger.log(Level.SEVERE, "*** ERROR in the transition system (sense). " + C + "\nCreating a new C!", e);
             C.create();
+        } finally {
+            if (epistemic != null) {
+                try {
+                    epistemic.endEventBatch();
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "*** ERROR applying the belief events of the sense phase to the epistemic model.", e);
+                }
+            }
         }
     }
 
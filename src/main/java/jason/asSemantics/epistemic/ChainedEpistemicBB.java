@@ -2,7 +2,9 @@ package jason.asSemantics.epistemic;
 
 import jason.asSemantics.Unifier;
 import jason.asSemantics.epistemic.reasoner.EpistemicReasoner;
+import jason.asSemantics.epistemic.reasoner.ReasonerConfiguration;
 import jason.asSemantics.epistemic.reasoner.formula.EpistemicFormulaLiteral;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicModality;
 import jason.asSyntax.Atom;
 import jason.asSyntax.Literal;
 import jason.asSyntax.PredicateIndicator;
@@ -10,9 +12,7 @@ import jason.bb.BeliefBase;
 import jason.bb.ChainBBAdapter;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 
 public class ChainedEpistemicBB extends ChainBBAdapter {
     private final EpistemicReasoner reasoner;
@@ -69,44 +69,78 @@ public class ChainedEpistemicBB extends ChainBBAdapter {
         var epistemicLiteral = EpistemicFormulaLiteral.fromLiteral(unifiedLiteral);
 
         // If the root literal is not ground, then obtain all possible managed unifications
-        var groundFormulas = getCandidateFormulas(epistemicLiteral);
-
-        var result = reasoner.evaluateFormulas(groundFormulas);
-        var arr = new ArrayList<Literal>();
+        var groundings = this.groundBase.getCandidateBeliefs(epistemicLiteral.getRootLiteral(), new Unifier());
+        if (groundings == null)
+            return null;
 
-        // If the result is true (formula evaluated to true), then return the literal as a candidate belief
-        for(var formulaResultEntry : result.entrySet()) {
-            // Add formula literal to results list if the formula was evaluated to true
-            if(formulaResultEntry.getValue())
-                arr.add(formulaResultEntry.getKey().getCleanedOriginal());
-        }
+        var candidates = new CandidateIterator(epistemicLiteral, groundings);
 
         // Return null if no candidates
         // This maintains the original BB functionality
-        if(arr.isEmpty())
+        if (!candidates.hasNext())
             return null;
 
-        return arr.iterator();
+        return candidates;
     }
 
-    protected List<EpistemicFormulaLiteral> getCandidateFormulas(EpistemicFormulaLiteral formula)
-    {
-        // Strip formula of all modalities
-        Literal formLit = formula.getRootLiteral();
-
-        // Find all groundings using ground set and return list of results
-        List<EpistemicFormulaLiteral> results = new ArrayList<>();
+    /**
+     * Evaluates the groundings of a literal while the candidates are consumed. Groundings are evaluated in
+     * chunks that start with a single formula (first solution queries) and double up to the evaluation
+     * batch size, so a consumer that stops at the first candidate does not evaluate the whole range.
+     */
+    private class CandidateIterator implements Iterator<Literal> {
+        private final EpistemicModality modality;
+        private final Literal rootLiteral;
+        private final Iterator<Literal> groundings;
+        private final Deque<Literal> current = new ArrayDeque<>();
+        private final int maxChunkSize = ReasonerConfiguration.getInstance().getEvaluationBatchSize();
+        private int chunkSize = 1;
+
+        CandidateIterator(EpistemicFormulaLiteral formula, Iterator<Literal> groundings) {
+            this.modality = formula.getEpistemicModality();
+            this.rootLiteral = formula.getRootLiteral().copy().clearAnnots();
+            this.groundings = groundings;
+        }
 
-        var belIter = this.groundBase.getCandidateBeliefs(formLit, new Unifier());
+        @Override
+        public boolean hasNext() {
+            while (current.isEmpty() && groundings.hasNext())
+                evaluateChunk();
+            return !current.isEmpty();
+        }
 
-        while(belIter != null && belIter.hasNext())
-        {
-            Literal next = belIter.next().copy();
-            next.clearAnnots();
-            results.add(EpistemicFormulaLiteral.CreateFormula(formula.getEpistemicModality(), next));
+        @Override
+        public Literal next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.poll();
         }
 
-        return results;
+        private void evaluateChunk() {
+            List<EpistemicFormulaLiteral> chunk = new ArrayList<>(chunkSize);
+            while (chunk.size() < chunkSize && groundings.hasNext()) {
+                Literal next = groundings.next().copy();
+                next.clearAnnots();
+
+                // Groundings that do not unify with the literal are not candidates, there is no need to evaluate them
+                if (!new Unifier().unifies(rootLiteral, next))
+                    continue;
+                chunk.add(EpistemicFormulaLiteral.CreateFormula(modality, next));
+            }
+
+            if (chunk.isEmpty())
+                return;
+
+            var result = reasoner.evaluateFormulas(chunk);
+
+            // If the result is true (formula evaluated to true), then return the literal as a candidate belief
+            for (var formula : chunk) {
+                if (Boolean.TRUE.equals(result.get(formula)))
+                    current.add(formula.getCleanedOriginal());
+            }
+
+            chunkSize = Math.min(chunkSize * 2, maxChunkSize);
+        }
     }
 
     @Override
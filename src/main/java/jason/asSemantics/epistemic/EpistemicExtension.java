@@ -2,7 +2,9 @@ package jason.asSemantics.epistemic;
 
 import jason.JasonException;
 import jason.asSemantics.*;
+import jason.asSemantics.epistemic.metrics.EpistemicMetrics;
 import jason.asSemantics.epistemic.reasoner.EpistemicReasoner;
+import jason.asSemantics.epistemic.reasoner.ReasonerConfiguration;
 import jason.asSemantics.epistemic.reasoner.formula.*;
 import jason.asSyntax.*;
 import jason.bb.BeliefBase;
@@ -10,8 +12,15 @@ import jason.bb.DefaultBeliefBase;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 enum ReasonerType {
     PAL,
@@ -20,18 +29,41 @@ enum ReasonerType {
 
 public class EpistemicExtension implements CircumstanceListener {
     private static final String ON_FUNCTOR = "on";
+    private static ForkJoinPool constraintPool = null;
 
     private final ReasonerType reasonerType;
     private BeliefBase rangedBeliefs;
+    private ManagedPredicates managedPredicates;
     private TransitionSystem ts;
     private EpistemicReasoner reasoner;
     private boolean modelCreated;
+    private final int evaluationBatchSize;
+    private final EpistemicQueryCache queryCache;
+    private final EpistemicMetrics metrics;
+    private final boolean pipelineEventModels;
+    private final boolean coalesceBeliefEvents;
+    // Only set while the constraint rules are propositionalized
+    private volatile RewriteTable rewriteTable;
+
+    // Event models sent to the reasoner whose result has not been processed yet, in order of application
+    private final Deque<PendingEventModels> pendingEventModels = new ArrayDeque<>();
+    private CompletableFuture<List<Boolean>> lastEventModels = CompletableFuture.completedFuture(List.of());
+
+    // Event models of the current sense phase, not sent to the reasoner yet
+    private final List<DELEventModel> coalescedEventModels = new ArrayList<>();
+    private boolean coalescing = false;
 
     public EpistemicExtension(TransitionSystem ts, ReasonerType reasonerType) {
         this.ts = ts;
         this.modelCreated = false;
         this.reasonerType = reasonerType;
-        this.reasoner = new EpistemicReasoner();
+        this.metrics = new EpistemicMetrics(ts.getAgArch() != null ? ts.getAgArch().getAgName() : "agent");
+        this.reasoner = ReasonerConfiguration.getInstance().createReasoner(metrics);
+        this.evaluationBatchSize = ReasonerConfiguration.getInstance().getEvaluationBatchSize();
+        this.queryCache = new EpistemicQueryCache(ReasonerConfiguration.getInstance().getQueryCacheSize());
+        this.metrics.gauge(EpistemicMetrics.QUERY_CACHE_HIT_RATIO, queryCache::getHitRatio);
+        this.pipelineEventModels = ReasonerConfiguration.getInstance().isPipelineEventModels();
+        this.coalesceBeliefEvents = ReasonerConfiguration.getInstance().isCoalesceBeliefEvents();
     }
 
     public EpistemicExtension(TransitionSystem ts) {
@@ -44,20 +76,25 @@ public class EpistemicExtension implements CircumstanceListener {
         // Do not re-invoke
         if (modelCreated) return;
 
-        long startTime = System.nanoTime();
-        List<Formula> constraints = getModelCreationConstraints();
-        long endConstraintTime = System.nanoTime();
+        metrics.register();
 
-        this.ts.getAg().getLogger().info("Constraint Consequences Time (ms): " + ((endConstraintTime - startTime) / 1000000));
+        long startTime = System.nanoTime();
+        Collection<Formula> constraints = getModelCreationConstraints();
+        metrics.recordTime(EpistemicMetrics.CONSTRAINTS_TIME, startTime);
 
-        endConstraintTime = System.nanoTime(); // reset for next calc
+        // The range values are known once the constraints are created
+        managedPredicates = new ManagedPredicates(ts.getAg(), rangedBeliefs, ON_FUNCTOR);
+        if (ts.getLogger().isLoggable(Level.FINE))
+            ts.getLogger().fine("Epistemically managed predicates: " + managedPredicates.getManaged());
 
+        long generationTime = System.nanoTime();
         boolean result = reasoner.createModel(constraints);
-        long endGenerationTime = System.nanoTime();
+        queryCache.newModelVersion();
+        metrics.recordTime(EpistemicMetrics.MODEL_CREATE_TIME, generationTime);
+        metrics.add(EpistemicMetrics.CONSTRAINTS, constraints.size());
 
-        this.ts.getAg().getLogger().info("Model Generation Time (ms): " + ((endGenerationTime - endConstraintTime) / 1000000));
-        this.ts.getAg().getLogger().info("Total Model Creation Time (ms): " + ((endGenerationTime - startTime) / 1000000));
         if (!result) {
+            metrics.increment(EpistemicMetrics.MODEL_CREATE_FAILURES);
             this.ts.getAg().getLogger().info("Failed to create epistemic model from constraints");
         }
 
@@ -68,15 +105,126 @@ public class EpistemicExtension implements CircumstanceListener {
         this.ts.getC().addEventListener(this);
     }
 
+    /**
+     * @return true if the belief is a range or a rule, so adding or removing it changes the constraints of the model.
+     */
+    private static boolean isVocabularyChange(Literal belief) {
+        return belief.isRule() || isRange(belief);
+    }
+
+    private static boolean isRange(Literal l) {
+        return l.getNS() == Literal.DefaultNS && l.getArity() == 1 && l.getFunctor().equals("range");
+    }
+
+    /**
+     * Folds a range or rule added or removed at run time into the model. Additions only add the constraints
+     * of the range values whose predicates depend on the changed predicate (see {@link #extendModel(Literal)}).
+     * Removals can not be applied incrementally, as the worlds removed by a constraint are lost, so the
+     * model is created again from the current beliefs and rules, as are additions that the reasoner
+     * can not apply as an extension.
+     */
+    private void vocabularyChanged(Trigger trigger) {
+        // the event models of the previous events are applied to the model before it changes
+        awaitEventModels();
+
+        long startTime = System.nanoTime();
+        if (trigger.isAddition() && extendModel(trigger.getLiteral())) {
+            metrics.recordTime(EpistemicMetrics.MODEL_EXTEND_TIME, startTime);
+        } else {
+            ts.getLogger().info("Creating the epistemic model again after " + trigger);
+            rebuildModel();
+            metrics.increment(EpistemicMetrics.MODEL_REBUILDS);
+        }
+
+        managedPredicates = new ManagedPredicates(ts.getAg(), rangedBeliefs, ON_FUNCTOR);
+        queryCache.newModelVersion();
+    }
+
+    /**
+     * Extends the model with the constraints of a range or rule added at run time: the range constraint and
+     * the constraint rules of the new range values, and the constraint rules of the existing range values
+     * whose rules refer (transitively) to the changed predicate.
+     *
+     * @return false if the reasoner could not extend the model.
+     */
+    private boolean extendModel(Literal added) {
+        Agent ag = ts.getAg();
+        List<Formula> constraints = new ArrayList<>();
+        List<Literal> newValues = new ArrayList<>();
+        Set<PredicateIndicator> changed = new HashSet<>();
+
+        if (isRange(added.isRule() ? ((Rule) added).getHead() : added)) {
+            constraints.addAll(getNewRangeConstraints(ag, newValues));
+            for (Literal value : newValues)
+                changed.add(ManagedPredicates.indicatorOf(value));
+        } else {
+            changed.add(ManagedPredicates.indicatorOf(added));
+        }
+
+        Set<PredicateIndicator> dependents = ManagedPredicates.dependents(ag, changed);
+        List<Literal> affected = new ArrayList<>(newValues);
+        for (Literal value : rangedBeliefs) {
+            if (dependents.contains(ManagedPredicates.indicatorOf(value)))
+                affected.add(value);
+        }
+
+        if (!affected.isEmpty())
+            constraints.addAll(getRangeConstraintRules(ag, affected));
+
+        // Positive and negative range values are the same proposition
+        Set<PropFormula> propositions = new LinkedHashSet<>();
+        for (Literal value : newValues) {
+            Formula prop = value.toPropFormula();
+            if (prop instanceof PropFormula)
+                propositions.add((PropFormula) prop);
+        }
+
+        if (constraints.isEmpty() && propositions.isEmpty())
+            return true;
+
+        if (!reasoner.extendModel(propositions, constraints))
+            return false;
+
+        for (Literal value : newValues)
+            rangedBeliefs.add(value);
+        metrics.add(EpistemicMetrics.CONSTRAINTS, constraints.size());
+        return true;
+    }
+
+    /**
+     * Creates the model again from the current beliefs, ranges and rules.
+     */
+    private void rebuildModel() {
+        Collection<Formula> constraints = getModelCreationConstraints();
+        if (!reasoner.createModel(constraints)) {
+            metrics.increment(EpistemicMetrics.MODEL_CREATE_FAILURES);
+            ts.getAg().getLogger().info("Failed to create epistemic model from constraints");
+        }
+        metrics.add(EpistemicMetrics.CONSTRAINTS, constraints.size());
+    }
+
+    /**
+     * Updates the epistemically managed predicates after plans are added to or removed from the plan
+     * library (e.g. by <code>.add_plan</code> or <code>tellHow</code>), as 'on' plans change the predicates
+     * that are valued by the model.
+     */
+    public void plansChanged() {
+        if (!modelCreated)
+            return;
+        managedPredicates = new ManagedPredicates(ts.getAg(), rangedBeliefs, ON_FUNCTOR);
+        queryCache.newModelVersion();
+    }
+
     /**
      * Find all constraints for model creation:
      * - Initial beliefs
      * - Initial Ranges
      * - Constraint rules (from range values only)
      *
-     * @return
+     * @return the constraints. The constraint rules are only assembled while the collection is iterated,
+     * so that they can be streamed to the reasoner without being materialised.
      */
-    protected List<Formula> getModelCreationConstraints() {
+    protected Collection<Formula> getModelCreationConstraints() {
         List<Formula> constraints = new ArrayList<>();
 
         // Propositionalize normal beliefs in DEL
@@ -107,9 +255,8 @@ public class EpistemicExtension implements CircumstanceListener {
         System.out.println("Range Constraints: " + rangeCons);
 
         // Load consequences for all belief rules that describe ranges.
-        constraints.addAll(getRangeConstraintRules(ts.getAg(), rangeValues));
-        int constraintRules = constraints.size() - rangeCons;
-        System.out.println("Standard Rule Constraints: " + constraintRules);
+        Collection<Formula> constraintRules = getRangeConstraintRules(ts.getAg(), rangeValues);
+        System.out.println("Standard Rule Constraints: " + constraintRules.size());
 
         // Store ranged literals into their own belief base
         this.rangedBeliefs = new DefaultBeliefBase();
@@ -117,7 +264,17 @@ public class EpistemicExtension implements CircumstanceListener {
             this.rangedBeliefs.add(l);
 
 
-        return constraints;
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Formula> iterator() {
+                return Stream.concat(constraints.stream(), constraintRules.stream()).iterator();
+            }
+
+            @Override
+            public int size() {
+                return constraints.size() + constraintRules.size();
+            }
+        };
     }
 
 
@@ -144,21 +301,150 @@ public class EpistemicExtension implements CircumstanceListener {
             DELEventModel palModel = new DELEventModel(Set.of(
                     new DELEvent(onEvent.getEventLit().toString(), simplifyAndProp(onEvent.getEventLit()))
             ));
-            reasoner.applyEventModel(palModel);
+            dispatchEventModel(palModel);
         } else {
             DELEventModel eventModel = createEventModel(onEvent);
-            long consEndTime = System.nanoTime();
-            System.out.println("Time to find " + eventModel.getDelEvents().size() + " applicable 'on' plans for " + onEvent.getEventLit() + " (ms): " + (consEndTime - startTime) / 1000000);
+            metrics.recordTime(EpistemicMetrics.EVENT_BUILD_TIME, startTime);
+            metrics.record(EpistemicMetrics.EVENTS_PER_MODEL, eventModel.getDelEvents().size(), EpistemicMetrics.ITEMS);
+            if (ts.getLogger().isLoggable(Level.FINE))
+                ts.getLogger().fine("Found " + eventModel.getDelEvents().size() + " applicable 'on' plans for " + onEvent.getEventLit());
+
+            // If application is success, ontic lits are added
+            dispatchEventModel(eventModel);
+        }
+        metrics.increment(EpistemicMetrics.EVENT_MODELS);
+    }
+
+    /**
+     * Starts coalescing the event models of belief events (called at the start of the sense phase): the
+     * event models are built as the events are added, but they are only sent to the reasoner, as one ordered
+     * batch, by {@link #endEventBatch()}.
+     */
+    public synchronized void beginEventBatch() {
+        coalescing = coalesceBeliefEvents && modelCreated;
+    }
+
+    /**
+     * Stops coalescing event models and applies the coalesced ones (called at the end of the sense phase).
+     */
+    public synchronized void endEventBatch() {
+        coalescing = false;
+        flushEventModels();
+    }
 
-            // If application is success, add ontic lits
-            if (reasoner.applyEventModel(eventModel)) {
-                addOnticLits(eventModel);
+    /**
+     * Applies the coalesced event models, if any. Called before formulas are evaluated, so that
+     * evaluations always see all the events added so far.
+     */
+    private synchronized void flushEventModels() {
+        if (coalescedEventModels.isEmpty())
+            return;
+
+        List<DELEventModel> eventModels = new ArrayList<>(coalescedEventModels);
+        coalescedEventModels.clear();
+        applyToReasoner(eventModels);
+    }
+
+    private synchronized void dispatchEventModel(DELEventModel eventModel) {
+        if (coalescing)
+            coalescedEventModels.add(eventModel);
+        else
+            applyToReasoner(List.of(eventModel));
+    }
+
+    /**
+     * Applies the event models to the reasoner, in order, and adds the ontic literals of the successful ones.
+     * Any cached query result becomes outdated.
+     */
+    private void applyToReasoner(List<DELEventModel> eventModels) {
+        if (pipelineEventModels) {
+            submitToReasoner(eventModels);
+            return;
+        }
+
+        metrics.record(EpistemicMetrics.EVENT_MODELS_PER_BATCH, eventModels.size(), EpistemicMetrics.ITEMS);
+        long startTime = System.nanoTime();
+        List<Boolean> results;
+        try {
+            results = reasoner.applyEventModels(eventModels);
+        } finally {
+            queryCache.newModelVersion();
+            metrics.recordTime(EpistemicMetrics.EVENT_APPLY_TIME, startTime);
+        }
+        addOnticLits(eventModels, results);
+    }
+
+    /**
+     * Sends the event models to the reasoner without waiting for the result, so that the reasoning cycle
+     * continues while the model is updated. Applications are chained, so the reasoner receives the event
+     * models in order, and formula evaluations wait for all the pending applications
+     * (see {@link #awaitEventModels()}).
+     */
+    private synchronized void submitToReasoner(List<DELEventModel> eventModels) {
+        queryCache.newModelVersion();
+        metrics.record(EpistemicMetrics.EVENT_MODELS_PER_BATCH, eventModels.size(), EpistemicMetrics.ITEMS);
+        lastEventModels = lastEventModels
+                .handle((result, ex) -> null)
+                .thenCompose(ignored -> {
+                    // The latency is measured from the time the request can be sent
+                    long startTime = System.nanoTime();
+                    return reasoner.applyEventModelsAsync(eventModels)
+                            .whenComplete((result, ex) -> metrics.recordTime(EpistemicMetrics.EVENT_APPLY_TIME, startTime));
+                });
+        pendingEventModels.add(new PendingEventModels(eventModels, lastEventModels));
+        processEventModels(false);
+    }
+
+    /**
+     * Applies the coalesced event models and waits for all the event models sent to the reasoner to be applied.
+     */
+    public void awaitEventModels() {
+        flushEventModels();
+        processEventModels(true);
+    }
+
+    /**
+     * Processes the results of the pending event models, in order of application.
+     *
+     * @param wait if false, stops at the first application that has not completed yet.
+     */
+    private synchronized void processEventModels(boolean wait) {
+        while (!pendingEventModels.isEmpty()) {
+            var pending = pendingEventModels.peek();
+            if (!wait && !pending.results.isDone())
+                return;
+
+            pendingEventModels.poll();
+            List<Boolean> results;
+            try {
+                results = pending.results.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
             }
+
+            addOnticLits(pending.eventModels, results);
         }
+    }
+
+    private static final class PendingEventModels {
+        final List<DELEventModel> eventModels;
+        final CompletableFuture<List<Boolean>> results;
+
+        PendingEventModels(List<DELEventModel> eventModels, CompletableFuture<List<Boolean>> results) {
+            this.eventModels = eventModels;
+            this.results = results;
+        }
+    }
 
-        long reasonerEndTime = System.nanoTime();
-        // System.out.println("Time to apply event model (ms): " + (reasonerEndTime - consEndTime) / 1000000);
-        System.out.println("Total event time (ms): " + (reasonerEndTime - startTime) / 1000000);
+    private void addOnticLits(List<DELEventModel> eventModels, List<Boolean> results) {
+        for (int i = 0; i < eventModels.size(); i++) {
+            if (results.get(i))
+                addOnticLits(eventModels.get(i));
+            else
+                metrics.increment(EpistemicMetrics.EVENT_APPLY_FAILURES);
+        }
     }
 
     private void addOnticLits(DELEventModel eventModel) {
@@ -188,14 +474,12 @@ public class EpistemicExtension implements CircumstanceListener {
     private DELEventModel createEventModel(OnEvent onEvent) throws JasonException {
         var relPlans = ts.relevantPlans(onEvent.getTrigger(), null);
 
-        // Map each plan to a clone, where we can find all unifs (otherwise, Jason only finds the first unifier)
-        var appOnPlans = applicableOnPlans(relPlans);
+        // Create an event for each distinct rewrite of the plan contexts (otherwise, Jason only finds the first unifier)
+        var delEvents = applicableOnEvents(relPlans);
 
-        if (appOnPlans == null || appOnPlans.isEmpty())
+        if (delEvents == null || delEvents.isEmpty())
             return createDefaultEventModel(onEvent);
 
-
-        Set<DELEvent> delEvents = appOnPlans.stream().map(this::mapPlanToEvent).collect(Collectors.toSet());
         return new DELEventModel(delEvents);
     }
 
@@ -211,22 +495,99 @@ public class EpistemicExtension implements CircumstanceListener {
         return new DELEventModel(Set.of(defEv));
     }
 
-    private DELEvent mapPlanToEvent(Option option) {
-        Plan unifPlan = option.getPlan().capply(option.getUnifier());
+    /**
+     * Adapted from ts.applicablePlans, since we need a custom logical consequence function that relies on rewrite
+     * consequences for on plans. Instead of options, the events of the applicable plans are created directly from
+     * the rewrites of their contexts.
+     * <p>
+     * The rewrites of the contexts of the relevant plans are enumerated in parallel, with the pool used for the
+     * constraints (see {@link ReasonerConfiguration#getConstraintParallelism()}). Each plan uses its own copy of
+     * the unifier, and the events are merged in the order of the plans.
+     *
+     * @return the events, or null if there is no relevant plan.
+     */
+    public Set<DELEvent> applicableOnEvents(List<Option> rp) {
+        synchronized (ts.getC().syncApPlanSense) {
+            if (rp == null) return null;
+
+            List<List<DELEvent>> planEvents = new ArrayList<>(rp.size());
+            int parallelism = ReasonerConfiguration.getInstance().getConstraintParallelism();
+            if (parallelism > 1 && rp.size() > 1) {
+                ForkJoinPool pool = getConstraintPool(parallelism);
+                List<ForkJoinTask<List<DELEvent>>> tasks = new ArrayList<>(rp.size());
+                for (Option opt : rp)
+                    tasks.add(pool.submit(() -> applicableOnEvents(opt)));
+                for (var task : tasks)
+                    planEvents.add(task.join());
+            } else {
+                for (Option opt : rp)
+                    planEvents.add(applicableOnEvents(opt));
+            }
+
+            Set<DELEvent> events = new LinkedHashSet<>();
+            planEvents.forEach(events::addAll);
+            return events;
+        }
+    }
+
+    /**
+     * @return the events of a relevant plan, one for each distinct rewrite of its context.
+     */
+    private List<DELEvent> applicableOnEvents(Option opt) {
+        Plan plan = opt.getPlan();
+        LogicalFormula context = plan.getContext();
+        if (ts.getLogger().isLoggable(Level.FINE))
+            ts.getLogger().log(Level.FINE, "option for " + plan.getTrigger() + " is plan " + plan.getLabel() + " : " + context + " -- with unification " + opt.getUnifier());
+
+        if (context == null) { // context is true
+            if (ts.getLogger().isLoggable(Level.FINE))
+                ts.getLogger().log(Level.FINE, "     " + plan.getLabel() + " is applicable with unification " + opt.getUnifier());
+            return List.of(createEvent(plan, null, opt.getUnifier()));
+        }
 
-        // Erase label from plan for the sake of event id readability
-        Plan planNoLabel = ((Plan) unifPlan.clone());
-        planNoLabel.delLabel();
+        List<DELEvent> events = new ArrayList<>();
+        Set<RewriteUnifier> distinctUnifs = new HashSet<>();
+        Iterator<RewriteUnifier> r = rewriteCons(context, opt.getUnifier().clone());
+        while (r != null && r.hasNext()) {
+            var unif = r.next();
+            var rewritten = ((LogicalFormula) unif.getFormula().capply(unif.getUnifier())).simplify();
 
-        DELEvent ev = new DELEvent(planNoLabel);
+            // Only add distinct unifiers
+            if (distinctUnifs.add(new RewriteUnifier(rewritten, unif.getUnifier())))
+                events.add(createEvent(plan, rewritten, unif.getUnifier()));
 
-        // Only process context when non-null
-        if (unifPlan.getContext() != null) {
-            Formula propPrecondition = simplifyAndProp(unifPlan.getContext());
-            ev.setPreCondition(propPrecondition);
+            if (ts.getLogger().isLoggable(Level.FINE))
+                ts.getLogger().log(Level.FINE, "     " + plan.getLabel() + " is applicable with unification " + unif.getUnifier());
         }
 
-        PlanBody cur = unifPlan.getBody();
+        if (events.isEmpty() && ts.getLogger().isLoggable(Level.FINE))
+            ts.getLogger().log(Level.FINE, "     " + plan.getLabel() + " is not applicable");
+        return events;
+    }
+
+    /**
+     * Creates the event of an applicable 'on' plan. The event id is the plan, without its label.
+     *
+     * @param context the rewritten (and simplified) context of the plan, null if the plan has no context.
+     * @param u       the unifier of the plan.
+     */
+    private DELEvent createEvent(Plan plan, LogicalFormula context, Unifier u) {
+        PlanBody body = (PlanBody) plan.getBody().capply(u);
+
+        StringBuilder id = new StringBuilder().append(plan.getTrigger().capply(u));
+        if (context != null)
+            id.append(" : ").append(context);
+        if (!body.isEmptyBody())
+            id.append(" <- ").append(body);
+        id.append('.');
+
+        DELEvent ev = new DELEvent(id);
+
+        // Only process context when non-null
+        if (context != null)
+            ev.setPreCondition(context.toPropFormula());
+
+        PlanBody cur = body;
         while (cur != null && cur.getBodyTerm() != null) {
             if (!cur.getBodyTerm().isLiteral()) {
                 cur = cur.getBodyNext();
@@ -246,68 +607,6 @@ public class EpistemicExtension implements CircumstanceListener {
         return ev;
     }
 
-
-    /**
-     * Copied + modified from ts.applicablePlans, since we need a custom logical consequence function that relies on rewrite conseqeuences for on plans
-     *
-     * @param rp
-     * @return
-     */
-    public List<Option> applicableOnPlans(List<Option> rp) {
-        synchronized (ts.getC().syncApPlanSense) {
-            if (rp == null) return null;
-
-            List<Option> ap = null;
-            for (Option opt : rp) {
-                LogicalFormula context = opt.getPlan().getContext();
-                if (ts.getLogger().isLoggable(Level.FINE))
-                    ts.getLogger().log(Level.FINE, "option for " + ts.getC().getSelectedEvent().getTrigger() + " is plan " + opt.getPlan().getLabel() + " " + opt.getPlan().getTrigger() + " : " + context + " -- with unification " + opt.getUnifier());
-
-                if (context == null) { // context is true
-                    if (ap == null) ap = new LinkedList<>();
-                    ap.add(opt);
-                    if (ts.getLogger().isLoggable(Level.FINE))
-                        ts.getLogger().log(Level.FINE, "     " + opt.getPlan().getLabel() + " is applicable with unification " + opt.getUnifier());
-                } else {
-                    Iterator<RewriteUnifier> r = rewriteCons(context, opt.getUnifier());
-                    boolean isApplicable = false;
-                    Set<RewriteUnifier> distinctUnifs = new HashSet<>();
-
-                    if (r != null) {
-                        while (r.hasNext()) {
-                            isApplicable = true;
-
-                            if (ap == null)
-                                ap = new LinkedList<>();
-
-                            var unif = r.next();
-                            var simplifiedUnif = new RewriteUnifier(unif.getFormula().simplify(), unif.getUnifier());
-
-                            // Only add distinct unifiers
-                            if (!distinctUnifs.contains(simplifiedUnif)) {
-                                // Clone plan and insert re-write formulas
-                                Plan cPlan = (Plan) opt.getPlan().clone();
-                                cPlan.setContext(simplifiedUnif.getFormula().simplify());
-                                ap.add(new Option(cPlan, simplifiedUnif.getUnifier()));
-                            }
-                            distinctUnifs.add(simplifiedUnif);
-
-                            if (ts.getLogger().isLoggable(Level.FINE))
-                                ts.getLogger().log(Level.FINE, "     " + opt.getPlan().getLabel() + " is applicable with unification " + opt.getUnifier());
-
-                        }
-
-                    }
-
-                    if (!isApplicable && ts.getLogger().isLoggable(Level.FINE))
-                        ts.getLogger().log(Level.FINE, "     " + opt.getPlan().getLabel() + " is not applicable");
-                }
-
-            }
-            return ap;
-        }
-    }
-
     /**
      * Gets log cons with respect to a different set of literals
      */
@@ -319,73 +618,131 @@ public class EpistemicExtension implements CircumstanceListener {
         return context.rewriteConsequences(ts.getAg(), unifier);
     }
 
-    private List<Formula> getRangeConstraintRules(Agent ag, List<Literal> allRange) {
+    /**
+     * Propositionalizes the constraint rules of all range literals as 'body1 or ... or bodyN => head'.
+     * The range literals are partitioned across a fork-join pool (see {@link RangeConstraintTask}).
+     *
+     * The ground bodies of all heads are kept in memory until the returned collection is released;
+     * only the implication formulas are created while the collection is iterated.
+     *
+     * @return the constraints, one per head.
+     */
+    private Collection<Formula> getRangeConstraintRules(Agent ag, List<Literal> allRange) {
         // allRange should contain +/~ lits
-        List<Formula> constraintRulesProps = new ArrayList<>();
+        System.out.println("Processing constraints for " + allRange.size() + " range literals");
 
-        Map<Literal, Collection<LogicalFormula>> headToBodyMap = new HashMap<>();
+        int parallelism = ReasonerConfiguration.getInstance().getConstraintParallelism();
+        int threshold = parallelism > 1 ? Math.max(1, allRange.size() / (parallelism * 8)) : allRange.size();
+        RangeConstraintTask task = new RangeConstraintTask(ag, allRange, 0, allRange.size(), threshold, new AtomicInteger(), ts.getLogger());
 
-        System.out.println("Processing constraints for " + allRange.size() + " range literals");
-        int cur = 0;
-        int conRuleCount = 0;
-        for (Literal rangeLit : allRange) {
-            cur++;
+        if (ReasonerConfiguration.getInstance().isTableRewrites())
+            rewriteTable = new RewriteTable();
 
-            var conRulesSet = getCandidateRules(ag, ag.getBB(), rangeLit, new Unifier());
+        Map<Literal, Set<Formula>> headToBodyMap;
+        try {
+            headToBodyMap = parallelism > 1 ? getConstraintPool(parallelism).invoke(task) : task.compute();
+        } finally {
+            if (rewriteTable != null && ts.getLogger().isLoggable(Level.FINE))
+                ts.getLogger().fine("Constraint rules: " + rewriteTable);
+            rewriteTable = null;
+        }
 
-            if (conRulesSet.size() > 100 || (allRange.size() > 500 && cur % 100 == 0)) {
-                System.out.println(cur + "/" + allRange.size() + " -- processed " + conRuleCount + " constraint rules");
-                // System.gc();
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Formula> iterator() {
+                // Create a disjoint formula containing several ground formulas.
+                // Not sure if this is the right approach...
+                return headToBodyMap.entrySet().stream()
+                        .map(entry -> (Formula) FormulaFactory.implies(FormulaFactory.or(entry.getValue()), entry.getKey().toPropFormula()))
+                        .iterator();
             }
 
-            if ((allRange.size() > 500 && cur % 3000 == 0)) {
-                System.out.println("Collecting");
-                System.gc();
+            @Override
+            public int size() {
+                return headToBodyMap.size();
             }
+        };
+    }
 
-            // For all constraint rules, we must obtain "rewrite" consequences, in order to simplify and propositionalize the rule
-            for (Rule conRule : conRulesSet) {
-                conRuleCount++;
+    private static synchronized ForkJoinPool getConstraintPool(int parallelism) {
+        if (constraintPool == null)
+            constraintPool = new ForkJoinPool(parallelism);
+        return constraintPool;
+    }
 
-                var rewriteIter = conRule.getBody().rewriteConsequences(ag, new Unifier());
+    /**
+     * Finds the ground (propositionalized) bodies of the constraint rules for a slice of the range literals.
+     * Slices larger than the threshold are split in two and processed in parallel. Each task uses its own
+     * unifiers and map, and results are merged in the order of the range literals, so the result is
+     * the same as the one of a sequential computation.
+     */
+    private static class RangeConstraintTask extends RecursiveTask<Map<Literal, Set<Formula>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Agent ag;
+        private final List<Literal> allRange;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final AtomicInteger processed;
+        private final transient Logger logger;
+
+        RangeConstraintTask(Agent ag, List<Literal> allRange, int from, int to, int threshold, AtomicInteger processed, Logger logger) {
+            this.ag = ag;
+            this.allRange = allRange;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.processed = processed;
+            this.logger = logger;
+        }
 
-                // How do we want to propositionalize a rule with a 'false' body?
-                // Eg loc(1) :- false. is propped as 'true or loc(1)' which is trivially true.
-                if (rewriteIter == null || !rewriteIter.hasNext())
-                    continue;
+        @Override
+        protected Map<Literal, Set<Formula>> compute() {
+            if (to - from > threshold) {
+                int mid = (from + to) >>> 1;
+                RangeConstraintTask right = new RangeConstraintTask(ag, allRange, mid, to, threshold, processed, logger);
+                right.fork();
+                Map<Literal, Set<Formula>> headToBodyMap = new RangeConstraintTask(ag, allRange, from, mid, threshold, processed, logger).compute();
+                for (var entry : right.join().entrySet())
+                    headToBodyMap.computeIfAbsent(entry.getKey(), k -> new LinkedHashSet<>()).addAll(entry.getValue());
+                return headToBodyMap;
+            }
 
+            Map<Literal, Set<Formula>> headToBodyMap = new LinkedHashMap<>();
+            for (Literal rangeLit : allRange.subList(from, to)) {
+                var conRulesSet = getCandidateRules(ag, ag.getBB(), rangeLit, new Unifier());
 
-                while (rewriteIter.hasNext()) {
-                    var next = rewriteIter.next();
+                // For all constraint rules, we must obtain "rewrite" consequences, in order to simplify and propositionalize the rule
+                for (Rule conRule : conRulesSet) {
+                    var rewriteIter = conRule.getBody().rewriteConsequences(ag, new Unifier());
 
-                    // Obtain unified head
-                    var headUnif = conRule.headCApply(next.getUnifier());
-                    if (!headUnif.isGround()) {
-                        System.out.println("Head unif is not ground");
+                    // How do we want to propositionalize a rule with a 'false' body?
+                    // Eg loc(1) :- false. is propped as 'true or loc(1)' which is trivially true.
+                    if (rewriteIter == null || !rewriteIter.hasNext())
                         continue;
-                    }
-                    var set = headToBodyMap.getOrDefault(headUnif, new ArrayList<>());
-                    set.add(next.getFormula());
-                    headToBodyMap.put(headUnif, set);
-                }
-            }
-        }
 
-        for (var entry : headToBodyMap.entrySet()) {
-            var head = entry.getKey();
-            var fullForm = entry.getValue();
 
-            // Create a disjoint formula containing several ground formulas.
-            List<Formula> groundDisjForms = new ArrayList<>();
+                    while (rewriteIter.hasNext()) {
+                        var next = rewriteIter.next();
 
-            for (var form : fullForm)
-                groundDisjForms.add(form.simplify().toPropFormula());
+                        // Obtain unified head
+                        var headUnif = conRule.headCApply(next.getUnifier());
+                        if (!headUnif.isGround()) {
+                            System.out.println("Head unif is not ground");
+                            continue;
+                        }
+                        // Bodies are interned formulas, so duplicate bodies are dropped with identity checks
+                        headToBodyMap.computeIfAbsent(headUnif, k -> new LinkedHashSet<>()).add(next.getFormula().simplify().toPropFormula());
+                    }
+                }
 
-            // Not sure if this is the right approach...
-            constraintRulesProps.add(new ImpliesFormula(new OrFormula(groundDisjForms), head.toPropFormula()));
+                int cur = processed.incrementAndGet();
+                if (allRange.size() > 500 && cur % 1000 == 0 && logger.isLoggable(Level.FINE))
+                    logger.fine(cur + "/" + allRange.size() + " range literals processed");
+            }
+            return headToBodyMap;
         }
-
-        return constraintRulesProps;
     }
 
     private Formula simplifyAndProp(LogicalFormula unpared) {
@@ -401,7 +758,7 @@ public class EpistemicExtension implements CircumstanceListener {
      * @param unif
      * @return
      */
-    private Collection<Rule> getCandidateRules(Agent a, BeliefBase beliefBase, Literal literal, Unifier unif) {
+    private static Collection<Rule> getCandidateRules(Agent a, BeliefBase beliefBase, Literal literal, Unifier unif) {
         List<Rule> candidates = new ArrayList<>();
         var rangeIter = beliefBase.getCandidateBeliefs(literal, unif);
 
@@ -449,6 +806,29 @@ public class EpistemicExtension implements CircumstanceListener {
         return constraints;
     }
 
+    /**
+     * @param newValues the values of the ranges that are not ranged yet, appended by this method.
+     * @return the constraints of the ranges with new values.
+     */
+    private Collection<Formula> getNewRangeConstraints(Agent ag, List<Literal> newValues) {
+        Literal rangeVar = ASSyntax.createLiteral("range", ASSyntax.createVar());
+        var rangeIter = rangeVar.rewriteConsequences(ag, new Unifier());
+
+        List<Formula> constraints = new ArrayList<>();
+        Set<Literal> found = new HashSet<>();
+        while (rangeIter != null && rangeIter.hasNext()) {
+            List<Literal> values = new ArrayList<>();
+            Formula rangeProp = propRange(rangeVar, rangeIter.next().getUnifier(), values, ag.getBB());
+
+            if (rangeProp == null || values.stream().allMatch(v -> rangedBeliefs.contains(v) != null || found.contains(v)))
+                continue;
+            constraints.add(rangeProp);
+            found.addAll(values);
+            newValues.addAll(values);
+        }
+        return constraints;
+    }
+
     /**
      * Propositionalizes a single range literal. We append positive and negative ground range values (first terms) to th e rangeValOut and belBase.
      *
@@ -493,35 +873,170 @@ public class EpistemicExtension implements CircumstanceListener {
     }
 
     private AndFormula createConjunction(Set<Formula> literals) {
-        return new AndFormula(literals);
+        return FormulaFactory.and(literals);
     }
 
     private OrFormula createDisjunction(Set<Formula> literals) {
-        return new OrFormula(literals);
+        return FormulaFactory.or(literals);
     }
 
     public boolean evaluate(EpistemicModality modality, Literal litCons, Formula propFormula) {
+        metrics.increment(EpistemicMetrics.EVALUATIONS);
+
         // Evaluate true/false without delegating to reasoner
+        Boolean constant = evaluateConstant(propFormula);
+        if (constant != null)
+            return constant;
+
+        if (!isModelEvaluable(litCons))
+            return true;
+
+        awaitEventModels();
+
+        // Map modality to formulas
+        ModalPropFormula modalFormula = FormulaFactory.modal(modality, propFormula);
+        Boolean cached = queryCache.get(modalFormula);
+        if (cached != null)
+            return cached;
+
+        long version = queryCache.getModelVersion();
+        long startTime = System.nanoTime();
+        boolean result = reasoner.evaluateFormula(modalFormula);
+        metrics.recordTime(EpistemicMetrics.EVALUATE_TIME, startTime);
+        metrics.record(EpistemicMetrics.FORMULAS_PER_BATCH, 1, EpistemicMetrics.ITEMS);
+        queryCache.put(modalFormula, result, version);
+        return result;
+    }
+
+    /**
+     * Evaluates several candidate formulas for the same literal consequence, sending all the formulas
+     * that can not be evaluated locally to the reasoner in a single batch.
+     *
+     * @return the valuation of each formula, in the same order as propFormulas.
+     */
+    public boolean[] evaluate(EpistemicModality modality, Literal litCons, List<Formula> propFormulas) {
+        boolean[] results = new boolean[propFormulas.size()];
+        metrics.add(EpistemicMetrics.EVALUATIONS, propFormulas.size());
+
+        List<ModalPropFormula> batch = new ArrayList<>();
+        List<Integer> batchIndexes = new ArrayList<>();
+        boolean evaluable = true;
+        boolean checkedModel = false;
+
+        for (int i = 0; i < propFormulas.size(); i++) {
+            Boolean constant = evaluateConstant(propFormulas.get(i));
+            if (constant != null) {
+                results[i] = constant;
+                continue;
+            }
+
+            if (!checkedModel) {
+                evaluable = isModelEvaluable(litCons);
+                checkedModel = true;
+                if (evaluable)
+                    awaitEventModels();
+            }
+
+            if (!evaluable) {
+                results[i] = true;
+                continue;
+            }
+
+            ModalPropFormula modalFormula = FormulaFactory.modal(modality, propFormulas.get(i));
+            Boolean cached = queryCache.get(modalFormula);
+            if (cached != null) {
+                results[i] = cached;
+                continue;
+            }
+
+            batch.add(modalFormula);
+            batchIndexes.add(i);
+        }
+
+        if (batch.isEmpty())
+            return results;
+
+        long version = queryCache.getModelVersion();
+        long startTime = System.nanoTime();
+        List<Boolean> batchResults = reasoner.evaluateModalFormulas(batch);
+        metrics.recordTime(EpistemicMetrics.EVALUATE_TIME, startTime);
+        metrics.record(EpistemicMetrics.FORMULAS_PER_BATCH, batch.size(), EpistemicMetrics.ITEMS);
+        for (int i = 0; i < batchIndexes.size(); i++) {
+            results[batchIndexes.get(i)] = batchResults.get(i);
+            queryCache.put(batch.get(i), batchResults.get(i), version);
+        }
+
+        return results;
+    }
+
+    /**
+     * @return true if the literal is valued by the epistemic model. Before the model is created, only 'poss'
+     * literals are managed.
+     */
+    public boolean isManaged(Literal l) {
+        if (managedPredicates == null)
+            return ManagedPredicates.isPossLiteral(l);
+        return managedPredicates.isManaged(l);
+    }
+
+    /**
+     * @return true if the model manages some predicate of the agent program.
+     */
+    public boolean hasManagedPredicates() {
+        return managedPredicates != null && !managedPredicates.isEmpty();
+    }
+
+    public EpistemicMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the table of the rewrite consequences of the goals derived while the constraint rules are
+     * propositionalized, or null if the goals are not tabled.
+     */
+    public RewriteTable getRewriteTable() {
+        return rewriteTable;
+    }
+
+    public EpistemicQueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * @return the maximum number of candidate formulas that should be evaluated in a single batch.
+     */
+    public int getEvaluationBatchSize() {
+        return evaluationBatchSize;
+    }
+
+    /**
+     * @return the valuation of 'true' and 'false' propositions, or null if the formula needs to be evaluated by the reasoner.
+     */
+    private Boolean evaluateConstant(Formula propFormula) {
         if (propFormula instanceof PropFormula) {
             if (((PropFormula) propFormula).getPropLit().equals(Literal.LTrue))
                 return true;
             else if (((PropFormula) propFormula).getPropLit().equals(Literal.LFalse))
                 return false;
         }
+        return null;
+    }
 
+    /**
+     * @return false if the consequence can not be evaluated by the reasoner (all consequences should be true).
+     */
+    private boolean isModelEvaluable(Literal litCons) {
         if (!modelCreated) {
             System.out.println("WARNING: Evaluating formula while model is uninitialized. All consequences may return true.");
-            return true;
+            return false;
         }
 
         if(reasonerType == ReasonerType.PAL && rangedBeliefs.contains(litCons.clearAnnots()) == null)
         {
             System.out.println("Non-ranged belief evaluation for " + litCons.clearAnnots());
-            return true;
+            return false;
         }
-
-        // Map modality to formulas
-        return reasoner.evaluateFormula(new ModalPropFormula(modality, propFormula));
+        return true;
     }
 
     @Override
@@ -530,6 +1045,12 @@ public class EpistemicExtension implements CircumstanceListener {
         if (e.getTrigger().getType() != Trigger.TEType.belief)
             return;
 
+        // Ranges and rules change the propositions and constraints of the model, not the current world
+        if (isVocabularyChange(e.getTrigger().getLiteral())) {
+            vocabularyChanged(e.getTrigger());
+            return;
+        }
+
         Literal evTrigNoAnn = e.getTrigger().getLiteral().clearAnnots();
 
         // Do not update model if we are in PAL mode and the update is not ranged.
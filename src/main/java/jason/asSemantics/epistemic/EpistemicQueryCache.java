@@ -0,0 +1,92 @@
+package jason.asSemantics.epistemic;
+
+import jason.asSemantics.epistemic.reasoner.formula.ModalPropFormula;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of modal formula valuations for one agent.
+ * <p>
+ * All the entries are dropped every time the model changes (model creation and event model application),
+ * which increments the model version; valuations computed against a previous version are not cached.
+ */
+public class EpistemicQueryCache {
+
+    private final int maxSize;
+    private final Map<ModalPropFormula, Boolean> entries;
+    private long modelVersion = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public EpistemicQueryCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ModalPropFormula, Boolean> eldest) {
+                return size() > EpistemicQueryCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the cached valuation of the formula, or null if there is none.
+     */
+    public synchronized Boolean get(ModalPropFormula formula) {
+        if (maxSize <= 0)
+            return null;
+
+        Boolean value = entries.get(formula);
+        if (value == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return value;
+    }
+
+    /**
+     * Caches the valuation of a formula.
+     *
+     * @param version the model version the formula was evaluated against (see {@link #getModelVersion()}).
+     *                Valuations of an outdated version are ignored.
+     */
+    public synchronized void put(ModalPropFormula formula, boolean value, long version) {
+        if (maxSize > 0 && version == modelVersion)
+            entries.put(formula, value);
+    }
+
+    /**
+     * Invalidates all cached valuations, called whenever the epistemic model changes.
+     */
+    public synchronized void newModelVersion() {
+        modelVersion++;
+        entries.clear();
+    }
+
+    public synchronized long getModelVersion() {
+        return modelVersion;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "query cache (version " + modelVersion + "): " + entries.size() + " entries, " + hits + " hits, " + misses + " misses";
+    }
+}
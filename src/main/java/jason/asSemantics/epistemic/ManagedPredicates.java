@@ -0,0 +1,152 @@
+package jason.asSemantics.epistemic;
+
+import jason.asSemantics.Agent;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicModality;
+import jason.asSyntax.*;
+
+import java.util.*;
+
+/**
+ * Static analysis of an agent program that classifies its predicates as epistemically managed or plain.
+ * <p>
+ * A predicate is managed when its valuation may differ from the belief base, i.e.:
+ * - it is a range value;
+ * - it is the trigger or a belief update of an 'on' plan (the effects of 'on' plans only exist in the model);
+ * - it is the head of a rule whose body refers to a managed predicate (transitively).
+ * <p>
+ * Plain predicates are valued by the belief base alone, so their logical consequences can be found by
+ * unification, without propositionalizing them or querying the reasoner.
+ * Negated literals share the indicator of their positive literal.
+ */
+public class ManagedPredicates {
+
+    private final Set<PredicateIndicator> managed = new HashSet<>();
+    private boolean allManaged = false;
+
+    /**
+     * @param ag          the agent, with its program already loaded.
+     * @param rangeValues the range values of the agent (see {@link EpistemicExtension}).
+     * @param onFunctor   the functor of the 'on' plan triggers.
+     */
+    public ManagedPredicates(Agent ag, Iterable<Literal> rangeValues, String onFunctor) {
+        for (Literal l : rangeValues)
+            managed.add(indicatorOf(l));
+
+        for (Plan p : ag.getPL().getPlans())
+            addOnPlan(p, onFunctor);
+
+        addRuleHeads(ag);
+    }
+
+    private ManagedPredicates() {
+    }
+
+    /**
+     * @return the given predicates and the heads of the rules of the agent that refer to them (transitively),
+     * i.e. the predicates whose consequences change when the given predicates change.
+     */
+    static Set<PredicateIndicator> dependents(Agent ag, Collection<PredicateIndicator> indicators) {
+        ManagedPredicates dependents = new ManagedPredicates();
+        dependents.managed.addAll(indicators);
+        dependents.addRuleHeads(ag);
+        return dependents.managed;
+    }
+
+    /**
+     * @return true if the literal is valued by the epistemic model. 'poss' literals are always managed.
+     */
+    public boolean isManaged(Literal l) {
+        if (allManaged || isPossLiteral(l))
+            return true;
+        return managed.contains(indicatorOf(l));
+    }
+
+    /**
+     * @return true if no predicate of the program is managed, so all consequences can be found by unification.
+     */
+    public boolean isEmpty() {
+        return !allManaged && managed.isEmpty();
+    }
+
+    public Set<PredicateIndicator> getManaged() {
+        return Collections.unmodifiableSet(managed);
+    }
+
+    static PredicateIndicator indicatorOf(Literal l) {
+        return new PredicateIndicator(l.getNS(), l.getFunctor(), l.getArity());
+    }
+
+    static boolean isPossLiteral(Literal l) {
+        return l.getArity() == 1 && EpistemicModality.POSSIBLE.isFunctor(l.getFunctor());
+    }
+
+    private void addOnPlan(Plan p, String onFunctor) {
+        Literal trigger = p.getTrigger().getLiteral();
+        if (!trigger.getFunctor().equals(onFunctor) || trigger.getArity() != 1)
+            return;
+
+        Term onLit = trigger.getTerm(0);
+        if (onLit.isVar()) {
+            // an 'on' plan for any event: every belief may be updated by the model
+            allManaged = true;
+            return;
+        }
+        if (onLit.isLiteral())
+            managed.add(indicatorOf((Literal) onLit));
+
+        PlanBody cur = p.getBody();
+        while (cur != null && cur.getBodyTerm() != null) {
+            if (cur.getBodyTerm().isLiteral() && (cur.getBodyType() == PlanBody.BodyType.addBel || cur.getBodyType() == PlanBody.BodyType.delBel))
+                managed.add(indicatorOf((Literal) cur.getBodyTerm()));
+            cur = cur.getBodyNext();
+        }
+    }
+
+    /**
+     * Adds the heads of the rules that refer to managed predicates, until a fixed point is reached.
+     */
+    private void addRuleHeads(Agent ag) {
+        List<Rule> rules = new ArrayList<>();
+        for (Literal b : ag.getBB()) {
+            if (b.isRule())
+                rules.add((Rule) b);
+        }
+
+        boolean changed = true;
+        while (changed && !allManaged) {
+            changed = false;
+            for (Rule r : rules) {
+                PredicateIndicator head = indicatorOf(r);
+                if (!managed.contains(head) && refersToManaged(r.getBody()))
+                    changed |= managed.add(head);
+            }
+        }
+    }
+
+    private boolean refersToManaged(Term t) {
+        if (t == null || t instanceof RelExpr)
+            return false;
+        if (t.isVar())
+            return true; // the formula is only known at run time
+
+        if (t instanceof LogExpr) {
+            // 'not' expressions only have one operand
+            LogExpr expr = (LogExpr) t;
+            for (int i = 0; i < expr.getArity(); i++)
+                if (refersToManaged(expr.getTerm(i)))
+                    return true;
+            return false;
+        }
+
+        if (t.isInternalAction()) {
+            // formulas given as arguments (e.g. .findall(X, p(X), L)) are conservatively considered queries
+            InternalActionLiteral ia = (InternalActionLiteral) t;
+            for (int i = 0; i < ia.getArity(); i++)
+                if (!ia.getTerm(i).isVar() && refersToManaged(ia.getTerm(i)))
+                    return true;
+            return false;
+        }
+
+        return t.isLiteral() && isManaged((Literal) t);
+    }
+}
@@ -0,0 +1,180 @@
+package jason.asSemantics.epistemic;
+
+import jason.asSemantics.RewriteUnifier;
+import jason.asSemantics.Unifier;
+import jason.asSyntax.Literal;
+import jason.asSyntax.LogicalFormula;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Table of the rewrite consequences of the goals derived while the constraint rules of a model are
+ * propositionalized.
+ * <p>
+ * The same sub-goals (e.g. <code>loc(X,Y)</code> in the bodies of many constraint rules) are derived again
+ * for every range literal. Once all the answers of a goal have been enumerated, they are stored under the
+ * variant of the goal (the goal with its bound arguments, up to the renaming of its variables), and later
+ * derivations of a variant replay the stored answers instead of enumerating the belief base and rules again.
+ * <p>
+ * Only goals whose answers are all ground are tabled, and the table is only valid while the belief base
+ * does not change: it is created for the construction of a model and dropped afterwards.
+ * The table can be used by several threads.
+ */
+public class RewriteTable {
+
+    // Quoted strings, or variables (named or unnamed) in the string of a term
+    private static final Pattern VARS = Pattern.compile("\"(?:[^\"\\\\]|\\\\.)*\"|(?<![A-Za-z0-9_])[A-Z_][A-Za-z0-9_]*");
+
+    private final Map<String, List<Answer>> answers = new ConcurrentHashMap<>();
+    private final Set<String> untabled = ConcurrentHashMap.newKeySet();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param goal   the goal to rewrite.
+     * @param un     the unifier of the goal.
+     * @param derive derives the rewrite consequences of the goal when they are not tabled.
+     * @return the rewrite consequences of the goal.
+     */
+    public Iterator<RewriteUnifier> rewriteConsequences(Literal goal, Unifier un, Supplier<Iterator<RewriteUnifier>> derive) {
+        String key = variantKey(goal, un);
+
+        List<Answer> tabled = answers.get(key);
+        if (tabled != null) {
+            hits.incrementAndGet();
+            return replay(goal, un, tabled);
+        }
+
+        misses.incrementAndGet();
+        Iterator<RewriteUnifier> derived = derive.get();
+        if (untabled.contains(key))
+            return derived;
+        return new RecordingIterator(key, goal, derived);
+    }
+
+    /**
+     * @return a key that is the same for the goals that are equal up to the renaming of their variables.
+     */
+    static String variantKey(Literal goal, Unifier un) {
+        Literal applied = (Literal) goal.capply(un);
+        String s = applied.toString();
+        if (applied.isGround())
+            return s;
+
+        Map<String, String> names = new HashMap<>();
+        Matcher m = VARS.matcher(s);
+        StringBuilder key = new StringBuilder(s.length());
+        while (m.find()) {
+            String token = m.group();
+            if (token.charAt(0) != '"')
+                token = names.computeIfAbsent(token, k -> "V" + names.size());
+            m.appendReplacement(key, Matcher.quoteReplacement(token));
+        }
+        m.appendTail(key);
+        return key.toString();
+    }
+
+    private static Iterator<RewriteUnifier> replay(Literal goal, Unifier un, List<Answer> tabled) {
+        return new Iterator<>() {
+            final Iterator<Answer> it = tabled.iterator();
+            RewriteUnifier current = null;
+
+            public boolean hasNext() {
+                while (current == null && it.hasNext()) {
+                    Answer answer = it.next();
+                    Unifier u = un.clone();
+                    // the formulas are cloned as they may be simplified in place by the caller
+                    if (u.unifiesNoUndo(goal, answer.goal))
+                        current = new RewriteUnifier((LogicalFormula) answer.formula.clone(), u);
+                }
+                return current != null;
+            }
+
+            public RewriteUnifier next() {
+                hasNext();
+                RewriteUnifier next = current;
+                current = null;
+                return next;
+            }
+        };
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of tabled goals.
+     */
+    public int size() {
+        return answers.size();
+    }
+
+    @Override
+    public String toString() {
+        return "rewrite table of " + size() + " goals, " + getHits() + " hits, " + getMisses() + " misses";
+    }
+
+    private static class Answer {
+        final Literal goal;
+        final LogicalFormula formula;
+
+        Answer(Literal goal, LogicalFormula formula) {
+            this.goal = goal;
+            this.formula = formula;
+        }
+    }
+
+    /**
+     * Stores the answers of a goal once they have all been enumerated.
+     */
+    private class RecordingIterator implements Iterator<RewriteUnifier> {
+        private final String key;
+        private final Literal goal;
+        private final Iterator<RewriteUnifier> derived;
+        private List<Answer> recorded = new ArrayList<>();
+
+        RecordingIterator(String key, Literal goal, Iterator<RewriteUnifier> derived) {
+            this.key = key;
+            this.goal = goal;
+            this.derived = derived;
+        }
+
+        public boolean hasNext() {
+            boolean hasNext = derived.hasNext();
+            if (!hasNext && recorded != null) {
+                answers.putIfAbsent(key, recorded);
+                recorded = null;
+            }
+            return hasNext;
+        }
+
+        public RewriteUnifier next() {
+            RewriteUnifier next = derived.next();
+            if (next != null && recorded != null) {
+                Literal answer = (Literal) goal.capply(next.getUnifier());
+                if (answer.isGround() && next.getFormula().isGround()) {
+                    recorded.add(new Answer(answer, (LogicalFormula) next.getFormula().clone()));
+                } else {
+                    untabled.add(key);
+                    recorded = null;
+                }
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package jason.asSemantics.epistemic.metrics;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
+
+/**
+ * Registry of the epistemic reasoning metrics of one agent: counters, histograms (latencies in
+ * nanoseconds, request/response sizes in bytes, formulas per batch) and gauges (e.g. the query cache hit ratio).
+ * <p>
+ * The metrics of each agent are registered over JMX (next to the MAS runner, as
+ * <code>jason.sf.net:type=epistemic,agent=&lt;name&gt;</code>) and all of them can be written as CSV
+ * with {@link #dumpCsv(String)}.
+ */
+public class EpistemicMetrics implements EpistemicMetricsMBean {
+
+    // metric names
+    public static final String CONSTRAINTS_TIME = "model.constraints.time";
+    public static final String CONSTRAINTS = "model.constraints";
+    public static final String MODEL_CREATE_TIME = "reasoner.createModel.time";
+    public static final String MODEL_CREATE_FAILURES = "reasoner.createModel.failures";
+    public static final String MODEL_EXTEND_TIME = "reasoner.extendModel.time";
+    public static final String MODEL_REBUILDS = "model.rebuilds";
+    public static final String EVENT_BUILD_TIME = "event.build.time";
+    public static final String EVENTS_PER_MODEL = "event.delEvents";
+    public static final String EVENT_MODELS = "event.models";
+    public static final String EVENT_MODELS_PER_BATCH = "event.modelsPerBatch";
+    public static final String EVENT_APPLY_TIME = "reasoner.applyEvent.time";
+    public static final String EVENT_APPLY_FAILURES = "reasoner.applyEvent.failures";
+    public static final String EVALUATE_TIME = "reasoner.evaluate.time";
+    public static final String FORMULAS_PER_BATCH = "reasoner.evaluate.formulasPerBatch";
+    public static final String EVALUATIONS = "evaluate.formulas";
+    public static final String QUERY_CACHE_HIT_RATIO = "queryCache.hitRatio";
+    public static final String REQUEST_BYTES = "http.request.bytes";
+    public static final String RESPONSE_BYTES = "http.response.bytes";
+
+    public static final String NANOSECONDS = "ns";
+    public static final String BYTES = "bytes";
+    public static final String ITEMS = "items";
+
+    private static final String CSV_HEADER = "agent,metric,type,unit,count,sum,min,max,mean,p50,p90,p99";
+    private static final Logger LOGGER = Logger.getLogger(EpistemicMetrics.class.getName());
+    private static final Map<String, EpistemicMetrics> registered = new ConcurrentHashMap<>();
+
+    private final String agentName;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    public EpistemicMetrics(String agentName) {
+        this.agentName = agentName;
+    }
+
+    @Override
+    public String getAgentName() {
+        return agentName;
+    }
+
+    public void increment(String counter) {
+        add(counter, 1);
+    }
+
+    public void add(String counter, long value) {
+        counters.computeIfAbsent(counter, k -> new LongAdder()).add(value);
+    }
+
+    /**
+     * Records a value in a histogram, created with the given unit the first time it is used.
+     */
+    public void record(String histogram, long value, String unit) {
+        histograms.computeIfAbsent(histogram, k -> new Histogram(unit)).record(value);
+    }
+
+    /**
+     * Records the time elapsed since <i>startNanos</i> (obtained from {@link System#nanoTime()}).
+     */
+    public void recordTime(String histogram, long startNanos) {
+        record(histogram, System.nanoTime() - startNanos, NANOSECONDS);
+    }
+
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public long getCounter(String counter) {
+        LongAdder c = counters.get(counter);
+        return c == null ? 0 : c.sum();
+    }
+
+    public Histogram getHistogram(String histogram) {
+        return histograms.get(histogram);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((k, v) -> values.put(k, v.sum()));
+        return values;
+    }
+
+    @Override
+    public Map<String, String> getHistograms() {
+        Map<String, String> values = new TreeMap<>();
+        histograms.forEach((k, v) -> values.put(k, v.toString()));
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getGauges() {
+        Map<String, Double> values = new TreeMap<>();
+        gauges.forEach((k, v) -> values.put(k, v.getAsDouble()));
+        return values;
+    }
+
+    @Override
+    public long getPercentile(String histogram, double percentile) {
+        Histogram h = histograms.get(histogram);
+        return h == null ? 0 : h.getPercentile(percentile);
+    }
+
+    @Override
+    public String toCsv() {
+        StringBuilder out = new StringBuilder(CSV_HEADER).append('\n');
+        appendCsv(out);
+        return out.toString();
+    }
+
+    private void appendCsv(StringBuilder out) {
+        String agent = csvField(agentName);
+        getCounters().forEach((k, v) ->
+                out.append(agent).append(',').append(k).append(",counter,,").append(v).append(",,,,,,,\n"));
+        getGauges().forEach((k, v) ->
+                out.append(agent).append(',').append(k).append(",gauge,,,").append(v).append(",,,,,,\n"));
+        new TreeMap<>(histograms).forEach((k, h) -> out.append(agent).append(',').append(k).append(",histogram,")
+                .append(h.getUnit()).append(',').append(h.getCount()).append(',').append(h.getSum()).append(',')
+                .append(h.getMin()).append(',').append(h.getMax()).append(',').append(String.format("%.1f", h.getMean())).append(',')
+                .append(h.getPercentile(50)).append(',').append(h.getPercentile(90)).append(',').append(h.getPercentile(99)).append('\n'));
+    }
+
+    private static String csvField(String value) {
+        if (value.contains(",") || value.contains("\""))
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        return value;
+    }
+
+    @Override
+    public void reset() {
+        counters.clear();
+        histograms.values().forEach(Histogram::reset);
+    }
+
+    @Override
+    public String toString() {
+        return "Epistemic metrics of " + agentName + ": " + getCounters() + " " + getHistograms() + " " + getGauges();
+    }
+
+    /**
+     * Registers the metrics over JMX, the metrics are also included in {@link #dumpCsv(String)}.
+     */
+    public void register() {
+        registered.put(agentName, this);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, getObjectName(agentName));
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Could not register the epistemic metrics of " + agentName + " over JMX", e);
+        }
+    }
+
+    public static Map<String, EpistemicMetrics> getRegistered() {
+        return registered;
+    }
+
+    /**
+     * Writes the metrics of all registered agents to a CSV file.
+     */
+    public static void dumpCsv(String fileName) {
+        StringBuilder out = new StringBuilder(CSV_HEADER).append('\n');
+        new TreeMap<>(registered).values().forEach(m -> m.appendCsv(out));
+        try (Writer w = new FileWriter(fileName, false)) {
+            w.write(out.toString());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write the epistemic metrics to " + fileName, e);
+        }
+    }
+
+    /**
+     * Unregisters the metrics of all agents from JMX.
+     */
+    public static void unregisterAll() {
+        for (String agentName : registered.keySet()) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(agentName));
+            } catch (Exception e) {
+                // not registered over JMX
+            }
+        }
+        registered.clear();
+    }
+
+    private static ObjectName getObjectName(String agentName) throws Exception {
+        return new ObjectName("jason.sf.net:type=epistemic,agent=" + ObjectName.quote(agentName));
+    }
+}
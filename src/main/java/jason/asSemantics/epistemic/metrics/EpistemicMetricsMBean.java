@@ -0,0 +1,13 @@
+package jason.asSemantics.epistemic.metrics;
+
+import java.util.Map;
+
+public interface EpistemicMetricsMBean {
+    public String              getAgentName();
+    public Map<String, Long>   getCounters();
+    public Map<String, String> getHistograms();
+    public Map<String, Double> getGauges();
+    public long                getPercentile(String histogram, double percentile);
+    public String              toCsv();
+    public void                reset();
+}
@@ -0,0 +1,460 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A manager of reduced ordered binary decision diagrams (ROBDDs). A BDD is identified by the int id of its
+ * root node: {@link #FALSE} and {@link #TRUE} are the terminals, and every other node tests a variable.
+ * Variables are ordered by their index (smaller indexes are closer to the root) and new variables are
+ * added at the bottom of the order, so existing BDDs remain valid.
+ * <p>
+ * Nodes are hash-consed in a unique table, so equivalent functions are represented by the same node and
+ * equivalence checks are id comparisons. Nodes are never freed: the live BDDs are compacted by copying
+ * them to a new manager (see {@link #copyTo(Bdd, int)}).
+ * <p>
+ * All operations are iterative, so BDDs over tens of thousands of variables do not overflow the stack.
+ * Managers are not thread safe.
+ */
+final class Bdd {
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+
+    // binary operators of apply
+    static final int AND = 0;
+    static final int OR = 1;
+    static final int IMPLIES = 2;
+    static final int EQUIV = 3;
+    static final int XOR = 4;
+
+    private static final int TERMINAL_LEVEL = Integer.MAX_VALUE;
+    private static final int CACHE_SIZE = 1 << 18;
+
+    private final int maxNodes;
+    private int varCount = 0;
+
+    private int[] level = new int[1024];
+    private int[] low = new int[1024];
+    private int[] high = new int[1024];
+    private int nodeCount = 2;
+
+    // open addressing table of node ids, 0 is an empty slot (terminals are not in the table)
+    private int[] unique = new int[2048];
+
+    // direct mapped cache of apply results
+    private final int[] cacheOp = new int[CACHE_SIZE];
+    private final int[] cacheF = new int[CACHE_SIZE];
+    private final int[] cacheG = new int[CACHE_SIZE];
+    private final int[] cacheRes = new int[CACHE_SIZE];
+
+    /**
+     * @param maxNodes the maximum number of nodes of the manager.
+     */
+    Bdd(int maxNodes) {
+        this.maxNodes = maxNodes;
+        level[FALSE] = level[TRUE] = TERMINAL_LEVEL;
+        Arrays.fill(cacheOp, -1);
+    }
+
+    /**
+     * @return a new variable, at the bottom of the variable order.
+     */
+    int newVar() {
+        return varCount++;
+    }
+
+    int getVarCount() {
+        return varCount;
+    }
+
+    /**
+     * @return the number of nodes of the manager, including the nodes that are no longer used.
+     */
+    int size() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the BDD of the variable.
+     */
+    int var(int v) {
+        return mk(v, FALSE, TRUE);
+    }
+
+    /**
+     * @return the BDD of the negation of the variable.
+     */
+    int notVar(int v) {
+        return mk(v, TRUE, FALSE);
+    }
+
+    int not(int f) {
+        return apply(XOR, f, TRUE);
+    }
+
+    int and(int f, int g) {
+        return apply(AND, f, g);
+    }
+
+    int or(int f, int g) {
+        return apply(OR, f, g);
+    }
+
+    private int mk(int v, int lo, int hi) {
+        if (lo == hi)
+            return lo;
+
+        int mask = unique.length - 1;
+        int slot = hash(v, lo, hi) & mask;
+        for (int n = unique[slot]; n != 0; n = unique[slot]) {
+            if (level[n] == v && low[n] == lo && high[n] == hi)
+                return n;
+            slot = (slot + 1) & mask;
+        }
+
+        if (nodeCount >= maxNodes)
+            throw new IllegalStateException("The BDD has more than " + maxNodes + " nodes");
+
+        if (nodeCount == level.length) {
+            int capacity = (int) Math.min((long) nodeCount * 2, Integer.MAX_VALUE - 8);
+            level = Arrays.copyOf(level, capacity);
+            low = Arrays.copyOf(low, capacity);
+            high = Arrays.copyOf(high, capacity);
+        }
+
+        int n = nodeCount++;
+        level[n] = v;
+        low[n] = lo;
+        high[n] = hi;
+        unique[slot] = n;
+
+        if (nodeCount * 2 > unique.length)
+            rehash();
+        return n;
+    }
+
+    private void rehash() {
+        unique = new int[unique.length * 2];
+        int mask = unique.length - 1;
+        for (int n = 2; n < nodeCount; n++) {
+            int slot = hash(level[n], low[n], high[n]) & mask;
+            while (unique[slot] != 0)
+                slot = (slot + 1) & mask;
+            unique[slot] = n;
+        }
+    }
+
+    private static int hash(int v, int lo, int hi) {
+        int h = v * 0x9E3779B1 + lo * 0x85EBCA77 + hi * 0xC2B2AE3D;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Applies a binary operator ({@link #AND}, {@link #OR}, {@link #IMPLIES}, {@link #EQUIV} or {@link #XOR}).
+     */
+    int apply(int op, int f, int g) {
+        IntStack tasks = new IntStack();
+        IntStack values = new IntStack();
+        tasks.push(f, g, 0);
+
+        while (!tasks.isEmpty()) {
+            int stage = tasks.pop();
+            g = tasks.pop();
+            f = tasks.pop();
+
+            if (stage == 0) {
+                int r = terminal(op, f, g);
+                if (r < 0) {
+                    if (op != IMPLIES && f > g) { // commutative operators share cache entries
+                        int t = f;
+                        f = g;
+                        g = t;
+                    }
+                    r = cacheGet(op, f, g);
+                }
+                if (r >= 0) {
+                    values.push(r);
+                    continue;
+                }
+
+                int v = Math.min(level[f], level[g]);
+                tasks.push(f, g, 1);
+                tasks.push(level[f] == v ? high[f] : f, level[g] == v ? high[g] : g, 0);
+                tasks.push(level[f] == v ? low[f] : f, level[g] == v ? low[g] : g, 0);
+            } else {
+                int hi = values.pop();
+                int lo = values.pop();
+                int r = mk(Math.min(level[f], level[g]), lo, hi);
+                cachePut(op, f, g, r);
+                values.push(r);
+            }
+        }
+        return values.pop();
+    }
+
+    /**
+     * @return the result of the operator if it does not depend on the variables of f and g, -1 otherwise.
+     */
+    private static int terminal(int op, int f, int g) {
+        switch (op) {
+            case AND:
+                if (f == FALSE || g == FALSE) return FALSE;
+                if (f == TRUE || f == g) return g;
+                if (g == TRUE) return f;
+                return -1;
+            case OR:
+                if (f == TRUE || g == TRUE) return TRUE;
+                if (f == FALSE || f == g) return g;
+                if (g == FALSE) return f;
+                return -1;
+            case IMPLIES:
+                if (f == FALSE || g == TRUE || f == g) return TRUE;
+                if (f == TRUE) return g;
+                return -1;
+            case EQUIV:
+                if (f == g) return TRUE;
+                if (f == TRUE) return g;
+                if (g == TRUE) return f;
+                if (f <= TRUE && g <= TRUE) return FALSE;
+                return -1;
+            case XOR:
+                if (f == g) return FALSE;
+                if (f == FALSE) return g;
+                if (g == FALSE) return f;
+                if (f <= TRUE && g <= TRUE) return TRUE;
+                return -1;
+            default:
+                throw new IllegalArgumentException("Unknown operator " + op);
+        }
+    }
+
+    private int cacheGet(int op, int f, int g) {
+        int slot = (hash(op, f, g)) & (CACHE_SIZE - 1);
+        if (cacheOp[slot] == op && cacheF[slot] == f && cacheG[slot] == g)
+            return cacheRes[slot];
+        return -1;
+    }
+
+    private void cachePut(int op, int f, int g, int r) {
+        int slot = (hash(op, f, g)) & (CACHE_SIZE - 1);
+        cacheOp[slot] = op;
+        cacheF[slot] = f;
+        cacheG[slot] = g;
+        cacheRes[slot] = r;
+    }
+
+    /**
+     * Relational product: computes <i>exists vars. (f and g)</i> in a single pass, without building the conjunction.
+     */
+    int relProd(int f, int g, BitSet vars) {
+        int lastVar = vars.length() - 1;
+        Map<Long, Integer> cache = new HashMap<>();
+        IntStack tasks = new IntStack();
+        IntStack values = new IntStack();
+        tasks.push(f, g, 0);
+
+        while (!tasks.isEmpty()) {
+            int stage = tasks.pop();
+            g = tasks.pop();
+            f = tasks.pop();
+            if (f > g) {
+                int t = f;
+                f = g;
+                g = t;
+            }
+            int v = Math.min(level[f], level[g]);
+
+            if (stage == 0) {
+                if (f == FALSE) {
+                    values.push(FALSE);
+                    continue;
+                }
+                if (g == TRUE) { // and so f is TRUE
+                    values.push(TRUE);
+                    continue;
+                }
+                if (v > lastVar) { // no variable left to quantify
+                    values.push(apply(AND, f, g));
+                    continue;
+                }
+                Integer cached = cache.get(((long) f << 32) | g);
+                if (cached != null) {
+                    values.push(cached);
+                    continue;
+                }
+
+                tasks.push(f, g, 1);
+                tasks.push(level[f] == v ? high[f] : f, level[g] == v ? high[g] : g, 0);
+                tasks.push(level[f] == v ? low[f] : f, level[g] == v ? low[g] : g, 0);
+            } else {
+                int hi = values.pop();
+                int lo = values.pop();
+                int r = vars.get(v) ? apply(OR, lo, hi) : mk(v, lo, hi);
+                cache.put(((long) f << 32) | g, r);
+                values.push(r);
+            }
+        }
+        return values.pop();
+    }
+
+    /**
+     * @return <i>exists vars. f</i>
+     */
+    int exists(int f, BitSet vars) {
+        return relProd(f, TRUE, vars);
+    }
+
+    /**
+     * Renames variables: each variable v with renaming[v] >= 0 is replaced by the variable renaming[v].
+     * The target variables can be anywhere in the variable order.
+     */
+    int rename(int f, int[] renaming) {
+        int[] memo = new int[nodeCount];
+        Arrays.fill(memo, -1);
+        memo[FALSE] = FALSE;
+        memo[TRUE] = TRUE;
+
+        IntStack stack = new IntStack();
+        stack.push(f);
+        while (!stack.isEmpty()) {
+            int n = stack.peek();
+            if (memo[n] >= 0) {
+                stack.pop();
+            } else if (memo[low[n]] < 0) {
+                stack.push(low[n]);
+            } else if (memo[high[n]] < 0) {
+                stack.push(high[n]);
+            } else {
+                stack.pop();
+                int v = level[n] < renaming.length && renaming[level[n]] >= 0 ? renaming[level[n]] : level[n];
+                int lo = memo[low[n]];
+                int hi = memo[high[n]];
+                if (v < level[lo] && v < level[hi])
+                    memo[n] = mk(v, lo, hi);
+                else
+                    memo[n] = apply(OR, apply(AND, var(v), hi), apply(AND, notVar(v), lo));
+            }
+        }
+        return memo[f];
+    }
+
+    /**
+     * Copies the BDD to another manager with the same variables, which is used to discard the nodes that are
+     * no longer used.
+     *
+     * @return the root of the copy in the target manager.
+     */
+    int copyTo(Bdd target, int f) {
+        while (target.varCount < varCount)
+            target.newVar();
+
+        int[] memo = new int[nodeCount];
+        Arrays.fill(memo, -1);
+        memo[FALSE] = FALSE;
+        memo[TRUE] = TRUE;
+
+        IntStack stack = new IntStack();
+        stack.push(f);
+        while (!stack.isEmpty()) {
+            int n = stack.peek();
+            if (memo[n] >= 0) {
+                stack.pop();
+            } else if (memo[low[n]] < 0) {
+                stack.push(low[n]);
+            } else if (memo[high[n]] < 0) {
+                stack.push(high[n]);
+            } else {
+                stack.pop();
+                memo[n] = target.mk(level[n], memo[low[n]], memo[high[n]]);
+            }
+        }
+        return memo[f];
+    }
+
+    /**
+     * @return the number of nodes reachable from f, including the terminals.
+     */
+    int nodeCount(int f) {
+        BitSet visited = new BitSet(nodeCount);
+        IntStack stack = new IntStack();
+        stack.push(f);
+        int count = 0;
+        while (!stack.isEmpty()) {
+            int n = stack.pop();
+            if (visited.get(n))
+                continue;
+            visited.set(n);
+            count++;
+            if (n > TRUE) {
+                stack.push(low[n]);
+                stack.push(high[n]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of assignments of the variables [0, varCount) that satisfy f.
+     */
+    BigInteger satCount(int f, int varCount) {
+        Map<Integer, BigInteger> memo = new HashMap<>();
+        memo.put(FALSE, BigInteger.ZERO);
+        memo.put(TRUE, BigInteger.ONE);
+
+        IntStack stack = new IntStack();
+        stack.push(f);
+        while (!stack.isEmpty()) {
+            int n = stack.peek();
+            if (memo.containsKey(n)) {
+                stack.pop();
+            } else if (!memo.containsKey(low[n])) {
+                stack.push(low[n]);
+            } else if (!memo.containsKey(high[n])) {
+                stack.push(high[n]);
+            } else {
+                stack.pop();
+                BigInteger lo = memo.get(low[n]).shiftLeft(levelOf(low[n], varCount) - level[n] - 1);
+                BigInteger hi = memo.get(high[n]).shiftLeft(levelOf(high[n], varCount) - level[n] - 1);
+                memo.put(n, lo.add(hi));
+            }
+        }
+        return memo.get(f).shiftLeft(levelOf(f, varCount));
+    }
+
+    private int levelOf(int n, int varCount) {
+        return n <= TRUE ? varCount : level[n];
+    }
+
+    /** Growable int stack, to avoid boxing in the iterative operations */
+    private static final class IntStack {
+        private int[] data = new int[64];
+        private int size = 0;
+
+        void push(int v) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        void push(int a, int b, int c) {
+            push(a);
+            push(b);
+            push(c);
+        }
+
+        int pop() {
+            return data[--size];
+        }
+
+        int peek() {
+            return data[size - 1];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
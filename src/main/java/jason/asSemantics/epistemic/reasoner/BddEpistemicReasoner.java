@@ -0,0 +1,390 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.DELEvent;
+import jason.asSemantics.epistemic.DELEventModel;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicFormulaLiteral;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicModality;
+import jason.asSemantics.epistemic.reasoner.formula.Formula;
+import jason.asSemantics.epistemic.reasoner.formula.ModalPropFormula;
+import jason.asSemantics.epistemic.reasoner.formula.PropFormula;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+
+/**
+ * In-process reasoner backend that represents the set of possible worlds symbolically, as a {@link Bdd} over
+ * the interned propositions, instead of enumerating the worlds (see {@link LocalEpistemicReasoner}).
+ * The size of the model depends on the structure of the constraints rather than on the number of worlds,
+ * so range constraints over tens of thousands of propositions can be represented.
+ * <p>
+ * The semantics are the same as {@link KripkeModel}: <i>know(f)</i> holds iff the worlds imply f,
+ * <i>poss(f)</i> iff the worlds and f are satisfiable, and propositions that are not in the model are false
+ * in all worlds. The product update with an event model is the union, over its events, of the relational
+ * product of the worlds with the transition relation of the event.
+ */
+public class BddEpistemicReasoner implements EpistemicReasoner {
+    private static final Logger LOGGER = Logger.getLogger(BddEpistemicReasoner.class.getName());
+
+    // The nodes of the manager are compacted once it has this many nodes (and at least twice the live nodes)
+    private static final int MIN_COLLECT_NODES = 1 << 16;
+
+    private final int maxNodes;
+    private PropositionIndex propositions;
+    private Bdd bdd;
+    private int[] propVars = new int[0];
+    private int[] auxVars = new int[0];
+    private int model = -1;
+    private int nextCollect = MIN_COLLECT_NODES;
+    private int operationDepth = 0;
+
+    /**
+     * @param maxNodes the maximum number of BDD nodes of the model.
+     */
+    public BddEpistemicReasoner(int maxNodes) {
+        this.maxNodes = maxNodes;
+        reset();
+    }
+
+    public BddEpistemicReasoner() {
+        this(ReasonerConfiguration.getInstance().getMaxBddNodes());
+    }
+
+    private void reset() {
+        propositions = new PropositionIndex();
+        bdd = new Bdd(maxNodes);
+        propVars = new int[0];
+        auxVars = new int[0];
+        model = -1;
+        nextCollect = MIN_COLLECT_NODES;
+    }
+
+    @Override
+    public synchronized boolean createModel(Collection<Formula> constraints) {
+        reset();
+        try {
+            int[] conjuncts = new int[constraints.size()];
+            int count = 0;
+            for (Formula c : constraints) {
+                if (count == conjuncts.length)
+                    conjuncts = Arrays.copyOf(conjuncts, count * 2 + 1);
+                conjuncts[count++] = toBdd(CompiledFormula.compile(c, propositions::intern, null));
+            }
+
+            // Conjoining pairwise (instead of adding one constraint at a time to a growing conjunction)
+            // avoids rebuilding the whole conjunction for each constraint over new variables
+            while (count > 1) {
+                int reduced = 0;
+                for (int i = 0; i < count; i += 2)
+                    conjuncts[reduced++] = i + 1 < count ? bdd.and(conjuncts[i], conjuncts[i + 1]) : conjuncts[i];
+                count = reduced;
+            }
+            model = count == 0 ? Bdd.TRUE : conjuncts[0];
+        } catch (IllegalStateException e) {
+            LOGGER.severe("Failed to create model: " + e.getMessage());
+            reset();
+            return false;
+        }
+        collect();
+
+        LOGGER.info("Created BDD model with " + bdd.nodeCount(model) + " nodes over " + propositions.size() + " propositions");
+
+        if (model == Bdd.FALSE) {
+            LOGGER.warning("The constraints are inconsistent, the created model has no worlds");
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean applyEventModel(DELEventModel eventModel) {
+        if (model < 0) {
+            LOGGER.warning("Can not apply event model: the model has not been created");
+            return false;
+        }
+
+        int updated;
+        try {
+            updated = retryAfterCollect(() -> productUpdate(eventModel));
+        } catch (IllegalStateException e) {
+            LOGGER.severe("Failed to apply event model: " + e.getMessage());
+            return false;
+        }
+
+        // An event model that is not applicable in any world would leave the agent without any possible world
+        if (updated == Bdd.FALSE) {
+            LOGGER.warning("No event is applicable in the current model. The event model was not applied");
+            return false;
+        }
+
+        model = updated;
+        collect();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean extendModel(Collection<PropFormula> free, Collection<Formula> constraints) {
+        if (model < 0) {
+            LOGGER.warning("Can not extend model: the model has not been created");
+            return false;
+        }
+
+        int extended;
+        try {
+            // The new propositions are not constrained in the current worlds, their variables are not negated
+            BitSet unconstrained = new BitSet();
+            int known = propositions.size();
+            for (PropFormula p : free) {
+                int id = propositions.intern(p);
+                if (id >= known)
+                    unconstrained.set(id);
+            }
+            if (!unconstrained.isEmpty())
+                varOf(unconstrained.length() - 1, unconstrained);
+
+            extended = retryAfterCollect(() -> {
+                int conjunction = Bdd.TRUE;
+                for (Formula c : constraints)
+                    conjunction = bdd.and(conjunction, toBdd(CompiledFormula.compile(c, propositions::intern, null)));
+                return bdd.and(model, conjunction);
+            });
+        } catch (IllegalStateException e) {
+            LOGGER.severe("Failed to extend model: " + e.getMessage());
+            return false;
+        }
+
+        if (extended == Bdd.FALSE) {
+            LOGGER.warning("The new constraints are inconsistent with the model. The model was not extended");
+            return false;
+        }
+
+        model = extended;
+        collect();
+        LOGGER.info("Extended BDD model to " + bdd.nodeCount(model) + " nodes over " + propositions.size() + " propositions");
+        return true;
+    }
+
+    /**
+     * @return the worlds after the update: for each event e, <i>exists post(e). (worlds and pre(e) and
+     * (aux_p iff post(e)(p)))</i> with the auxiliary variables renamed to their propositions. Propositions
+     * set to a constant do not need an auxiliary variable, they are conjoined after the quantification.
+     */
+    private int productUpdate(DELEventModel eventModel) {
+        // The propositions introduced by the event model are false in all the current worlds
+        for (DELEvent e : eventModel.getDelEvents())
+            for (PropFormula prop : e.getPostCondition().keySet())
+                varOf(propositions.intern(prop));
+
+        int updated = Bdd.FALSE;
+        for (DELEvent e : eventModel.getDelEvents()) {
+            int relation = toBdd(compile(e.getPreCondition()));
+            int assigned = Bdd.TRUE;
+            BitSet quantified = new BitSet();
+            List<Integer> renamed = new ArrayList<>();
+
+            for (Map.Entry<PropFormula, Formula> post : e.getPostCondition().entrySet()) {
+                int v = varOf(propositions.lookup(post.getKey()));
+                int value = toBdd(compile(post.getValue()));
+                quantified.set(v);
+
+                if (value == Bdd.TRUE || value == Bdd.FALSE) {
+                    assigned = bdd.and(assigned, value == Bdd.TRUE ? bdd.var(v) : bdd.notVar(v));
+                } else {
+                    // the value depends on the world before the update
+                    int aux = auxVar(renamed.size());
+                    relation = bdd.and(relation, bdd.apply(Bdd.EQUIV, bdd.var(aux), value));
+                    renamed.add(v);
+                }
+            }
+
+            int worlds = bdd.relProd(model, relation, quantified);
+            if (!renamed.isEmpty()) {
+                int[] renaming = new int[bdd.getVarCount()];
+                Arrays.fill(renaming, -1);
+                for (int i = 0; i < renamed.size(); i++)
+                    renaming[auxVars[i]] = renamed.get(i);
+                worlds = bdd.rename(worlds, renaming);
+            }
+            updated = bdd.or(updated, bdd.and(worlds, assigned));
+        }
+        return updated;
+    }
+
+    @Override
+    public synchronized Map<EpistemicFormulaLiteral, Boolean> evaluateFormulas(Collection<EpistemicFormulaLiteral> formulas) {
+        Map<EpistemicFormulaLiteral, Boolean> formulaResults = new HashMap<>();
+
+        if (formulas == null || model < 0)
+            return formulaResults;
+
+        for (EpistemicFormulaLiteral formula : formulas) {
+            Formula prop = formula.getRootLiteral().toPropFormula();
+
+            boolean result = formula.getEpistemicModality() == EpistemicModality.POSSIBLE ? isPossible(prop) : knows(prop);
+            formulaResults.put(formula, formula.isModalityNegated() != result);
+        }
+        collect();
+        return formulaResults;
+    }
+
+    @Override
+    public synchronized Boolean evaluateFormula(Formula formula) {
+        if (model < 0)
+            return false;
+
+        // Non-modal formulas are evaluated as knowledge
+        boolean result = formula instanceof ModalPropFormula ? evaluate((ModalPropFormula) formula) : knows(formula);
+        collect();
+        return result;
+    }
+
+    @Override
+    public synchronized List<Boolean> evaluateModalFormulas(List<ModalPropFormula> formulas) {
+        List<Boolean> results = new ArrayList<>(formulas.size());
+        for (ModalPropFormula formula : formulas)
+            results.add(model >= 0 && evaluate(formula));
+        collect();
+        return results;
+    }
+
+    private boolean evaluate(ModalPropFormula formula) {
+        if (formula.getModality() == EpistemicModality.POSSIBLE)
+            return isPossible(formula.getInner());
+        return knows(formula.getInner());
+    }
+
+    private boolean knows(Formula formula) {
+        return retryAfterCollect(() -> bdd.apply(Bdd.IMPLIES, model, toBdd(compile(formula)))) == Bdd.TRUE;
+    }
+
+    private boolean isPossible(Formula formula) {
+        return retryAfterCollect(() -> bdd.and(model, toBdd(compile(formula)))) != Bdd.FALSE;
+    }
+
+    /**
+     * @return the number of worlds of the model, 0 if the model has not been created.
+     */
+    public synchronized BigInteger getWorldCount() {
+        if (model < 0)
+            return BigInteger.ZERO;
+        // the model does not depend on the auxiliary variables, each of them doubles the count
+        return bdd.satCount(model, bdd.getVarCount()).shiftRight(auxVars.length);
+    }
+
+    /**
+     * @return the number of BDD nodes of the model.
+     */
+    public synchronized int getNodeCount() {
+        return model < 0 ? 0 : bdd.nodeCount(model);
+    }
+
+    private CompiledFormula compile(Formula formula) {
+        // Propositions that are not in the model are false in all worlds
+        return CompiledFormula.compile(formula, propositions::lookup, this::evaluate);
+    }
+
+    /**
+     * Evaluates the postfix program of a compiled formula over BDDs.
+     */
+    private int toBdd(CompiledFormula compiled) {
+        int[] code = compiled.getCode();
+        int[] stack = new int[code.length];
+        int sp = 0;
+
+        for (int i = 0; i < code.length; i++) {
+            int c = code[i];
+            if (c >= 0) {
+                stack[sp++] = bdd.var(varOf(c));
+                continue;
+            }
+            switch (c) {
+                case CompiledFormula.TRUE -> stack[sp++] = Bdd.TRUE;
+                case CompiledFormula.FALSE -> stack[sp++] = Bdd.FALSE;
+                case CompiledFormula.NOT -> stack[sp - 1] = bdd.not(stack[sp - 1]);
+                case CompiledFormula.AND, CompiledFormula.OR -> {
+                    int arity = code[++i];
+                    int res = c == CompiledFormula.AND ? Bdd.TRUE : Bdd.FALSE;
+                    for (int k = 0; k < arity; k++)
+                        res = bdd.apply(c == CompiledFormula.AND ? Bdd.AND : Bdd.OR, res, stack[--sp]);
+                    stack[sp++] = res;
+                }
+                case CompiledFormula.IMPLIES -> {
+                    int cons = stack[--sp];
+                    stack[sp - 1] = bdd.apply(Bdd.IMPLIES, stack[sp - 1], cons);
+                }
+                case CompiledFormula.EQUIV -> {
+                    int cons = stack[--sp];
+                    stack[sp - 1] = bdd.apply(Bdd.EQUIV, stack[sp - 1], cons);
+                }
+                default -> throw new IllegalStateException("Unknown op code " + c);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * @return the BDD variable of the proposition. A new proposition is false in all the current worlds.
+     */
+    private int varOf(int prop) {
+        return varOf(prop, null);
+    }
+
+    /**
+     * @param unconstrained the new propositions that may take any value in the current worlds, or null.
+     * @return the BDD variable of the proposition.
+     */
+    private int varOf(int prop, BitSet unconstrained) {
+        while (propVars.length <= prop) {
+            int v = bdd.newVar();
+            propVars = Arrays.copyOf(propVars, propVars.length + 1);
+            propVars[propVars.length - 1] = v;
+            if (model >= 0 && (unconstrained == null || !unconstrained.get(propVars.length - 1)))
+                model = bdd.and(model, bdd.notVar(v));
+        }
+        return propVars[prop];
+    }
+
+    /**
+     * @return the i-th auxiliary variable, used for the post-conditions that depend on the current world.
+     */
+    private int auxVar(int i) {
+        while (auxVars.length <= i) {
+            auxVars = Arrays.copyOf(auxVars, auxVars.length + 1);
+            auxVars[auxVars.length - 1] = bdd.newVar();
+        }
+        return auxVars[i];
+    }
+
+    /**
+     * Runs the operation again after discarding the unused nodes, if it exceeded the maximum number of nodes.
+     */
+    private int retryAfterCollect(IntSupplier operation) {
+        try {
+            operationDepth++;
+            return operation.getAsInt();
+        } catch (IllegalStateException e) {
+            // nested operations (modal sub-formulas) can not collect, the enclosing operation holds nodes of the manager
+            if (operationDepth > 1)
+                throw e;
+            nextCollect = 0;
+            collect();
+            return operation.getAsInt();
+        } finally {
+            operationDepth--;
+        }
+    }
+
+    /**
+     * Copies the model to a new manager when the current one has too many unused nodes.
+     */
+    private void collect() {
+        if (model < 0 || bdd.size() < nextCollect)
+            return;
+
+        Bdd compacted = new Bdd(maxNodes);
+        model = bdd.copyTo(compacted, model);
+        bdd = compacted;
+        nextCollect = Math.max(MIN_COLLECT_NODES, 2 * bdd.size());
+    }
+}
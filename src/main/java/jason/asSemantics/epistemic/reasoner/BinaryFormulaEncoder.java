@@ -0,0 +1,212 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.reasoner.formula.*;
+import jason.asSyntax.Literal;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Encodes formulas in the compact binary wire format (see {@link ReasonerConfiguration.WireFormat#BINARY}).
+ * <p>
+ * Propositions are interned to integer ids once per model. The first use of a proposition that has not been
+ * acknowledged by the reasoner yet is a DEFINE op carrying its text, later uses only refer to its id. Formulas
+ * are written as flat postfix op code streams, built iteratively so that deep formulas do not overflow the
+ * stack, and each formula is written to the stream as soon as it is encoded.
+ * <pre>
+ * message  := MAGIC VERSION count formula*
+ * formula  := length op*
+ * op       := PROP id | DEFINE id length utf8-bytes | TRUE | FALSE | NOT | AND arity | OR arity | IMPLIES
+ *             | EQUIV | KNOW | POSS
+ * </pre>
+ * All integers are unsigned LEB128 variable length integers.
+ */
+public class BinaryFormulaEncoder {
+    public static final String CONTENT_TYPE = "application/x-epistemic-formulas";
+
+    private static final byte[] MAGIC = {'E', 'P', 'F'};
+    private static final byte VERSION = 2;
+
+    static final byte PROP = 0;
+    static final byte TRUE = 1;
+    static final byte FALSE = 2;
+    static final byte NOT = 3;
+    static final byte AND = 4;
+    static final byte OR = 5;
+    static final byte IMPLIES = 6;
+    static final byte EQUIV = 7;
+    static final byte KNOW = 8;
+    static final byte POSS = 9;
+    static final byte DEFINE = 10;
+
+    private static final String TRUE_PROP = Literal.LTrue.toString();
+    private static final String FALSE_PROP = Literal.LFalse.toString();
+
+    private PropositionIndex propositions = new PropositionIndex();
+    private BitSet acknowledged = new BitSet();
+
+    /**
+     * Starts a new model: the reasoner discards its proposition table when a model is created.
+     */
+    public synchronized void reset() {
+        propositions = new PropositionIndex();
+        acknowledged = new BitSet();
+    }
+
+    /**
+     * Marks the propositions defined by a message as known by the reasoner, so they are not sent again.
+     * Should be called once the reasoner has successfully answered the message.
+     */
+    public synchronized void acknowledge(BitSet defined) {
+        acknowledged.or(defined);
+    }
+
+    /**
+     * Writes a message with the given formulas.
+     *
+     * @return the ids of the propositions defined by the message, to be {@link #acknowledge(BitSet) acknowledged}
+     * when the message is answered.
+     */
+    public synchronized BitSet write(Collection<? extends Formula> formulas, OutputStream out) throws IOException {
+        BufferedOutputStream bout = new BufferedOutputStream(out);
+        bout.write(MAGIC);
+        bout.write(VERSION);
+        writeVarInt(bout, formulas.size());
+
+        // propositions defined in this message
+        BitSet defined = new BitSet();
+        ByteBuffer code = new ByteBuffer();
+        for (Formula f : formulas) {
+            code.reset();
+            encode(f, code, defined);
+            writeVarInt(bout, code.size());
+            code.writeTo(bout);
+        }
+
+        bout.flush();
+        return defined;
+    }
+
+    private void encode(Formula formula, ByteBuffer out, BitSet defined) {
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(formula);
+
+        while (!stack.isEmpty()) {
+            Object next = stack.pop();
+
+            // Operators are pushed as byte arrays: op code followed by the encoded arity, if any
+            if (next instanceof byte[]) {
+                out.write((byte[]) next);
+                continue;
+            }
+
+            Formula f = (Formula) next;
+            if (f instanceof PropFormula) {
+                String prop = f.toPropString();
+                if (TRUE_PROP.equals(prop)) {
+                    out.write(TRUE);
+                } else if (FALSE_PROP.equals(prop)) {
+                    out.write(FALSE);
+                } else {
+                    int id = propositions.intern(prop);
+                    if (acknowledged.get(id) || defined.get(id)) {
+                        out.write(PROP);
+                        writeVarInt(out, id);
+                    } else {
+                        defined.set(id);
+                        byte[] text = prop.getBytes(StandardCharsets.UTF_8);
+                        out.write(DEFINE);
+                        writeVarInt(out, id);
+                        writeVarInt(out, text.length);
+                        out.write(text);
+                    }
+                }
+            } else if (f instanceof NotFormula) {
+                stack.push(new byte[]{NOT});
+                stack.push(((NotFormula) f).getInner());
+            } else if (f instanceof ModalPropFormula) {
+                stack.push(new byte[]{((ModalPropFormula) f).getModality() == EpistemicModality.POSSIBLE ? POSS : KNOW});
+                stack.push(((ModalPropFormula) f).getInner());
+            } else if (f instanceof AndFormula || f instanceof OrFormula) {
+                List<Formula> children = f instanceof AndFormula ? ((AndFormula) f).getFormulas() : ((OrFormula) f).getFormulas();
+                ByteBuffer op = new ByteBuffer();
+                op.write(f instanceof AndFormula ? AND : OR);
+                writeVarInt(op, children.size());
+                stack.push(op.toByteArray());
+                for (int i = children.size() - 1; i >= 0; i--)
+                    stack.push(children.get(i));
+            } else if (f instanceof ImpliesFormula) {
+                stack.push(new byte[]{IMPLIES});
+                stack.push(((ImpliesFormula) f).getConsequent());
+                stack.push(((ImpliesFormula) f).getAntecedent());
+            } else if (f instanceof EquivFormula) {
+                stack.push(new byte[]{EQUIV});
+                stack.push(((EquivFormula) f).getConsequent());
+                stack.push(((EquivFormula) f).getAntecedent());
+            } else {
+                throw new IllegalArgumentException("Unsupported formula type: " + f.getClass().getSimpleName());
+            }
+        }
+    }
+
+    static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((byte) value);
+    }
+
+    /** Unsynchronised replacement for ByteArrayOutputStream */
+    private static final class ByteBuffer {
+        private byte[] data = new byte[64];
+        private int size = 0;
+
+        void write(byte b) {
+            ensure(1);
+            data[size++] = b;
+        }
+
+        void write(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, data, size, b.length);
+            size += b.length;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(data, 0, size);
+        }
+
+        byte[] toByteArray() {
+            return java.util.Arrays.copyOf(data, size);
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length)
+                data = java.util.Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+        }
+    }
+}
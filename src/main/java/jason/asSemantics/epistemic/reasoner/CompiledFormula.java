@@ -0,0 +1,252 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.reasoner.formula.*;
+import jason.asSyntax.Literal;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A propositional formula compiled to a flat postfix program over proposition ids.
+ * Non-negative codes push the value of the proposition with that id, negative codes are operators
+ * ({@link #AND} and {@link #OR} are followed by their arity).
+ * <p>
+ * Both compilation and evaluation are iterative, so deep formulas do not overflow the stack.
+ */
+final class CompiledFormula {
+    static final int TRUE = -1;
+    static final int FALSE = -2;
+    static final int NOT = -3;
+    static final int AND = -4;
+    static final int OR = -5;
+    static final int IMPLIES = -6;
+    static final int EQUIV = -7;
+
+    private static final byte F = 0;
+    private static final byte T = 1;
+    private static final byte UNKNOWN = 2;
+
+    private static final String TRUE_PROP = Literal.LTrue.toString();
+    private static final String FALSE_PROP = Literal.LFalse.toString();
+
+    private final int[] code;
+    private final BitSet props;
+    private final int maxStack;
+
+    private CompiledFormula(int[] code, BitSet props, int maxStack) {
+        this.code = code;
+        this.props = props;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * Compiles a formula.
+     *
+     * @param propIds resolves the id of each proposition. A negative id means the proposition is false in every world.
+     * @param modal   evaluates modal sub-formulas. Modal formulas do not depend on the current world
+     *                (the accessibility relation is universal), so they are compiled as constants.
+     *                May be null if the formula can not contain modalities.
+     */
+    static CompiledFormula compile(Formula formula, ToIntFunction<PropFormula> propIds, Function<ModalPropFormula, Boolean> modal) {
+        IntBuffer out = new IntBuffer();
+        BitSet props = new BitSet();
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(formula);
+
+        int depth = 0;
+        int maxStack = 0;
+
+        while (!stack.isEmpty()) {
+            Object next = stack.pop();
+
+            if (next instanceof int[]) {
+                int[] op = (int[]) next;
+                out.add(op[0]);
+                if (op[0] == AND || op[0] == OR) {
+                    out.add(op[1]);
+                    depth -= op[1] - 1;
+                } else if (op[0] != NOT) {
+                    depth -= 1;
+                }
+                continue;
+            }
+
+            Formula f = (Formula) next;
+            if (f instanceof PropFormula) {
+                String prop = f.toPropString();
+                if (TRUE_PROP.equals(prop)) {
+                    out.add(TRUE);
+                } else if (FALSE_PROP.equals(prop)) {
+                    out.add(FALSE);
+                } else {
+                    int id = propIds.applyAsInt((PropFormula) f);
+                    if (id < 0) {
+                        out.add(FALSE);
+                    } else {
+                        out.add(id);
+                        props.set(id);
+                    }
+                }
+                maxStack = Math.max(maxStack, ++depth);
+            } else if (f instanceof ModalPropFormula) {
+                if (modal == null)
+                    throw new IllegalArgumentException("Modal formulas are not allowed here: " + f);
+                out.add(modal.apply((ModalPropFormula) f) ? TRUE : FALSE);
+                maxStack = Math.max(maxStack, ++depth);
+            } else if (f instanceof NotFormula) {
+                stack.push(new int[]{NOT});
+                stack.push(((NotFormula) f).getInner());
+            } else if (f instanceof AndFormula || f instanceof OrFormula) {
+                List<Formula> children = f instanceof AndFormula ? ((AndFormula) f).getFormulas() : ((OrFormula) f).getFormulas();
+                stack.push(new int[]{f instanceof AndFormula ? AND : OR, children.size()});
+                for (int i = children.size() - 1; i >= 0; i--)
+                    stack.push(children.get(i));
+                if (children.isEmpty())
+                    maxStack = Math.max(maxStack, depth + 1);
+            } else if (f instanceof ImpliesFormula) {
+                stack.push(new int[]{IMPLIES});
+                stack.push(((ImpliesFormula) f).getConsequent());
+                stack.push(((ImpliesFormula) f).getAntecedent());
+            } else if (f instanceof EquivFormula) {
+                stack.push(new int[]{EQUIV});
+                stack.push(((EquivFormula) f).getConsequent());
+                stack.push(((EquivFormula) f).getAntecedent());
+            } else {
+                throw new IllegalArgumentException("Unsupported formula type: " + f.getClass().getSimpleName());
+            }
+        }
+
+        return new CompiledFormula(out.toArray(), props, Math.max(1, maxStack));
+    }
+
+    /**
+     * @return the ids of all propositions used by this formula.
+     */
+    BitSet getProps() {
+        return props;
+    }
+
+    /**
+     * @return the postfix program, used to evaluate the formula symbolically (see {@link BddEpistemicReasoner}).
+     */
+    int[] getCode() {
+        return code;
+    }
+
+    boolean evaluate(BitSet world) {
+        boolean[] stack = new boolean[maxStack];
+        int sp = 0;
+
+        for (int i = 0; i < code.length; i++) {
+            int c = code[i];
+            if (c >= 0) {
+                stack[sp++] = world.get(c);
+                continue;
+            }
+            switch (c) {
+                case TRUE -> stack[sp++] = true;
+                case FALSE -> stack[sp++] = false;
+                case NOT -> stack[sp - 1] = !stack[sp - 1];
+                case AND, OR -> {
+                    int arity = code[++i];
+                    boolean res = c == AND;
+                    for (int k = 0; k < arity; k++) {
+                        boolean v = stack[--sp];
+                        res = c == AND ? res && v : res || v;
+                    }
+                    stack[sp++] = res;
+                }
+                case IMPLIES -> {
+                    boolean cons = stack[--sp];
+                    boolean ante = stack[sp - 1];
+                    stack[sp - 1] = !ante || cons;
+                }
+                case EQUIV -> {
+                    boolean cons = stack[--sp];
+                    stack[sp - 1] = stack[sp - 1] == cons;
+                }
+                default -> throw new IllegalStateException("Unknown op code " + c);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Three-valued evaluation over a partial assignment.
+     *
+     * @return {@link Boolean#TRUE} or {@link Boolean#FALSE} if the value is already decided by the assigned
+     * propositions, null otherwise.
+     */
+    Boolean evaluatePartial(BitSet assigned, BitSet values) {
+        byte[] stack = new byte[maxStack];
+        int sp = 0;
+
+        for (int i = 0; i < code.length; i++) {
+            int c = code[i];
+            if (c >= 0) {
+                stack[sp++] = !assigned.get(c) ? UNKNOWN : values.get(c) ? T : F;
+                continue;
+            }
+            switch (c) {
+                case TRUE -> stack[sp++] = T;
+                case FALSE -> stack[sp++] = F;
+                case NOT -> stack[sp - 1] = not(stack[sp - 1]);
+                case AND, OR -> {
+                    int arity = code[++i];
+                    byte res = c == AND ? T : F;
+                    for (int k = 0; k < arity; k++) {
+                        byte v = stack[--sp];
+                        res = c == AND ? and(res, v) : or(res, v);
+                    }
+                    stack[sp++] = res;
+                }
+                case IMPLIES -> {
+                    byte cons = stack[--sp];
+                    stack[sp - 1] = or(not(stack[sp - 1]), cons);
+                }
+                case EQUIV -> {
+                    byte cons = stack[--sp];
+                    byte ante = stack[sp - 1];
+                    stack[sp - 1] = ante == UNKNOWN || cons == UNKNOWN ? UNKNOWN : ante == cons ? T : F;
+                }
+                default -> throw new IllegalStateException("Unknown op code " + c);
+            }
+        }
+        return stack[0] == UNKNOWN ? null : stack[0] == T;
+    }
+
+    private static byte not(byte v) {
+        return v == UNKNOWN ? UNKNOWN : v == T ? F : T;
+    }
+
+    private static byte and(byte a, byte b) {
+        if (a == F || b == F) return F;
+        return a == T && b == T ? T : UNKNOWN;
+    }
+
+    private static byte or(byte a, byte b) {
+        if (a == T || b == T) return T;
+        return a == F && b == F ? F : UNKNOWN;
+    }
+
+    /** Growable int array, to avoid boxing while compiling */
+    private static final class IntBuffer {
+        private int[] data = new int[16];
+        private int size = 0;
+
+        void add(int v) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
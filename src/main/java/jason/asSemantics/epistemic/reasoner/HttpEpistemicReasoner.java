@@ -0,0 +1,741 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonWriter;
+import jason.asSemantics.CircumstanceListener;
+import jason.asSemantics.epistemic.DELEventModel;
+import jason.asSemantics.epistemic.Propositionalizer;
+import jason.asSemantics.epistemic.metrics.EpistemicMetrics;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicFormulaLiteral;
+import jason.asSemantics.epistemic.reasoner.formula.Formula;
+import jason.asSemantics.epistemic.reasoner.formula.ImpliesFormula;
+import jason.asSemantics.epistemic.reasoner.formula.ModalPropFormula;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.EntityTemplate;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Reasoner backend that delegates model creation, event application and formula
+ * evaluation to the external epistemic reasoner over HTTP (see {@link ReasonerConfiguration}).
+ */
+public class HttpEpistemicReasoner implements EpistemicReasoner {
+    private static final String UPDATE_PROPS_SUCCESS_KEY = "success";
+    private static final String EVALUATION_FORMULA_RESULTS_KEY = "result";
+    private static final int MAX_CONSTRAINTS_LOG = 5000;
+    private final CloseableHttpClient client;
+    private static final Logger LOGGER = Logger.getLogger(HttpEpistemicReasoner.class.getName());
+    private final EpistemicMetrics metrics;
+    private final ReasonerConfiguration reasonerConfiguration;
+    private static final Gson GSON = new Gson();
+    private final BinaryFormulaEncoder encoder;
+
+    // Connection pool and request threads shared by the reasoners of all agents
+    private static CloseableHttpClient sharedClient;
+    private static ExecutorService requestExecutor;
+
+    public HttpEpistemicReasoner(CloseableHttpClient client, EpistemicMetrics metrics) {
+        this.client = client;
+        this.metrics = metrics;
+        this.reasonerConfiguration = ReasonerConfiguration.getInstance();
+        this.encoder = reasonerConfiguration.getWireFormat() == ReasonerConfiguration.WireFormat.BINARY ? new BinaryFormulaEncoder() : null;
+    }
+
+    public HttpEpistemicReasoner(EpistemicMetrics metrics) {
+        this(getSharedClient(), metrics);
+    }
+
+    public HttpEpistemicReasoner() {
+        this(new EpistemicMetrics(HttpEpistemicReasoner.class.getSimpleName()));
+    }
+
+    /**
+     * @return the HTTP client shared by all agents. Its connection pool size is configured with
+     * {@link ReasonerConfiguration#getMaxConnections()}.
+     */
+    public static synchronized CloseableHttpClient getSharedClient() {
+        if (sharedClient == null) {
+            int maxConnections = ReasonerConfiguration.getInstance().getMaxConnections();
+            var connections = new PoolingHttpClientConnectionManager();
+            connections.setMaxTotal(maxConnections);
+            // All requests go to the same reasoner host
+            connections.setDefaultMaxPerRoute(maxConnections);
+            sharedClient = HttpClients.custom().setConnectionManager(connections).build();
+        }
+        return sharedClient;
+    }
+
+    private static synchronized ExecutorService getRequestExecutor() {
+        if (requestExecutor == null) {
+            AtomicInteger count = new AtomicInteger();
+            requestExecutor = Executors.newFixedThreadPool(ReasonerConfiguration.getInstance().getRequestThreads(), r -> {
+                Thread t = new Thread(r, "reasoner-request-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return requestExecutor;
+    }
+
+    /**
+     * Closes the shared connection pool and request threads, called when the MAS finishes.
+     */
+    public static synchronized void closeSharedClient() {
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+            requestExecutor = null;
+        }
+        if (sharedClient != null) {
+            try {
+                sharedClient.close();
+            } catch (IOException e) {
+                LOGGER.warning("Failed to close the reasoner connection pool: " + e.getMessage());
+            }
+            sharedClient = null;
+        }
+    }
+
+
+    @Override
+    public boolean createModel(Collection<Formula> constraints) {
+        LOGGER.fine("Creating model with " + constraints.size() + " constraints");
+
+        // dumpConstraints(constraints);
+
+        // if (!constraints.isEmpty())
+        //     return true;
+
+        if (constraints.size() > MAX_CONSTRAINTS_LOG)
+            LOGGER.info("Over " + MAX_CONSTRAINTS_LOG + " constraints. Not printing model creation request");
+
+        // The request body is streamed (chunked): constraints are converted to JSON one at a time while the
+        // request is sent, so the whole request body is never held in memory.
+        // With the binary format, the reasoner starts a new proposition table for the model.
+        AtomicReference<BitSet> defined = new AtomicReference<>();
+        AtomicLong requestBytes = new AtomicLong();
+        EntityTemplate entity;
+        if (encoder != null) {
+            encoder.reset();
+            entity = new EntityTemplate(out -> {
+                var counting = new CountingOutputStream(out);
+                defined.set(encoder.write(constraints, counting));
+                requestBytes.set(counting.count);
+            });
+            entity.setContentType(BinaryFormulaEncoder.CONTENT_TYPE);
+        } else {
+            entity = new EntityTemplate(out -> {
+                var counting = new CountingOutputStream(out);
+                writeConstraints(constraints, counting);
+                requestBytes.set(counting.count);
+            });
+            entity.setContentType(ContentType.APPLICATION_JSON.toString());
+        }
+        entity.setChunked(true);
+
+        var request = RequestBuilder
+                .post(reasonerConfiguration.getModelCreateEndpoint())
+                .setEntity(entity)
+                .build();
+
+        LOGGER.info("Sending Model Creation Request");
+        try (var resp = sendRequest(request, true)) {
+            LOGGER.info("Model Post Response: " + resp.getStatusLine().toString());
+            if (encoder != null && isSuccess(resp))
+                encoder.acknowledge(defined.get());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        metrics.record(EpistemicMetrics.REQUEST_BYTES, requestBytes.get(), EpistemicMetrics.BYTES);
+        return true;
+    }
+
+    public boolean createFakeModel(int width) {
+        // Maybe have the managed worlds object be event-driven for information updates.
+        JsonObject managedJson = new JsonObject();
+        managedJson.add("locations_model", new JsonPrimitive(width));
+//
+//         if (constraints.size() > MAX_CONSTRAINTS_LOG)
+//             LOGGER.info("Over " + MAX_CONSTRAINTS_LOG + " constraints. Not printing model creation request");
+//         else {
+// //            LOGGER.info("Model Creation (Req. Body): " + managedJson.toString());
+//         }
+//
+//         long initialTime = System.nanoTime();
+
+
+        var jsonBody = managedJson.toString();
+
+        var request = RequestBuilder
+                .post(reasonerConfiguration.getModelCreateEndpoint())
+                .setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON))
+                .build();
+
+        LOGGER.info("Sending Model Creation Request");
+        try (var resp = sendRequest(request, true)) {
+            LOGGER.info("Model Post Response: " + resp.getStatusLine().toString());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        // long creationTime = System.nanoTime() - initialTime;
+        // metricsLogger.info("Model creation time (ms): " + (creationTime / NS_PER_MS));
+        return true;
+    }
+
+    private void dumpConstraints(Collection<Formula> constraints) {
+        String fileName = "newer_constraints_" + constraints.size() + ".json";
+        System.out.println("Failed to create model (too many constraints). Dumping to file: " + fileName);
+        try (FileWriter fw = new FileWriter(fileName, false)) {
+//                fw.write("[");
+            int conSize = constraints.size();
+            for (var c : constraints) {
+                // // Get around stack overflow for JSON toString
+                // if(c.getDepth() > 2000)
+                // {
+                //     System.out.println("(large constraint) Prop String for constraint:");
+                //     System.out.println(c.toPropString());
+                //     continue;
+                // }
+                fw.write(c.toJson().toString());
+//                    if(conSize > 1)
+//                        fw.write(",");
+                fw.write("\r\n");
+                conSize--;
+            }
+//                fw.write("]");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+    }
+
+    static void writeConstraints(Collection<Formula> constraints, OutputStream out) throws IOException {
+        // The writer is only flushed: the output stream is closed by the HTTP client
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        writer.beginObject();
+        writer.name("constraints");
+        writer.beginArray();
+        for (Formula c : constraints)
+            GSON.toJson(c.toJson(), writer);
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    @Override
+    public boolean applyEventModel(DELEventModel eventModel) {
+        var json = eventModelJson(eventModel);
+
+        var req = RequestBuilder
+                .post(reasonerConfiguration.getTransitionUpdateEndpoint())
+                .setEntity(new StringEntity(json.toString(), ContentType.APPLICATION_JSON))
+                .build();
+
+        var resultJson = sendRequest(req, this::jsonTransform).getAsJsonObject();
+
+        LOGGER.fine("Event model application response: " + resultJson);
+        return resultJson.get(UPDATE_PROPS_SUCCESS_KEY).getAsBoolean();
+    }
+
+    /**
+     * Sends all event models in a single request, the reasoner applies them in order.
+     */
+    @Override
+    public List<Boolean> applyEventModels(List<DELEventModel> eventModels) {
+        if (eventModels.size() == 1)
+            return List.of(applyEventModel(eventModels.get(0)));
+
+        var models = new JsonArray();
+        for (var eventModel : eventModels)
+            models.add(eventModelJson(eventModel));
+
+        var json = new JsonObject();
+        json.add("eventModels", models);
+
+        var req = RequestBuilder
+                .post(reasonerConfiguration.getTransitionBatchUpdateEndpoint())
+                .setEntity(new StringEntity(json.toString(), ContentType.APPLICATION_JSON))
+                .build();
+
+        var resultJson = sendRequest(req, this::jsonTransform).getAsJsonObject();
+
+        List<Boolean> results = new ArrayList<>(Collections.nCopies(eventModels.size(), false));
+        if (resultJson == null || !resultJson.has(UPDATE_PROPS_SUCCESS_KEY)) {
+            LOGGER.warning("Could not read event models application response");
+            return results;
+        }
+
+        var success = resultJson.getAsJsonArray(UPDATE_PROPS_SUCCESS_KEY);
+        for (int i = 0; i < success.size() && i < results.size(); i++)
+            results.set(i, success.get(i).getAsBoolean());
+        return results;
+    }
+
+    private static JsonObject eventModelJson(DELEventModel eventModel) {
+        var json = new JsonObject();
+        var arr = new JsonArray();
+
+        for (var entry : eventModel.getDelEvents()) {
+            var entryJson = new JsonObject();
+
+            entryJson.add("id", new JsonPrimitive(entry.getEventId()));
+            entryJson.add("pre", entry.getPreCondition().toJson());
+
+
+            var jsonPost = new JsonObject();
+
+            for (var postEntry : entry.getPostCondition().entrySet()) {
+                jsonPost.add(postEntry.getKey().toPropString(), postEntry.getValue().toJson());
+            }
+
+            entryJson.add("post", jsonPost);
+
+            arr.add(entryJson);
+        }
+
+        json.add("events", arr);
+        return json;
+    }
+
+    /**
+     * Sends the event models from the shared request threads, the HTTP request does not block the caller.
+     */
+    @Override
+    public CompletableFuture<List<Boolean>> applyEventModelsAsync(List<DELEventModel> eventModels) {
+        return CompletableFuture.supplyAsync(() -> applyEventModels(eventModels), getRequestExecutor());
+    }
+
+    @Override
+    public Map<EpistemicFormulaLiteral, Boolean> evaluateFormulas(Collection<EpistemicFormulaLiteral> formulas) {
+        Map<String, EpistemicFormulaLiteral> formulaHashLookup = new HashMap<>();
+        Map<EpistemicFormulaLiteral, Boolean> formulaResults = new HashMap<>();
+
+        if (formulas == null || formulas.isEmpty())
+            return formulaResults;
+
+
+        JsonObject formulaRoot = new JsonObject();
+        JsonArray formulaArray = new JsonArray();
+
+        for (EpistemicFormulaLiteral formula : formulas) {
+            formulaArray.add(toFormulaJSON(formula));
+            formulaHashLookup.put(formula.getUniqueId(), formula);
+        }
+
+        formulaRoot.add("formulas", formulaArray);
+
+        var req = RequestBuilder
+                .post(reasonerConfiguration.getEvaluateEndpoint())
+                .setEntity(new StringEntity(formulaRoot.toString(), ContentType.APPLICATION_JSON))
+                .build();
+
+        var resultJson = sendRequest(req, this::jsonTransform).getAsJsonObject();
+
+        // If the result is null, success == false, or there is no result entry, then return an empty set.
+        if (resultJson == null || !resultJson.has(EVALUATION_FORMULA_RESULTS_KEY))
+            return formulaResults;
+
+        var resultPropsJson = resultJson.getAsJsonObject(EVALUATION_FORMULA_RESULTS_KEY);
+
+        for (var key : resultPropsJson.entrySet()) {
+            String formulaHashValue = key.getKey();
+            Boolean formulaValuation = key.getValue().getAsBoolean();
+
+            // Get the formula associated with the hash in the response
+            var trueFormula = formulaHashLookup.getOrDefault(formulaHashValue, null);
+
+            if (trueFormula == null)
+                LOGGER.warning("Failed to lookup formula: " + key.getKey());
+            else
+                formulaResults.put(trueFormula, formulaValuation);
+        }
+
+        return formulaResults;
+    }
+
+    @Override
+    public Boolean evaluateFormula(Formula formula) {
+        LOGGER.fine("Evaluating formula: " + formula);
+
+        var jsonBody = new JsonObject();
+        jsonBody.add("formula", formula.toJson());
+
+        var req = RequestBuilder
+                .post(reasonerConfiguration.getSingleEvaluateEndpoint())
+                .setEntity(new StringEntity(jsonBody.toString(), ContentType.APPLICATION_JSON))
+                .build();
+
+        var resultJson = sendRequest(req, this::jsonTransform).getAsJsonObject();
+
+        // If the result is null, success == false, or there is no result entry, then return an empty set.
+        if (resultJson == null || !resultJson.has(EVALUATION_FORMULA_RESULTS_KEY)) {
+            System.out.println("Could not read single formula evaluation response");
+            return false;
+        }
+
+        return resultJson.getAsJsonPrimitive(EVALUATION_FORMULA_RESULTS_KEY).getAsBoolean();
+    }
+
+    @Override
+    public List<Boolean> evaluateModalFormulas(List<ModalPropFormula> formulas) {
+        List<Boolean> results = new ArrayList<>(Collections.nCopies(formulas.size(), false));
+
+        if (formulas.isEmpty())
+            return results;
+
+        // Nothing to batch, use the single formula endpoint
+        if (formulas.size() == 1) {
+            results.set(0, evaluateFormula(formulas.get(0)));
+            return results;
+        }
+
+        LOGGER.fine("Evaluating batch of " + formulas.size() + " formulas");
+
+        // The position of each formula is used as its id
+        BitSet defined = null;
+        HttpEntity entity;
+        if (encoder != null) {
+            var body = new ByteArrayOutputStream();
+            try {
+                defined = encoder.write(formulas, body);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            entity = new ByteArrayEntity(body.toByteArray(), ContentType.create(BinaryFormulaEncoder.CONTENT_TYPE));
+        } else {
+            JsonArray formulaArray = new JsonArray();
+            for (int i = 0; i < formulas.size(); i++) {
+                var formulaJson = new JsonObject();
+                formulaJson.addProperty("id", String.valueOf(i));
+                formulaJson.add("formula", formulas.get(i).toJson());
+                formulaArray.add(formulaJson);
+            }
+
+            JsonObject formulaRoot = new JsonObject();
+            formulaRoot.add("formulas", formulaArray);
+            entity = new StringEntity(formulaRoot.toString(), ContentType.APPLICATION_JSON);
+        }
+
+        var req = RequestBuilder
+                .post(reasonerConfiguration.getEvaluateEndpoint())
+                .setEntity(entity)
+                .build();
+
+        JsonObject resultJson;
+        try (var res = sendRequest(req, false)) {
+            if (encoder != null && isSuccess(res))
+                encoder.acknowledge(defined);
+            resultJson = jsonTransform(res).getAsJsonObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return mapBatchResults(resultJson, formulas.size());
+    }
+
+    /**
+     * Maps the response of a batch evaluation to the valuations of the formulas, in the order of the request.
+     * Formulas without a valuation in the response are false.
+     */
+    static List<Boolean> mapBatchResults(JsonObject resultJson, int size) {
+        List<Boolean> results = new ArrayList<>(Collections.nCopies(size, false));
+
+        if (resultJson == null || !resultJson.has(EVALUATION_FORMULA_RESULTS_KEY)) {
+            LOGGER.warning("Could not read batch formula evaluation response");
+            return results;
+        }
+
+        for (var entry : resultJson.getAsJsonObject(EVALUATION_FORMULA_RESULTS_KEY).entrySet()) {
+            try {
+                results.set(Integer.parseInt(entry.getKey()), entry.getValue().getAsBoolean());
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                LOGGER.warning("Failed to lookup formula: " + entry.getKey());
+            }
+        }
+
+        return results;
+    }
+
+
+    /**
+     * Updates the currently believed propositions
+     *
+     * @param knowledgeFormulas The set of all knowledge formulas in the belief base, used for the knowledge valuation.
+     * @param epistemicFormulas The formulas to evaluate immediately after updating the propositions.
+     * @return The formula evaluation after updating the propositions. This will be empty if no formulas are provided.
+     */
+//    public Map<EpistemicFormula, Boolean> updateProps(Set<KnowEpistemicFormula> knowledgeFormulas, Collection<EpistemicFormula> epistemicFormulas) {
+//
+//        if (knowledgeFormulas == null)
+//            throw new IllegalArgumentException("propositions list should not be null");
+//
+//        long initialUpdateTime = System.nanoTime();
+//
+//        // Object does not contain contradictions
+//        JsonObject knowledgeValuation = new JsonObject();
+//
+//        // We use the HashMap to track contradictions
+//        Map<String, Boolean> knowledgeValuationMap = new HashMap<>();
+//
+//        // This is where we create the knowledge valuation
+//        for (KnowEpistemicFormula currentFormula : knowledgeFormulas) {
+//            var propName = propositionalizer.propLit(currentFormula.getRootLiteral());
+//            var isPositive = !currentFormula.isPropositionNegated();
+//
+//            // Check for proposition contradictions
+//            var existing = knowledgeValuationMap.get(propName);
+//
+//            // If contradiction (i.e. existing value that is different)
+//            // Don't include the contradictions in the model update (remove from JSON object)
+//            if (existing != null && existing != isPositive) {
+//                LOGGER.warning("There is a proposition contradiction for " + propName + " (both a true and false knowledge value). It has been excluded from the knowledge valuation.");
+//                LOGGER.warning("Due to the removed contradiction, the epistemic model may contain more uncertainty than expected. Please check belief consistency.");
+//
+//                if (knowledgeValuation.has(propName))
+//                    knowledgeValuation.remove(propName);
+//            } else {
+//                // Else, add to both objects/maps
+//                knowledgeValuationMap.put(propName, isPositive);
+//                knowledgeValuation.addProperty(propName, isPositive);
+//            }
+//        }
+//
+//        JsonObject bodyElement = new JsonObject();
+//        bodyElement.add("props", knowledgeValuation);
+//
+//        var req = RequestBuilder
+//                .put(reasonerConfiguration.getPropUpdateEndpoint())
+//                .setEntity(new StringEntity(bodyElement.toString(), ContentType.APPLICATION_JSON))
+//                .build();
+//
+//        long jsonStringTime = System.nanoTime() - initialUpdateTime;
+//        metricsLogger.info("Prop JSON build time (ms): " + (jsonStringTime / NS_PER_MS));
+//
+//        var resultJson = sendRequest(req, this::jsonTransform).getAsJsonObject();
+//
+//        long totalTime = System.nanoTime() - initialUpdateTime;
+//        metricsLogger.info("Reasoner Update Time (ms): " + ((totalTime - jsonStringTime) / NS_PER_MS));
+//
+//        if (resultJson == null || !resultJson.has(UPDATE_PROPS_SUCCESS_KEY) || !resultJson.get(UPDATE_PROPS_SUCCESS_KEY).getAsBoolean()) {
+//            LOGGER.warning("Failed to successfully update props: " + bodyElement.toString());
+//            LOGGER.warning("This typically indicates that your beliefs are inconsistent, or they contradict the created epistemic model.");
+//        } else
+//            LOGGER.info("Updated props successfully. Request Body: " + bodyElement.toString());
+//
+//        throw new RuntimeException("Not used");
+//        return null;
+////        evaluateFormulas(epistemicFormulas);
+//    }
+
+
+    /**
+     * Sends the request without closing the response.
+     *
+     * @param request
+     * @return
+     */
+    CloseableHttpResponse sendRequest(HttpUriRequest request, boolean shouldClose) {
+
+        // Streamed request bodies have no length, they are counted while they are written
+        if (request instanceof HttpEntityEnclosingRequest) {
+            long length = ((HttpEntityEnclosingRequest) request).getEntity().getContentLength();
+            if (length >= 0)
+                metrics.record(EpistemicMetrics.REQUEST_BYTES, length, EpistemicMetrics.BYTES);
+        }
+
+        try {
+            var res = client.execute(request);
+
+            if (shouldClose)
+                res.close();
+
+            return res;
+        } catch (IOException e) {
+
+            throw new RuntimeException("Failed to connect to the reasoner!", e);
+        }
+    }
+
+    /**
+     * Sends a request, processes the response and closes the response stream.
+     *
+     * @param request
+     * @param responseProcessFunc
+     * @param <R>
+     * @return
+     */
+    private <R> R
+    sendRequest(HttpUriRequest request, @NotNull Function<CloseableHttpResponse, R> responseProcessFunc) {
+        try (var res = sendRequest(request, false)) {
+            return responseProcessFunc.apply(res);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static boolean isSuccess(CloseableHttpResponse response) {
+        int status = response.getStatusLine().getStatusCode();
+        return status >= 200 && status < 300;
+    }
+
+    JsonElement jsonTransform(CloseableHttpResponse response) {
+        try {
+            BufferedInputStream bR = new BufferedInputStream(response.getEntity().getContent());
+            byte[] content = bR.readAllBytes();
+            metrics.record(EpistemicMetrics.RESPONSE_BYTES, content.length, EpistemicMetrics.BYTES);
+            String jsonStr = new String(content);
+            return (new JsonParser()).parse(jsonStr).getAsJsonObject();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+
+//    static JsonObject ManagedWorldsToJson(ManagedWorlds managedWorlds) {
+//        JsonObject modelObject = new JsonObject();
+//
+//        JsonArray worldsArray = new JsonArray();
+//
+//        Map<Integer, World> hashed = new HashMap<>();
+//        int collisions = 0;
+//
+//
+//        for (World world : managedWorlds) {
+//            if (hashed.containsKey(world.hashCode())) {
+//                hashed.get(world.hashCode());
+//                collisions++;
+//            } else
+//                hashed.put(world.hashCode(), world);
+//
+//            worldsArray.add(WorldToJson(world));
+//        }
+//
+//        LOGGER.warning("Hashing collision. There are " + collisions + " world hash collisions");
+//
+//        modelObject.add("worlds", worldsArray);
+//
+//        // TODO : Change this to the hashcode of an actual pointed world.
+//        // No pointed world, the epistemic.reasoner will choose one at random.
+//        // modelObject.addProperty("pointedWorld", getWorldName(managedWorlds.getPointedWorld()));
+//        return modelObject;
+//    }
+
+//    private static JsonObject WorldToJson(World world) {
+//        JsonObject worldObject = new JsonObject();
+//        JsonObject propsVal = new JsonObject();
+//
+//        worldObject.addProperty("name", world.getUniqueName());
+//        for (WrappedLiteral wrappedLiteral : world.getValuation()) {
+//            propsVal.add(getWorldIdProp(world), new JsonPrimitive(true));
+//            propsVal.add(String.valueOf(wrappedLiteral.toSafePropName()), new JsonPrimitive(true));
+//        }
+//        worldObject.add("props", propsVal);
+//
+//        return worldObject;
+//    }
+
+    /**
+     * Returns a JSON element containing data for a formula.
+     * The JSON element should encode:
+     * - ID of formula
+     * - Epistemic Modality Type ("know" or "possible")
+     * - Negation of Modality (i.e. "~possible")
+     * - Contained Proposition (i.e. cards["Alice", "AA"])
+     * - Proposition Negation (i.e. ~cards["Alice", "AA"])
+     *
+     * @param formula
+     * @return
+     */
+    JsonElement toFormulaJSON(EpistemicFormulaLiteral formula) {
+        var jsonElement = new JsonObject();
+        jsonElement.addProperty("id", formula.getUniqueId());
+
+        jsonElement.addProperty("modalityNegated", formula.isModalityNegated());
+        jsonElement.addProperty("modality", formula.getEpistemicModality().getFunctor());
+
+        jsonElement.addProperty("propNegated", formula.isPropositionNegated());
+        jsonElement.addProperty("prop", formula.getRootLiteral().toPropFormula().toPropString());
+
+
+        return jsonElement;
+    }
+
+//    private static String getWorldIdProp(World world)
+//    {
+//        return "world-id-" + world.getUniqueName();
+//    }
+//    /**
+//     * Execute a DEL event, with a post-condition that maps propositions to (basic) Formulae.
+//     * Each entry in the rule transitions
+//     *
+//     * @param worldTransitions
+//     */
+//    public boolean processTransitions(Map<World, World> worldTransitions) {
+//        var json = new JsonObject();
+//        var arr = new JsonArray();
+//
+//        for(var entry : worldTransitions.entrySet())
+//        {
+//            var entryJson = new JsonObject();
+//
+//            entryJson.add("pre", new JsonPrimitive(getWorldIdProp(entry.getKey())));
+//            entryJson.add("post", new JsonPrimitive(getWorldIdProp(entry.getValue())));
+//            arr.add(entryJson);
+//        }
+//
+//        json.add("transitions", arr);
+//
+//        var req = RequestBuilder
+//                .post(reasonerConfiguration.getTransitionUpdateEndpoint())
+//                .setEntity(new StringEntity(json.toString(), ContentType.APPLICATION_JSON))
+//                .build();
+//
+//        var resultJson = sendRequest(req, this::jsonTransform).getAsJsonObject();
+//
+//        System.out.println(resultJson);
+//        return resultJson.get(UPDATE_PROPS_SUCCESS_KEY).getAsBoolean();
+//    }
+}
@@ -0,0 +1,368 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.DELEvent;
+import jason.asSemantics.epistemic.DELEventModel;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicModality;
+import jason.asSemantics.epistemic.reasoner.formula.Formula;
+import jason.asSemantics.epistemic.reasoner.formula.ModalPropFormula;
+import jason.asSemantics.epistemic.reasoner.formula.PropFormula;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * An explicit single-agent S5 Kripke model. Each world is a bit set over the propositions of a
+ * {@link PropositionIndex} (bit i is set iff proposition i is true in the world).
+ * <p>
+ * The agent can not distinguish between any of its worlds (nor between the events of an event model),
+ * so the accessibility relation is the universal relation over the current worlds:
+ * <i>know(f)</i> holds iff f holds in all worlds and <i>poss(f)</i> holds iff f holds in some world.
+ * <p>
+ * Models are immutable: event application returns a new model. Event models without post-conditions only
+ * remove worlds, so their result is stored as a delta of the model they are applied to: a mask over the
+ * worlds of that (base) model, which is shared instead of being copied (see {@link SharedModels}).
+ */
+public class KripkeModel {
+    private final PropositionIndex propositions;
+    private final Set<BitSet> worlds;
+
+    // Models that only remove worlds from a base model keep the indexes of their worlds in the base model
+    private final KripkeModel base;
+    private final BitSet mask;
+    private List<BitSet> worldList;
+
+    private KripkeModel(PropositionIndex propositions, Set<BitSet> worlds) {
+        this.propositions = propositions;
+        this.worlds = Collections.unmodifiableSet(worlds);
+        this.base = null;
+        this.mask = null;
+    }
+
+    private KripkeModel(KripkeModel base, BitSet mask) {
+        this.propositions = base.propositions;
+        this.worlds = null;
+        this.base = base;
+        this.mask = mask;
+    }
+
+    /**
+     * @return the model with the given worlds, used to restore models (see {@link ModelCache}).
+     */
+    static KripkeModel of(PropositionIndex propositions, Set<BitSet> worlds) {
+        return new KripkeModel(propositions, worlds);
+    }
+
+    /**
+     * Builds the model whose worlds are all valuations (over the propositions mentioned by the constraints)
+     * satisfying all constraints. The valuations are enumerated by backtracking over a partial assignment,
+     * pruning as soon as a constraint over the assigned propositions is falsified.
+     *
+     * @throws IllegalStateException if there are more than <i>maxWorlds</i> worlds.
+     */
+    public static KripkeModel fromConstraints(Collection<Formula> constraints, PropositionIndex propositions, int maxWorlds) {
+        List<CompiledFormula> compiled = new ArrayList<>(constraints.size());
+        for (Formula c : constraints)
+            compiled.add(CompiledFormula.compile(c, propositions::intern, null));
+
+        int propCount = propositions.size();
+        Set<BitSet> worlds = new LinkedHashSet<>();
+
+        // Constraints indexed by the propositions they use, constant constraints are checked upfront
+        List<List<CompiledFormula>> occurrences = new ArrayList<>(propCount);
+        for (int i = 0; i < propCount; i++)
+            occurrences.add(new ArrayList<>());
+
+        for (CompiledFormula c : compiled) {
+            BitSet used = c.getProps();
+            if (used.isEmpty()) {
+                if (!c.evaluate(new BitSet()))
+                    return new KripkeModel(propositions, worlds);
+                continue;
+            }
+            for (int p = used.nextSetBit(0); p >= 0; p = used.nextSetBit(p + 1))
+                occurrences.get(p).add(c);
+        }
+
+        BitSet assigned = new BitSet(propCount);
+        BitSet values = new BitSet(propCount);
+
+        // tried[d]: 0 = nothing tried at depth d, 1 = false tried, 2 = both values tried
+        byte[] tried = new byte[propCount];
+        int depth = 0;
+
+        while (depth >= 0) {
+            if (depth == propCount) {
+                if (worlds.size() >= maxWorlds)
+                    throw new IllegalStateException("The epistemic model has more than " + maxWorlds + " worlds");
+                worlds.add((BitSet) values.clone());
+                depth--;
+                continue;
+            }
+
+            if (tried[depth] == 2) {
+                tried[depth] = 0;
+                assigned.clear(depth);
+                values.clear(depth);
+                depth--;
+                continue;
+            }
+
+            values.set(depth, tried[depth] == 1);
+            assigned.set(depth);
+            tried[depth]++;
+
+            if (isConsistent(occurrences.get(depth), assigned, values))
+                depth++;
+        }
+
+        return new KripkeModel(propositions, worlds);
+    }
+
+    /**
+     * Extends the model with new propositions and constraints: in each world, the new propositions take every
+     * valuation that satisfies the constraints (the new propositions are enumerated by backtracking, as in
+     * {@link #fromConstraints(Collection, PropositionIndex, int)}), and worlds without such a valuation are removed.
+     * Propositions already in the model keep their value, and the other propositions of the constraints are false.
+     *
+     * @param free the new propositions. Propositions that are already in the model are not free.
+     * @throws IllegalStateException if there are more than <i>maxWorlds</i> worlds.
+     */
+    public KripkeModel extend(Collection<PropFormula> free, Collection<Formula> constraints, int maxWorlds) {
+        int known = propositions.size();
+        BitSet freeProps = new BitSet();
+        for (PropFormula p : free) {
+            int id = propositions.intern(p);
+            if (id >= known)
+                freeProps.set(id);
+        }
+
+        List<CompiledFormula> compiled = new ArrayList<>(constraints.size());
+        for (Formula c : constraints)
+            compiled.add(CompiledFormula.compile(c, propositions::intern, null));
+
+        // The free propositions are assigned in order, each constraint is checked when one of its free propositions is assigned
+        int[] order = freeProps.stream().toArray();
+        List<CompiledFormula> fixed = new ArrayList<>();
+        List<List<CompiledFormula>> occurrences = new ArrayList<>(order.length);
+        for (int i = 0; i < order.length; i++)
+            occurrences.add(new ArrayList<>());
+
+        for (CompiledFormula c : compiled) {
+            BitSet used = (BitSet) c.getProps().clone();
+            used.and(freeProps);
+            if (used.isEmpty()) {
+                fixed.add(c);
+                continue;
+            }
+            for (int p = used.nextSetBit(0); p >= 0; p = used.nextSetBit(p + 1))
+                occurrences.get(Arrays.binarySearch(order, p)).add(c);
+        }
+
+        BitSet assigned = new BitSet(propositions.size());
+        assigned.set(0, propositions.size());
+        assigned.andNot(freeProps);
+
+        Set<BitSet> extended = new LinkedHashSet<>();
+        byte[] tried = new byte[order.length];
+
+        for (BitSet w : worlds()) {
+            if (!fixed.stream().allMatch(c -> c.evaluate(w)))
+                continue;
+
+            BitSet values = (BitSet) w.clone();
+            int depth = 0;
+            while (depth >= 0) {
+                if (depth == order.length) {
+                    if (extended.size() >= maxWorlds)
+                        throw new IllegalStateException("The epistemic model has more than " + maxWorlds + " worlds");
+                    extended.add((BitSet) values.clone());
+                    depth--;
+                    continue;
+                }
+
+                int p = order[depth];
+                if (tried[depth] == 2) {
+                    tried[depth] = 0;
+                    assigned.clear(p);
+                    values.clear(p);
+                    depth--;
+                    continue;
+                }
+
+                values.set(p, tried[depth] == 1);
+                assigned.set(p);
+                tried[depth]++;
+
+                if (isConsistent(occurrences.get(depth), assigned, values))
+                    depth++;
+            }
+        }
+
+        return new KripkeModel(propositions, extended);
+    }
+
+    private static boolean isConsistent(List<CompiledFormula> constraints, BitSet assigned, BitSet values) {
+        for (CompiledFormula c : constraints) {
+            if (Boolean.FALSE.equals(c.evaluatePartial(assigned, values)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Product update of this model with the event model: the new worlds are the pairs (w, e) such that w
+     * satisfies the pre-condition of e, where the propositions in the post-condition of e take the value of
+     * their post-condition formula in w. Pairs with the same valuation are merged (they are bisimilar).
+     *
+     * @throws IllegalStateException if there are more than <i>maxWorlds</i> worlds.
+     */
+    public KripkeModel productUpdate(DELEventModel eventModel, int maxWorlds) {
+        Set<DELEvent> events = eventModel.getDelEvents();
+
+        List<CompiledFormula> pre = new ArrayList<>(events.size());
+        List<int[]> postProps = new ArrayList<>(events.size());
+        List<CompiledFormula[]> postValues = new ArrayList<>(events.size());
+
+        for (DELEvent e : events) {
+            pre.add(compile(e.getPreCondition()));
+
+            int[] props = new int[e.getPostCondition().size()];
+            CompiledFormula[] vals = new CompiledFormula[props.length];
+            int i = 0;
+            for (Map.Entry<PropFormula, Formula> post : e.getPostCondition().entrySet()) {
+                props[i] = propositions.intern(post.getKey());
+                vals[i] = compile(post.getValue());
+                i++;
+            }
+            postProps.add(props);
+            postValues.add(vals);
+        }
+
+        if (postProps.stream().allMatch(props -> props.length == 0))
+            return filter(pre);
+
+        Set<BitSet> updated = new LinkedHashSet<>();
+        for (BitSet w : worlds()) {
+            for (int e = 0; e < pre.size(); e++) {
+                if (!pre.get(e).evaluate(w))
+                    continue;
+
+                BitSet next = (BitSet) w.clone();
+                int[] props = postProps.get(e);
+                CompiledFormula[] vals = postValues.get(e);
+                for (int i = 0; i < props.length; i++)
+                    next.set(props[i], vals[i].evaluate(w));
+
+                updated.add(next);
+                if (updated.size() > maxWorlds)
+                    throw new IllegalStateException("The epistemic model has more than " + maxWorlds + " worlds");
+            }
+        }
+
+        return new KripkeModel(propositions, updated);
+    }
+
+    /**
+     * @return the model with the worlds that satisfy some pre-condition, as a mask over the worlds of the base model.
+     */
+    private KripkeModel filter(List<CompiledFormula> pre) {
+        KripkeModel root = base == null ? this : base;
+        List<BitSet> rootWorlds = root.worldList();
+        BitSet updated = new BitSet(rootWorlds.size());
+
+        PrimitiveIterator.OfInt indexes = base == null ? IntStream.range(0, rootWorlds.size()).iterator() : mask.stream().iterator();
+        while (indexes.hasNext()) {
+            int i = indexes.nextInt();
+            for (CompiledFormula p : pre) {
+                if (p.evaluate(rootWorlds.get(i))) {
+                    updated.set(i);
+                    break;
+                }
+            }
+        }
+        return new KripkeModel(root, updated);
+    }
+
+    /**
+     * @return the worlds of a model that is not a delta, in a fixed order.
+     */
+    private synchronized List<BitSet> worldList() {
+        if (worldList == null)
+            worldList = new ArrayList<>(worlds);
+        return worldList;
+    }
+
+    /**
+     * @return the worlds of the model, without materialising the worlds of a delta.
+     */
+    private Iterable<BitSet> worlds() {
+        if (base == null)
+            return worlds;
+
+        List<BitSet> rootWorlds = base.worldList();
+        return () -> mask.stream().mapToObj(rootWorlds::get).iterator();
+    }
+
+    /**
+     * @return true if the formula holds in all worlds.
+     */
+    public boolean knows(Formula formula) {
+        CompiledFormula compiled = compile(formula);
+        for (BitSet w : worlds()) {
+            if (!compiled.evaluate(w))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the formula holds in at least one world.
+     */
+    public boolean isPossible(Formula formula) {
+        CompiledFormula compiled = compile(formula);
+        for (BitSet w : worlds()) {
+            if (compiled.evaluate(w))
+                return true;
+        }
+        return false;
+    }
+
+    public boolean evaluate(ModalPropFormula formula) {
+        if (formula.getModality() == EpistemicModality.POSSIBLE)
+            return isPossible(formula.getInner());
+        return knows(formula.getInner());
+    }
+
+    private CompiledFormula compile(Formula formula) {
+        // Propositions that are not in the model are false in all worlds
+        return CompiledFormula.compile(formula, propositions::lookup, this::evaluate);
+    }
+
+    public Set<BitSet> getWorlds() {
+        if (base == null)
+            return worlds;
+
+        Set<BitSet> materialised = new LinkedHashSet<>();
+        worlds().forEach(materialised::add);
+        return Collections.unmodifiableSet(materialised);
+    }
+
+    /**
+     * @return true if the model is stored as a delta of another model.
+     */
+    public boolean isDelta() {
+        return base != null;
+    }
+
+    public PropositionIndex getPropositions() {
+        return propositions;
+    }
+
+    public boolean isEmpty() {
+        return base == null ? worlds.isEmpty() : mask.isEmpty();
+    }
+
+    public int size() {
+        return base == null ? worlds.size() : mask.cardinality();
+    }
+}
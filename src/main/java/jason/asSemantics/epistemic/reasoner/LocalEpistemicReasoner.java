@@ -0,0 +1,190 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.DELEventModel;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicFormulaLiteral;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicModality;
+import jason.asSemantics.epistemic.reasoner.formula.Formula;
+import jason.asSemantics.epistemic.reasoner.formula.ModalPropFormula;
+import jason.asSemantics.epistemic.reasoner.formula.PropFormula;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * In-process reasoner backend: the epistemic model is an explicit {@link KripkeModel} kept in the agent's JVM,
+ * so no request is sent to the external reasoner.
+ */
+public class LocalEpistemicReasoner implements EpistemicReasoner {
+    private static final Logger LOGGER = Logger.getLogger(LocalEpistemicReasoner.class.getName());
+
+    private final int maxWorlds;
+    private final ModelCache modelCache;
+    private final boolean shareModels;
+    private PropositionIndex propositions;
+    private KripkeModel model;
+
+    /**
+     * @param modelCache  the cache of created models, null if created models are not cached.
+     * @param shareModels true if the created model is shared with the other reasoners created from the
+     *                    same constraints (see {@link SharedModels}).
+     */
+    public LocalEpistemicReasoner(int maxWorlds, ModelCache modelCache, boolean shareModels) {
+        this.maxWorlds = maxWorlds;
+        this.propositions = new PropositionIndex();
+        this.modelCache = modelCache;
+        this.shareModels = shareModels;
+    }
+
+    /**
+     * @param modelCache the cache of created models, null if created models are not cached.
+     */
+    public LocalEpistemicReasoner(int maxWorlds, ModelCache modelCache) {
+        this(maxWorlds, modelCache, false);
+    }
+
+    public LocalEpistemicReasoner(int maxWorlds) {
+        this(maxWorlds, null);
+    }
+
+    public LocalEpistemicReasoner() {
+        this(ReasonerConfiguration.getInstance().getMaxWorlds(), ReasonerConfiguration.getInstance().getModelCache(),
+                ReasonerConfiguration.getInstance().isShareModels());
+    }
+
+    @Override
+    public synchronized boolean createModel(Collection<Formula> constraints) {
+        String key = modelCache == null && !shareModels ? null : ModelCache.key(constraints);
+
+        try {
+            // Each model has its own proposition index: the propositions of a previous model (e.g. removed range
+            // values) would otherwise be unconstrained in the new one. A shared model's index is shared by all
+            // the reasoners using the model
+            if (shareModels)
+                model = SharedModels.get(maxWorlds + "/" + key, () -> createModel(constraints, key, new PropositionIndex()));
+            else
+                model = createModel(constraints, key, new PropositionIndex());
+            propositions = model.getPropositions();
+        } catch (IllegalStateException e) {
+            LOGGER.severe("Failed to create model: " + e.getMessage());
+            return false;
+        }
+
+        if (model.isEmpty()) {
+            LOGGER.warning("The constraints are inconsistent, the created model has no worlds");
+            return false;
+        }
+        return true;
+    }
+
+    private KripkeModel createModel(Collection<Formula> constraints, String key, PropositionIndex propositions) {
+        KripkeModel created = key == null || modelCache == null ? null : modelCache.load(key, propositions);
+
+        if (created != null) {
+            LOGGER.info("Loaded cached model with " + created.size() + " worlds over " + propositions.size() + " propositions");
+            return created;
+        }
+
+        created = KripkeModel.fromConstraints(constraints, propositions, maxWorlds);
+        LOGGER.info("Created model with " + created.size() + " worlds over " + propositions.size() + " propositions");
+        if (key != null && modelCache != null)
+            modelCache.store(key, created);
+        return created;
+    }
+
+    @Override
+    public synchronized boolean applyEventModel(DELEventModel eventModel) {
+        if (model == null) {
+            LOGGER.warning("Can not apply event model: the model has not been created");
+            return false;
+        }
+
+        KripkeModel updated;
+        try {
+            updated = model.productUpdate(eventModel, maxWorlds);
+        } catch (IllegalStateException e) {
+            LOGGER.severe("Failed to apply event model: " + e.getMessage());
+            return false;
+        }
+
+        // An event model that is not applicable in any world would leave the agent without any possible world
+        if (updated.isEmpty()) {
+            LOGGER.warning("No event is applicable in the current model. The event model was not applied");
+            return false;
+        }
+
+        model = updated;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean extendModel(Collection<PropFormula> propositions, Collection<Formula> constraints) {
+        if (model == null) {
+            LOGGER.warning("Can not extend model: the model has not been created");
+            return false;
+        }
+
+        KripkeModel extended;
+        try {
+            extended = model.extend(propositions, constraints, maxWorlds);
+        } catch (IllegalStateException e) {
+            LOGGER.severe("Failed to extend model: " + e.getMessage());
+            return false;
+        }
+
+        if (extended.isEmpty()) {
+            LOGGER.warning("The new constraints are inconsistent with the model. The model was not extended");
+            return false;
+        }
+
+        LOGGER.info("Extended model to " + extended.size() + " worlds over " + this.propositions.size() + " propositions");
+        model = extended;
+        return true;
+    }
+
+    @Override
+    public synchronized Map<EpistemicFormulaLiteral, Boolean> evaluateFormulas(Collection<EpistemicFormulaLiteral> formulas) {
+        Map<EpistemicFormulaLiteral, Boolean> formulaResults = new HashMap<>();
+
+        if (formulas == null || model == null)
+            return formulaResults;
+
+        for (EpistemicFormulaLiteral formula : formulas) {
+            Formula prop = formula.getRootLiteral().toPropFormula();
+
+            boolean result = formula.getEpistemicModality() == EpistemicModality.POSSIBLE ? model.isPossible(prop) : model.knows(prop);
+            formulaResults.put(formula, formula.isModalityNegated() != result);
+        }
+        return formulaResults;
+    }
+
+    @Override
+    public synchronized Boolean evaluateFormula(Formula formula) {
+        if (model == null)
+            return false;
+
+        if (formula instanceof ModalPropFormula)
+            return model.evaluate((ModalPropFormula) formula);
+
+        // Non-modal formulas are evaluated as knowledge
+        return model.knows(formula);
+    }
+
+    @Override
+    public synchronized List<Boolean> evaluateModalFormulas(List<ModalPropFormula> formulas) {
+        List<Boolean> results = new ArrayList<>(formulas.size());
+        for (ModalPropFormula formula : formulas)
+            results.add(model != null && model.evaluate(formula));
+        return results;
+    }
+
+    /**
+     * @return the current model, null if it has not been created.
+     */
+    public synchronized KripkeModel getModel() {
+        return model;
+    }
+}
@@ -0,0 +1,172 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.reasoner.formula.Formula;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Persistent, content-addressed cache of the models built by the {@link LocalEpistemicReasoner}.
+ * <p>
+ * Models are keyed by the SHA-256 digest of the canonical encoding of their constraints (the
+ * {@link BinaryFormulaEncoder} encoding), so an agent whose source and initial beliefs have not changed
+ * reloads its model instead of enumerating the worlds again. Models are written to and read from
+ * memory-mapped files:
+ * <pre>
+ * file := MAGIC VERSION propCount (length utf8-bytes)* worldCount wordsPerWorld (word*)*
+ * </pre>
+ */
+public class ModelCache {
+    private static final Logger LOGGER = Logger.getLogger(ModelCache.class.getName());
+    private static final int MAGIC = 0x45504d43; // "EPMC"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".model";
+
+    private final Path directory;
+
+    public ModelCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the hexadecimal SHA-256 digest of the canonical encoding of the constraints.
+     */
+    public static String key(Collection<? extends Formula> constraints) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((byte) VERSION);
+            try (var out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+                new BinaryFormulaEncoder().write(constraints, out);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest())
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException("Could not hash the model constraints", e);
+        }
+    }
+
+    /**
+     * Loads the model stored under the key. The propositions of the model are interned in the given index.
+     *
+     * @return the model, or null if there is no (valid) model for the key.
+     */
+    public KripkeModel load(String key, PropositionIndex propositions) {
+        Path file = directory.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file))
+            return null;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION)
+                return null;
+
+            // Bits of the stored worlds are remapped if the index already had other propositions
+            int propCount = in.getInt();
+            int[] ids = new int[propCount];
+            boolean identity = true;
+            for (int i = 0; i < propCount; i++) {
+                int length = in.getInt();
+                if (length < 0 || length > in.remaining())
+                    throw new BufferUnderflowException();
+                byte[] prop = new byte[length];
+                in.get(prop);
+                ids[i] = propositions.intern(new String(prop, StandardCharsets.UTF_8));
+                identity &= ids[i] == i;
+            }
+
+            int worldCount = in.getInt();
+            int words = in.getInt();
+            if (worldCount < 0 || words != (propCount + Long.SIZE - 1) / Long.SIZE
+                    || (long) worldCount * words * Long.BYTES > in.remaining()) {
+                LOGGER.warning("Ignoring invalid cached model " + file + ": inconsistent world table");
+                return null;
+            }
+
+            long[] world = new long[words];
+            Set<BitSet> worlds = new LinkedHashSet<>();
+            for (int w = 0; w < worldCount; w++) {
+                for (int i = 0; i < words; i++)
+                    world[i] = in.getLong();
+
+                BitSet stored = BitSet.valueOf(world);
+                if (identity) {
+                    worlds.add(stored);
+                } else {
+                    BitSet remapped = new BitSet(propositions.size());
+                    for (int p = stored.nextSetBit(0); p >= 0; p = stored.nextSetBit(p + 1))
+                        remapped.set(ids[p]);
+                    worlds.add(remapped);
+                }
+            }
+            return KripkeModel.of(propositions, worlds);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            LOGGER.warning("Ignoring invalid cached model " + file + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the model under the key. The file is written next to its final location and then moved,
+     * so concurrent readers never see a partial model.
+     */
+    public void store(String key, KripkeModel model) {
+        PropositionIndex propositions = model.getPropositions();
+        int propCount = propositions.size();
+        int words = (propCount + Long.SIZE - 1) / Long.SIZE;
+
+        List<byte[]> props = new ArrayList<>(propCount);
+        long size = 4 * Integer.BYTES;
+        for (int i = 0; i < propCount; i++) {
+            byte[] prop = propositions.getProposition(i).getBytes(StandardCharsets.UTF_8);
+            props.add(prop);
+            size += Integer.BYTES + prop.length;
+        }
+        size += Integer.BYTES + (long) model.size() * words * Long.BYTES;
+
+        if (size > Integer.MAX_VALUE) {
+            LOGGER.warning("The model is too large to be cached (" + size + " bytes)");
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, key, EXTENSION + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                out.putInt(MAGIC).putInt(VERSION).putInt(propCount);
+                for (byte[] prop : props)
+                    out.putInt(prop.length).put(prop);
+
+                out.putInt(model.size()).putInt(words);
+                for (BitSet world : model.getWorlds()) {
+                    long[] bits = world.toLongArray();
+                    for (int i = 0; i < words; i++)
+                        out.putLong(i < bits.length ? bits[i] : 0);
+                }
+                out.force();
+            }
+            Files.move(tmp, directory.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warning("Could not cache the model: " + e);
+        }
+    }
+}
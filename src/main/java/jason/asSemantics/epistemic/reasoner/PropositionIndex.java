@@ -0,0 +1,52 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.reasoner.formula.PropFormula;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns propositions (identified by their propositional string, see {@link PropFormula#toPropString()})
+ * to dense integer ids, so that worlds can be represented as bit sets over propositions.
+ * <p>
+ * Indexes are thread safe, so that they can be shared with the model by several reasoners (see {@link SharedModels}).
+ * Ids are never removed, and a proposition interned by one reasoner is false in the worlds of the others.
+ */
+public class PropositionIndex {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> propositions = new ArrayList<>();
+
+    /**
+     * @return the id of the proposition, creating a new id if the proposition is not indexed yet.
+     */
+    public int intern(PropFormula prop) {
+        return intern(prop.toPropString());
+    }
+
+    public synchronized int intern(String prop) {
+        Integer id = ids.get(prop);
+        if (id == null) {
+            id = propositions.size();
+            ids.put(prop, id);
+            propositions.add(prop);
+        }
+        return id;
+    }
+
+    /**
+     * @return the id of the proposition, or -1 if the proposition is not indexed.
+     */
+    public int lookup(PropFormula prop) {
+        return ids.getOrDefault(prop.toPropString(), -1);
+    }
+
+    public synchronized String getProposition(int id) {
+        return propositions.get(id);
+    }
+
+    public synchronized int size() {
+        return propositions.size();
+    }
+}
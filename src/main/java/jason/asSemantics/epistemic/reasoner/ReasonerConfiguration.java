@@ -1,10 +1,15 @@
 package jason.asSemantics.epistemic.reasoner;
 
 import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
 import com.google.gson.stream.JsonReader;
+import jason.asSemantics.epistemic.metrics.EpistemicMetrics;
 
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.logging.Logger;
 
 public class ReasonerConfiguration {
@@ -13,12 +18,56 @@ public class ReasonerConfiguration {
     private static final String API_EVALUATE = "/api/evaluate";
     private static final String API_SINGLE_EVALUATE = "/api/single-evaluate";
     private static final String APPLY_EVENT = "/api/apply-event";
+    private static final String APPLY_EVENTS = "/api/apply-events";
     private static final String API_PROPS = "/api/props";
     private static final String API_MODEL = "/api/model";
+    private static final int DEFAULT_MAX_WORLDS = 1000000;
+    private static final int DEFAULT_MAX_BDD_NODES = 1 << 24;
+    private static final int DEFAULT_EVALUATION_BATCH_SIZE = 256;
+    private static final int DEFAULT_QUERY_CACHE_SIZE = 4096;
+    private static final int DEFAULT_MAX_CONNECTIONS = 64;
     private static ReasonerConfiguration instance;
     private static final Logger LOGGER = Logger.getLogger("Reasoner Configuration");
 
+    /** The reasoner backends that can be selected with the "backend" entry of the configuration file */
+    public enum Backend {
+        /** the external reasoner, accessed over HTTP at the configured host */
+        @SerializedName("http") HTTP,
+        /** an in-process explicit model checker, see {@link LocalEpistemicReasoner} */
+        @SerializedName("local") LOCAL,
+        /** an in-process symbolic model checker, see {@link BddEpistemicReasoner} */
+        @SerializedName("bdd") BDD,
+        /** the responses recorded in the "traceDir" directory, see {@link ReplayEpistemicReasoner} */
+        @SerializedName("replay") REPLAY
+    }
+
+    /** The request body formats that can be selected with the "wireFormat" entry of the configuration file */
+    public enum WireFormat {
+        /** formulas are sent as JSON trees */
+        @SerializedName("json") JSON,
+        /** formulas are sent as postfix op codes over interned propositions, see {@link BinaryFormulaEncoder} */
+        @SerializedName("binary") BINARY
+    }
+
+    // Note: Gson does not run field initialisers, so unset values are null/0 and defaults are applied in the getters
     private String fullHost;
+    private Backend backend;
+    private WireFormat wireFormat;
+    private int maxWorlds;
+    private int maxBddNodes;
+    private int evaluationBatchSize;
+    private int queryCacheSize;
+    private int constraintParallelism;
+    private int maxConnections;
+    private int requestThreads;
+    private boolean pipelineEventModels;
+    private boolean coalesceBeliefEvents;
+    private String metricsFile;
+    private String modelCacheDir;
+    private boolean shareModels;
+    private boolean tableRewrites;
+    private String traceDir;
+    private boolean replayTiming;
 
     protected ReasonerConfiguration(String fullHost) {
         this.fullHost = fullHost;
@@ -55,7 +104,184 @@ public class ReasonerConfiguration {
         return instance;
     }
 
+    /**
+     * Replaces the configuration read from the configuration file, e.g. to run benchmarks against a
+     * stand-in reasoner. Reasoners that are already created keep their configuration.
+     */
+    public static void setInstance(ReasonerConfiguration configuration) {
+        instance = configuration;
+    }
+
     public String getTransitionUpdateEndpoint() {
         return fullHost + APPLY_EVENT;
     }
+
+    public String getTransitionBatchUpdateEndpoint() {
+        return fullHost + APPLY_EVENTS;
+    }
+
+    public Backend getBackend() {
+        return backend == null ? Backend.HTTP : backend;
+    }
+
+    /**
+     * @return the format of the model creation and batch evaluation requests sent to the HTTP reasoner.
+     * The binary format must be supported by the reasoner.
+     */
+    public WireFormat getWireFormat() {
+        return wireFormat == null ? WireFormat.JSON : wireFormat;
+    }
+
+    /**
+     * @return the maximum number of worlds of a model built by the in-process reasoner.
+     */
+    public int getMaxWorlds() {
+        return maxWorlds <= 0 ? DEFAULT_MAX_WORLDS : maxWorlds;
+    }
+
+    /**
+     * @return the maximum number of BDD nodes of a model built by the symbolic in-process reasoner.
+     */
+    public int getMaxBddNodes() {
+        return maxBddNodes <= 0 ? DEFAULT_MAX_BDD_NODES : maxBddNodes;
+    }
+
+    /**
+     * @return the maximum number of candidate formulas of a logical consequence that are evaluated in a
+     * single request. A value of 1 evaluates candidates one at a time.
+     */
+    public int getEvaluationBatchSize() {
+        return evaluationBatchSize <= 0 ? DEFAULT_EVALUATION_BATCH_SIZE : evaluationBatchSize;
+    }
+
+    /**
+     * @return the maximum number of formula valuations cached by each agent (0 if the cache is disabled,
+     * which is configured with a negative size).
+     */
+    public int getQueryCacheSize() {
+        if (queryCacheSize < 0)
+            return 0;
+        return queryCacheSize == 0 ? DEFAULT_QUERY_CACHE_SIZE : queryCacheSize;
+    }
+
+    /**
+     * @return the number of threads used to generate the model creation constraints (defaults to the number of processors).
+     */
+    public int getConstraintParallelism() {
+        return constraintParallelism <= 0 ? Runtime.getRuntime().availableProcessors() : constraintParallelism;
+    }
+
+    /**
+     * @return the size of the HTTP connection pool shared by the reasoners of all agents.
+     */
+    public int getMaxConnections() {
+        return maxConnections <= 0 ? DEFAULT_MAX_CONNECTIONS : maxConnections;
+    }
+
+    /**
+     * @return the number of threads that send asynchronous requests to the HTTP reasoner (defaults to the pool size).
+     */
+    public int getRequestThreads() {
+        return requestThreads <= 0 ? getMaxConnections() : requestThreads;
+    }
+
+    /**
+     * @return true if event models are applied asynchronously, so that the agent does not wait for the reasoner
+     * until it evaluates an epistemic formula.
+     */
+    public boolean isPipelineEventModels() {
+        return pipelineEventModels;
+    }
+
+    /**
+     * @return true if the event models of the belief events of a sense phase are applied as a single batch
+     * at the end of the phase. The HTTP reasoner must support batches of event models.
+     */
+    public boolean isCoalesceBeliefEvents() {
+        return coalesceBeliefEvents;
+    }
+
+    /**
+     * @return true if the agents created from the same constraints share their initial model, see {@link SharedModels}.
+     * Only used by the in-process reasoner.
+     */
+    public boolean isShareModels() {
+        return shareModels;
+    }
+
+    /**
+     * @return true if the answers of the goals derived for the constraint rules are tabled while the model
+     * is created, see {@link jason.asSemantics.epistemic.RewriteTable}.
+     */
+    public boolean isTableRewrites() {
+        return tableRewrites;
+    }
+
+    /**
+     * @return the directory of the reasoner traces of the agents, or null if the requests to the reasoner are
+     * not recorded. The traces are replayed by the "replay" backend and recorded by the other backends.
+     */
+    public Path getTraceDir() {
+        return traceDir == null || traceDir.isBlank() ? null : Paths.get(traceDir);
+    }
+
+    /**
+     * @return true if the replayed responses are delayed by the time the recorded reasoner took to answer.
+     */
+    public boolean isReplayTiming() {
+        return replayTiming;
+    }
+
+    /**
+     * @return the CSV file the epistemic metrics of all agents are written to when the MAS finishes, or null
+     * if the metrics are not written.
+     */
+    public String getMetricsFile() {
+        return metricsFile == null || metricsFile.isBlank() ? null : metricsFile;
+    }
+
+    /**
+     * @return the cache of the models created by the in-process reasoner, stored in the "modelCacheDir"
+     * directory, or null if models are not cached.
+     */
+    public ModelCache getModelCache() {
+        return modelCacheDir == null || modelCacheDir.isBlank() ? null : new ModelCache(Paths.get(modelCacheDir));
+    }
+
+    /**
+     * Creates a new reasoner for the configured backend.
+     *
+     * @param metrics the metrics of the agent using the reasoner.
+     */
+    public EpistemicReasoner createReasoner(EpistemicMetrics metrics) {
+        Path trace = getTraceDir() == null ? null : ReasonerTrace.file(getTraceDir(), metrics.getAgentName());
+        EpistemicReasoner reasoner;
+        switch (getBackend()) {
+            case LOCAL:
+                reasoner = new LocalEpistemicReasoner(getMaxWorlds(), getModelCache(), isShareModels());
+                break;
+            case BDD:
+                reasoner = new BddEpistemicReasoner(getMaxBddNodes());
+                break;
+            case REPLAY:
+                if (trace == null)
+                    throw new IllegalStateException("The replay backend requires the \"traceDir\" configuration entry");
+                try {
+                    return new ReplayEpistemicReasoner(trace, isReplayTiming());
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not read the reasoner trace " + trace, e);
+                }
+            default:
+                reasoner = new HttpEpistemicReasoner(metrics);
+        }
+
+        if (trace == null)
+            return reasoner;
+        try {
+            return new RecordingEpistemicReasoner(reasoner, new ReasonerTrace(trace));
+        } catch (IOException e) {
+            LOGGER.warning("Could not create the reasoner trace " + trace + ", the requests are not recorded: " + e);
+            return reasoner;
+        }
+    }
 }
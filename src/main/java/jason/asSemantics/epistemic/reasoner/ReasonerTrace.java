@@ -0,0 +1,235 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.DELEvent;
+import jason.asSemantics.epistemic.DELEventModel;
+import jason.asSemantics.epistemic.reasoner.formula.Formula;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Append-only log of the requests sent to a reasoner and of their responses, written by the
+ * {@link RecordingEpistemicReasoner} and read by the {@link ReplayEpistemicReasoner}.
+ * <p>
+ * Requests are not stored: each record holds the operation, a 64-bit hash of the request (its key), the
+ * time the reasoner took to answer and the response.
+ * <pre>
+ * file     := MAGIC VERSION record*
+ * record   := op key nanos valueCount value*
+ * value    := 0 (false) | 1 (true) | 2 (null, or no valuation)
+ * </pre>
+ * Each record is flushed once written, so the log of an interrupted run can be replayed up to its last request.
+ */
+public final class ReasonerTrace implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ReasonerTrace.class.getName());
+    private static final int MAGIC = 0x45505452; // "EPTR"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".trace";
+
+    // Traces being written, closed when the MAS finishes
+    private static final Set<ReasonerTrace> OPEN = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    // operations
+    static final byte CREATE_MODEL = 1;
+    static final byte EXTEND_MODEL = 2;
+    static final byte APPLY_EVENT_MODEL = 3;
+    static final byte APPLY_EVENT_MODELS = 4;
+    static final byte EVALUATE_FORMULAS = 5;
+    static final byte EVALUATE_FORMULA = 6;
+    static final byte EVALUATE_MODAL_FORMULAS = 7;
+
+    private static final byte FALSE = 0;
+    private static final byte TRUE = 1;
+    private static final byte NULL = 2;
+
+    private final Path file;
+    private final DataOutputStream out;
+
+    /**
+     * Creates the trace file, replacing any previous trace.
+     */
+    ReasonerTrace(Path file) throws IOException {
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.flush();
+        OPEN.add(this);
+    }
+
+    /**
+     * @return the trace file of an agent in the directory.
+     */
+    public static Path file(Path directory, String agentName) {
+        return directory.resolve(agentName.replaceAll("[^A-Za-z0-9_.-]", "_") + EXTENSION);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Appends a record. Records that can not be written are dropped (the trace is then incomplete).
+     *
+     * @param values the response, with null for formulas without valuation.
+     */
+    synchronized void append(byte op, long key, long nanos, List<Boolean> values) {
+        try {
+            out.writeByte(op);
+            out.writeLong(key);
+            out.writeLong(nanos);
+            out.writeInt(values.size());
+            for (Boolean value : values)
+                out.writeByte(value == null ? NULL : value ? TRUE : FALSE);
+            out.flush();
+        } catch (IOException e) {
+            LOGGER.warning("Could not write to the reasoner trace " + file + ": " + e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        OPEN.remove(this);
+        try {
+            out.close();
+        } catch (IOException e) {
+            LOGGER.warning("Could not close the reasoner trace " + file + ": " + e);
+        }
+    }
+
+    /**
+     * Closes all the traces being written (called when the MAS finishes).
+     */
+    public static void closeAll() {
+        List<ReasonerTrace> open;
+        synchronized (OPEN) {
+            open = new ArrayList<>(OPEN);
+        }
+        for (ReasonerTrace trace : open)
+            trace.close();
+    }
+
+    /**
+     * Reads all the records of a trace. A truncated last record (e.g. of an interrupted run) is ignored.
+     *
+     * @throws IOException if the file is not a trace.
+     */
+    static List<Record> read(Path file) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException(file + " is not a reasoner trace");
+
+            while (true) {
+                int op = in.read();
+                if (op < 0)
+                    break;
+
+                long key = in.readLong();
+                long nanos = in.readLong();
+                int count = in.readInt();
+                List<Boolean> values = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    byte value = in.readByte();
+                    values.add(value == NULL ? null : value == TRUE);
+                }
+                records.add(new Record((byte) op, key, nanos, values));
+            }
+        } catch (EOFException e) {
+            LOGGER.warning("Ignoring the truncated last record of the reasoner trace " + file);
+        }
+        return records;
+    }
+
+    /**
+     * @return the key of the creation of a model. The constraints are hashed as in {@link ModelCache}, without
+     * building their string.
+     */
+    static long constraintsKey(Collection<? extends Formula> constraints) {
+        return hash(CREATE_MODEL, ModelCache.key(constraints));
+    }
+
+    /**
+     * @return the key of a model extension.
+     */
+    static long extensionKey(Collection<? extends Formula> propositions, Collection<? extends Formula> constraints) {
+        return hash(EXTEND_MODEL, join(propositions) + "|" + ModelCache.key(constraints));
+    }
+
+    /**
+     * @return the key of the application of event models.
+     */
+    static long eventModelsKey(byte op, List<DELEventModel> eventModels) {
+        StringBuilder s = new StringBuilder();
+        for (DELEventModel eventModel : eventModels) {
+            // Events and post-conditions are sorted, as their iteration order may differ between runs
+            List<String> events = new ArrayList<>();
+            for (DELEvent e : eventModel.getDelEvents()) {
+                List<String> post = new ArrayList<>();
+                for (var entry : e.getPostCondition().entrySet())
+                    post.add(entry.getKey() + "=" + entry.getValue());
+                Collections.sort(post);
+                events.add(e.getEventId() + "[" + e.getPreCondition() + "]" + post);
+            }
+            Collections.sort(events);
+            s.append(events).append(';');
+        }
+        return hash(op, s);
+    }
+
+    /**
+     * @return the key of an evaluation request, given by the strings of the formulas.
+     */
+    static long key(byte op, Collection<?> formulas) {
+        return hash(op, join(formulas));
+    }
+
+    private static String join(Collection<?> items) {
+        StringJoiner s = new StringJoiner(";");
+        for (Object item : items)
+            s.add(String.valueOf(item));
+        return s.toString();
+    }
+
+    /**
+     * @return the 64-bit FNV-1a hash of the operation and request.
+     */
+    private static long hash(byte op, CharSequence request) {
+        long h = 0xcbf29ce484222325L ^ op;
+        h *= 0x100000001b3L;
+        byte[] bytes = request.toString().getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * A recorded request and its response.
+     */
+    static final class Record {
+        final byte op;
+        final long key;
+        final long nanos;
+        final List<Boolean> values;
+
+        Record(byte op, long key, long nanos, List<Boolean> values) {
+            this.op = op;
+            this.key = key;
+            this.nanos = nanos;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.DELEventModel;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicFormulaLiteral;
+import jason.asSemantics.epistemic.reasoner.formula.Formula;
+import jason.asSemantics.epistemic.reasoner.formula.ModalPropFormula;
+import jason.asSemantics.epistemic.reasoner.formula.PropFormula;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reasoner that forwards all requests to another reasoner and records each request, with its response and
+ * the time the reasoner took to answer, in a {@link ReasonerTrace}. The trace can be replayed without the
+ * reasoner by the {@link ReplayEpistemicReasoner}.
+ * <p>
+ * Requests that throw an exception are not recorded.
+ */
+public class RecordingEpistemicReasoner implements EpistemicReasoner {
+    private final EpistemicReasoner reasoner;
+    private final ReasonerTrace trace;
+
+    public RecordingEpistemicReasoner(EpistemicReasoner reasoner, ReasonerTrace trace) {
+        this.reasoner = reasoner;
+        this.trace = trace;
+    }
+
+    @Override
+    public boolean createModel(Collection<Formula> constraints) {
+        long key = ReasonerTrace.constraintsKey(constraints);
+        long startTime = System.nanoTime();
+        boolean result = reasoner.createModel(constraints);
+        trace.append(ReasonerTrace.CREATE_MODEL, key, System.nanoTime() - startTime, List.of(result));
+        return result;
+    }
+
+    @Override
+    public boolean extendModel(Collection<PropFormula> propositions, Collection<Formula> constraints) {
+        long key = ReasonerTrace.extensionKey(propositions, constraints);
+        long startTime = System.nanoTime();
+        boolean result = reasoner.extendModel(propositions, constraints);
+        trace.append(ReasonerTrace.EXTEND_MODEL, key, System.nanoTime() - startTime, List.of(result));
+        return result;
+    }
+
+    @Override
+    public boolean applyEventModel(DELEventModel eventModel) {
+        long key = ReasonerTrace.eventModelsKey(ReasonerTrace.APPLY_EVENT_MODEL, List.of(eventModel));
+        long startTime = System.nanoTime();
+        boolean result = reasoner.applyEventModel(eventModel);
+        trace.append(ReasonerTrace.APPLY_EVENT_MODEL, key, System.nanoTime() - startTime, List.of(result));
+        return result;
+    }
+
+    @Override
+    public List<Boolean> applyEventModels(List<DELEventModel> eventModels) {
+        long key = ReasonerTrace.eventModelsKey(ReasonerTrace.APPLY_EVENT_MODELS, eventModels);
+        long startTime = System.nanoTime();
+        List<Boolean> results = reasoner.applyEventModels(eventModels);
+        trace.append(ReasonerTrace.APPLY_EVENT_MODELS, key, System.nanoTime() - startTime, results);
+        return results;
+    }
+
+    /**
+     * Asynchronous applications are recorded as {@link #applyEventModels(List)}, once they complete.
+     */
+    @Override
+    public CompletableFuture<List<Boolean>> applyEventModelsAsync(List<DELEventModel> eventModels) {
+        long key = ReasonerTrace.eventModelsKey(ReasonerTrace.APPLY_EVENT_MODELS, eventModels);
+        long startTime = System.nanoTime();
+        return reasoner.applyEventModelsAsync(eventModels).whenComplete((results, ex) -> {
+            if (ex == null)
+                trace.append(ReasonerTrace.APPLY_EVENT_MODELS, key, System.nanoTime() - startTime, results);
+        });
+    }
+
+    @Override
+    public Map<EpistemicFormulaLiteral, Boolean> evaluateFormulas(Collection<EpistemicFormulaLiteral> formulas) {
+        long key = ReasonerTrace.key(ReasonerTrace.EVALUATE_FORMULAS, formulas);
+        long startTime = System.nanoTime();
+        Map<EpistemicFormulaLiteral, Boolean> results = reasoner.evaluateFormulas(formulas);
+        long nanos = System.nanoTime() - startTime;
+
+        // the valuations are recorded in the order of the formulas
+        List<Boolean> values = new ArrayList<>(formulas.size());
+        for (EpistemicFormulaLiteral formula : formulas)
+            values.add(results.get(formula));
+        trace.append(ReasonerTrace.EVALUATE_FORMULAS, key, nanos, values);
+        return results;
+    }
+
+    @Override
+    public Boolean evaluateFormula(Formula formula) {
+        long key = ReasonerTrace.key(ReasonerTrace.EVALUATE_FORMULA, List.of(formula));
+        long startTime = System.nanoTime();
+        Boolean result = reasoner.evaluateFormula(formula);
+        List<Boolean> values = new ArrayList<>(1);
+        values.add(result);
+        trace.append(ReasonerTrace.EVALUATE_FORMULA, key, System.nanoTime() - startTime, values);
+        return result;
+    }
+
+    @Override
+    public List<Boolean> evaluateModalFormulas(List<ModalPropFormula> formulas) {
+        long key = ReasonerTrace.key(ReasonerTrace.EVALUATE_MODAL_FORMULAS, formulas);
+        long startTime = System.nanoTime();
+        List<Boolean> results = reasoner.evaluateModalFormulas(formulas);
+        trace.append(ReasonerTrace.EVALUATE_MODAL_FORMULAS, key, System.nanoTime() - startTime, results);
+        return results;
+    }
+
+    /**
+     * @return the reasoner the requests are forwarded to.
+     */
+    public EpistemicReasoner getReasoner() {
+        return reasoner;
+    }
+
+    public ReasonerTrace getTrace() {
+        return trace;
+    }
+}
@@ -0,0 +1,141 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.DELEventModel;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicFormulaLiteral;
+import jason.asSemantics.epistemic.reasoner.formula.Formula;
+import jason.asSemantics.epistemic.reasoner.formula.ModalPropFormula;
+import jason.asSemantics.epistemic.reasoner.formula.PropFormula;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Reasoner backend that answers the requests with the responses recorded in a {@link ReasonerTrace}
+ * (see {@link RecordingEpistemicReasoner}), so that a run can be executed again without the reasoner,
+ * e.g. to profile the agents.
+ * <p>
+ * A request is answered with the next recorded response of the same request: as long as the run sends
+ * the same requests, the responses are the same as in the recorded run, whatever the order of the
+ * requests of different agents. Requests that were not recorded fail (the model is not created or
+ * updated, and formulas have no valuation) and are counted as misses.
+ * The recorded reasoner latency can optionally be reproduced.
+ */
+public class ReplayEpistemicReasoner implements EpistemicReasoner {
+    private static final Logger LOGGER = Logger.getLogger(ReplayEpistemicReasoner.class.getName());
+
+    private final Map<Long, Deque<ReasonerTrace.Record>> responses = new HashMap<>();
+    private final boolean replayTiming;
+    private int misses = 0;
+
+    /**
+     * @param replayTiming true if each response is delayed by the time the recorded reasoner took to answer.
+     * @throws IOException if the trace can not be read.
+     */
+    public ReplayEpistemicReasoner(Path trace, boolean replayTiming) throws IOException {
+        this.replayTiming = replayTiming;
+        List<ReasonerTrace.Record> records = ReasonerTrace.read(trace);
+        for (ReasonerTrace.Record record : records)
+            responses.computeIfAbsent(record.key, k -> new ArrayDeque<>()).add(record);
+        LOGGER.info("Replaying " + records.size() + " reasoner requests from " + trace);
+    }
+
+    /**
+     * @return the recorded response of the request, or null if the request was not recorded.
+     */
+    private List<Boolean> replay(byte op, long key) {
+        ReasonerTrace.Record record = next(op, key);
+        if (record == null) {
+            LOGGER.warning("No recorded response for the request " + Long.toHexString(key) + " (operation " + op + ")");
+            return null;
+        }
+
+        if (replayTiming) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(record.nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return record.values;
+    }
+
+    private synchronized ReasonerTrace.Record next(byte op, long key) {
+        Deque<ReasonerTrace.Record> recorded = responses.get(key);
+        ReasonerTrace.Record record = recorded == null ? null : recorded.poll();
+        if (record == null || record.op != op) {
+            misses++;
+            return null;
+        }
+        return record;
+    }
+
+    private boolean replayResult(byte op, long key) {
+        List<Boolean> values = replay(op, key);
+        return values != null && values.size() == 1 && Boolean.TRUE.equals(values.get(0));
+    }
+
+    @Override
+    public boolean createModel(Collection<Formula> constraints) {
+        return replayResult(ReasonerTrace.CREATE_MODEL, ReasonerTrace.constraintsKey(constraints));
+    }
+
+    @Override
+    public boolean extendModel(Collection<PropFormula> propositions, Collection<Formula> constraints) {
+        return replayResult(ReasonerTrace.EXTEND_MODEL, ReasonerTrace.extensionKey(propositions, constraints));
+    }
+
+    @Override
+    public boolean applyEventModel(DELEventModel eventModel) {
+        return replayResult(ReasonerTrace.APPLY_EVENT_MODEL, ReasonerTrace.eventModelsKey(ReasonerTrace.APPLY_EVENT_MODEL, List.of(eventModel)));
+    }
+
+    @Override
+    public List<Boolean> applyEventModels(List<DELEventModel> eventModels) {
+        List<Boolean> values = replay(ReasonerTrace.APPLY_EVENT_MODELS, ReasonerTrace.eventModelsKey(ReasonerTrace.APPLY_EVENT_MODELS, eventModels));
+        if (values == null || values.size() != eventModels.size())
+            return Collections.nCopies(eventModels.size(), false);
+        return values;
+    }
+
+    @Override
+    public Map<EpistemicFormulaLiteral, Boolean> evaluateFormulas(Collection<EpistemicFormulaLiteral> formulas) {
+        Map<EpistemicFormulaLiteral, Boolean> formulaResults = new HashMap<>();
+        if (formulas == null)
+            return formulaResults;
+
+        List<Boolean> values = replay(ReasonerTrace.EVALUATE_FORMULAS, ReasonerTrace.key(ReasonerTrace.EVALUATE_FORMULAS, formulas));
+        if (values == null || values.size() != formulas.size())
+            return formulaResults;
+
+        Iterator<Boolean> it = values.iterator();
+        for (EpistemicFormulaLiteral formula : formulas) {
+            Boolean value = it.next();
+            if (value != null)
+                formulaResults.put(formula, value);
+        }
+        return formulaResults;
+    }
+
+    @Override
+    public Boolean evaluateFormula(Formula formula) {
+        return replayResult(ReasonerTrace.EVALUATE_FORMULA, ReasonerTrace.key(ReasonerTrace.EVALUATE_FORMULA, List.of(formula)));
+    }
+
+    @Override
+    public List<Boolean> evaluateModalFormulas(List<ModalPropFormula> formulas) {
+        List<Boolean> values = replay(ReasonerTrace.EVALUATE_MODAL_FORMULAS, ReasonerTrace.key(ReasonerTrace.EVALUATE_MODAL_FORMULAS, formulas));
+        if (values == null || values.size() != formulas.size())
+            return Collections.nCopies(formulas.size(), false);
+        return values;
+    }
+
+    /**
+     * @return the number of requests that were not recorded.
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+}
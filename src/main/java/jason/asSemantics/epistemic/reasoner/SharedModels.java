@@ -0,0 +1,68 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Initial models shared by the in-process reasoners of a MAS. Agents instantiated from the same program
+ * create their models from the same constraints: the model is created once, by the first agent, and the
+ * other agents wait for it instead of creating it again.
+ * <p>
+ * Models are immutable, so sharing them is safe: each agent keeps its own current model, and the updates
+ * that only remove worlds are stored as deltas of the shared model (see {@link KripkeModel}).
+ * Startup time and memory then depend on the number of distinct programs rather than on the number of agents.
+ */
+public final class SharedModels {
+    private static final Logger LOGGER = Logger.getLogger(SharedModels.class.getName());
+    private static final Map<String, CompletableFuture<KripkeModel>> MODELS = new ConcurrentHashMap<>();
+
+    private SharedModels() {
+    }
+
+    /**
+     * @param key    the key of the constraints of the model (see {@link ModelCache#key(java.util.Collection)}).
+     * @param create creates the model if it is not shared yet.
+     * @return the shared model.
+     * @throws IllegalStateException if the model could not be created.
+     */
+    static KripkeModel get(String key, Supplier<KripkeModel> create) {
+        CompletableFuture<KripkeModel> created = new CompletableFuture<>();
+        CompletableFuture<KripkeModel> existing = MODELS.putIfAbsent(key, created);
+
+        if (existing == null) {
+            try {
+                created.complete(create.get());
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+            }
+        } else {
+            LOGGER.fine("Sharing the model " + key);
+        }
+
+        try {
+            return (existing == null ? created : existing).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of distinct models that are shared.
+     */
+    public static int size() {
+        return MODELS.size();
+    }
+
+    /**
+     * Releases the shared models (called when the MAS finishes).
+     */
+    public static void clear() {
+        MODELS.clear();
+    }
+}
@@ -13,12 +13,16 @@ public class AndFormula extends Formula {
     private final List<Formula> formulaList;
 
     public AndFormula(Formula... formulas) {
-        this(Arrays.asList(formulas));
+        this(List.of(formulas));
     }
 
     public AndFormula(Collection<Formula> formulas) {
         super(FORM_TYPE);
-        this.formulaList = new ArrayList<>(formulas);
+        this.formulaList = List.copyOf(formulas);
+    }
+
+    public List<Formula> getFormulas() {
+        return formulaList;
     }
 
     @Override
@@ -65,8 +69,8 @@ public class AndFormula extends Formula {
     }
 
     @Override
-    public int hashCode() {
-        int result = super.hashCode();
+    protected int calcHashCode() {
+        int result = super.calcHashCode();
         result = 31 * result + (formulaList != null ? formulaList.hashCode() : 0);
         return result;
     }
@@ -8,7 +8,7 @@ import jason.asSyntax.Literal;
 import jason.asSyntax.LiteralImpl;
 
 import java.util.Objects;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class is used to represent a knowledge formula.
@@ -17,12 +17,15 @@ import java.util.UUID;
  */
 public abstract class EpistemicFormulaLiteral {
 
+    // Ids only need to be unique among the formulas of a request
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
     private final Literal rootLiteral;
     private final Literal originalLiteral;
     private final EpistemicModality modality;
     private final boolean modalityNegated;
     private final boolean propositionNegated;
-    private final UUID uuid;
+    private final long id;
 
     /**
      * Can only be constructed through the static parseLiteral method.
@@ -35,7 +38,7 @@ public abstract class EpistemicFormulaLiteral {
         this.rootLiteral = processRootLiteral(this.originalLiteral);
         this.modalityNegated = getModalityNegated();
         this.propositionNegated = ((Literal) rootLiteral.clone()).negated();
-        uuid = UUID.randomUUID();
+        id = NEXT_ID.getAndIncrement();
     }
 
     public static EpistemicFormulaLiteral CreateFormula(EpistemicModality epistemicModality, Literal next) {
@@ -94,7 +97,7 @@ public abstract class EpistemicFormulaLiteral {
     }
 
     public String getUniqueId() {
-        return this.uuid.toString();
+        return Long.toString(this.id);
     }
 
     public Literal getCleanedOriginal() {
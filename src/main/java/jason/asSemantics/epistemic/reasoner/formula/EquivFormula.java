@@ -23,6 +23,14 @@ public class EquivFormula extends Formula {
         this.consequent = consequent;
     }
 
+    public Formula getAntecedent() {
+        return antecedent;
+    }
+
+    public Formula getConsequent() {
+        return consequent;
+    }
+
     @Override
     public JsonObject toJson() {
         JsonObject obj = new JsonObject();
@@ -55,8 +63,8 @@ public class EquivFormula extends Formula {
     }
 
     @Override
-    public int hashCode() {
-        int result = super.hashCode();
+    protected int calcHashCode() {
+        int result = super.calcHashCode();
         result = 31 * result + (antecedent != null ? antecedent.hashCode() : 0);
         result = 31 * result + (consequent != null ? consequent.hashCode() : 0);
         return result;
@@ -8,6 +8,8 @@ public abstract class Formula {
 
     private final String type;
     private int depthCache = -1;
+    private int hashCache;
+    volatile boolean interned;
     protected Formula(String type)
     {
         this.type = type;
@@ -29,8 +31,25 @@ public abstract class Formula {
 
         return depthCache;
     }
+    /**
+     * @return true if this formula is the canonical instance of its structure (see {@link FormulaFactory}).
+     */
+    public final boolean isInterned() {
+        return interned;
+    }
+
+    /**
+     * Formulas are immutable, so the hash is only calculated once (with {@link #calcHashCode()}).
+     */
     @Override
-    public int hashCode() {
+    public final int hashCode() {
+        int h = hashCache;
+        if (h == 0)
+            hashCache = h = calcHashCode();
+        return h;
+    }
+
+    protected int calcHashCode() {
         return type.hashCode();
     }
 
@@ -41,6 +60,10 @@ public abstract class Formula {
 
         Formula formula = (Formula) o;
 
+        // Distinct interned formulas are never structurally equal
+        if (interned && formula.interned) return false;
+        if (hashCode() != formula.hashCode()) return false;
+
         return Objects.equals(type, formula.type);
     }
 }
@@ -0,0 +1,139 @@
+package jason.asSemantics.epistemic.reasoner.formula;
+
+import jason.asSyntax.Pred;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * Hash-consing factory for formulas: structurally equal formulas created through the factory share a single
+ * immutable instance, so formulas form a DAG, equality of interned formulas is an identity check and their
+ * hash is only calculated once.
+ * <p>
+ * The intern table only holds weak references, so formulas that are no longer used (e.g. the constraints
+ * of a created model) can be garbage collected. The table is split in segments to reduce contention when
+ * formulas are built by parallel tasks.
+ */
+public final class FormulaFactory {
+
+    private static final int SEGMENTS = 16;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Map<Formula, WeakReference<Formula>>[] TABLES = new Map[SEGMENTS];
+
+    static {
+        for (int i = 0; i < SEGMENTS; i++)
+            TABLES[i] = new WeakHashMap<>();
+    }
+
+    private FormulaFactory() {
+    }
+
+    public static PropFormula prop(Pred lit) {
+        return intern(new PropFormula(lit));
+    }
+
+    public static NotFormula not(Formula inner) {
+        return intern(new NotFormula(intern(inner)));
+    }
+
+    public static AndFormula and(Formula... formulas) {
+        return and(Arrays.asList(formulas));
+    }
+
+    public static AndFormula and(Collection<? extends Formula> formulas) {
+        return intern(new AndFormula(internAll(formulas)));
+    }
+
+    public static OrFormula or(Formula... formulas) {
+        return or(Arrays.asList(formulas));
+    }
+
+    public static OrFormula or(Collection<? extends Formula> formulas) {
+        return intern(new OrFormula(internAll(formulas)));
+    }
+
+    public static ImpliesFormula implies(Formula antecedent, Formula consequent) {
+        return intern(new ImpliesFormula(intern(antecedent), intern(consequent)));
+    }
+
+    public static EquivFormula equiv(Formula antecedent, Formula consequent) {
+        return intern(new EquivFormula(intern(antecedent), intern(consequent)));
+    }
+
+    public static ModalPropFormula modal(EpistemicModality modality, Formula inner) {
+        return intern(new ModalPropFormula(modality, intern(inner)));
+    }
+
+    /**
+     * @return the canonical instance of the formula. Sub-formulas that are not interned yet are interned too.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Formula> T intern(T formula) {
+        if (formula == null || formula.interned)
+            return formula;
+
+        T canonical = (T) withInternedChildren(formula);
+
+        var table = TABLES[(canonical.hashCode() ^ (canonical.hashCode() >>> 16)) & (SEGMENTS - 1)];
+        synchronized (table) {
+            var ref = table.get(canonical);
+            var existing = ref == null ? null : ref.get();
+            if (existing != null)
+                return (T) existing;
+
+            canonical.interned = true;
+            table.put(canonical, new WeakReference<>(canonical));
+            return canonical;
+        }
+    }
+
+    private static List<Formula> internAll(Collection<? extends Formula> formulas) {
+        List<Formula> interned = new ArrayList<>(formulas.size());
+        for (Formula f : formulas)
+            interned.add(intern(f));
+        return interned;
+    }
+
+    /**
+     * @return the formula itself if all of its children are interned, or an equal formula built from the interned children.
+     */
+    private static Formula withInternedChildren(Formula f) {
+        if (f instanceof NotFormula) {
+            var inner = ((NotFormula) f).getInner();
+            return inner.interned ? f : new NotFormula(intern(inner));
+        }
+        if (f instanceof ModalPropFormula) {
+            var modal = (ModalPropFormula) f;
+            return modal.getInner().interned ? f : new ModalPropFormula(modal.getModality(), intern(modal.getInner()));
+        }
+        if (f instanceof AndFormula) {
+            var children = ((AndFormula) f).getFormulas();
+            return allInterned(children) ? f : new AndFormula(internAll(children));
+        }
+        if (f instanceof OrFormula) {
+            var children = ((OrFormula) f).getFormulas();
+            return allInterned(children) ? f : new OrFormula(internAll(children));
+        }
+        if (f instanceof ImpliesFormula) {
+            var implies = (ImpliesFormula) f;
+            if (implies.getAntecedent().interned && implies.getConsequent().interned)
+                return f;
+            return new ImpliesFormula(intern(implies.getAntecedent()), intern(implies.getConsequent()));
+        }
+        if (f instanceof EquivFormula) {
+            var equiv = (EquivFormula) f;
+            if (equiv.getAntecedent().interned && equiv.getConsequent().interned)
+                return f;
+            return new EquivFormula(intern(equiv.getAntecedent()), intern(equiv.getConsequent()));
+        }
+        return f;
+    }
+
+    private static boolean allInterned(List<Formula> formulas) {
+        for (Formula f : formulas)
+            if (!f.interned)
+                return false;
+        return true;
+    }
+}
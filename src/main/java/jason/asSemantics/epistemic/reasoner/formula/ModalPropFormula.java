@@ -7,7 +7,7 @@ import com.google.gson.JsonPrimitive;
 import java.util.Objects;
 
 public class ModalPropFormula extends Formula {
-    private EpistemicModality modality;
+    private final EpistemicModality modality;
     private static final String FORM_TYPE = "modal";
     private final Formula inner;
 
@@ -17,6 +17,14 @@ public class ModalPropFormula extends Formula {
         this.inner = inner;
     }
 
+    public EpistemicModality getModality() {
+        return modality;
+    }
+
+    public Formula getInner() {
+        return inner;
+    }
+
     @Override
     public JsonElement toJson() {
         JsonObject obj = new JsonObject();
@@ -45,8 +53,8 @@ public class ModalPropFormula extends Formula {
     }
 
     @Override
-    public int hashCode() {
-        int result = super.hashCode();
+    protected int calcHashCode() {
+        int result = super.calcHashCode();
         result = 31 * result + (modality != null ? modality.hashCode() : 0);
         result = 31 * result + (inner != null ? inner.hashCode() : 0);
         return result;
@@ -22,6 +22,10 @@ public class NotFormula extends Formula {
         this.innerForm = inner;
     }
 
+    public Formula getInner() {
+        return innerForm;
+    }
+
     @Override
     public JsonObject toJson() {
         JsonObject obj = new JsonObject();
@@ -52,8 +56,8 @@ public class NotFormula extends Formula {
     }
 
     @Override
-    public int hashCode() {
-        int result = super.hashCode();
+    protected int calcHashCode() {
+        int result = super.calcHashCode();
         result = 31 * result + (innerForm != null ? innerForm.hashCode() : 0);
         return result;
     }
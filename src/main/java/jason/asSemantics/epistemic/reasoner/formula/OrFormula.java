@@ -13,12 +13,16 @@ public class OrFormula extends Formula {
     private final List<Formula> formulaList;
 
     public OrFormula(Formula... formulas) {
-        this(Arrays.asList(formulas));
+        this(List.of(formulas));
     }
 
     public OrFormula(Collection<Formula> formulas) {
         super(FORM_TYPE);
-        this.formulaList = new ArrayList<>(formulas);
+        this.formulaList = List.copyOf(formulas);
+    }
+
+    public List<Formula> getFormulas() {
+        return formulaList;
     }
 
     @Override
@@ -65,8 +69,8 @@ public class OrFormula extends Formula {
     }
 
     @Override
-    public int hashCode() {
-        int result = super.hashCode();
+    protected int calcHashCode() {
+        int result = super.calcHashCode();
         result = 31 * result + (formulaList != null ? formulaList.hashCode() : 0);
         return result;
     }
@@ -12,6 +12,7 @@ public class PropFormula extends Formula {
     private static final String FORM_TYPE = "prop";
 
     private final Pred propLit;
+    private String propString;
 
     public PropFormula(Pred lit) {
         super(FORM_TYPE);
@@ -22,7 +23,7 @@ public class PropFormula extends Formula {
     public JsonElement toJson() {
         JsonObject obj = new JsonObject();
         obj.add("type", new JsonPrimitive(FORM_TYPE));
-        obj.add("prop", new JsonPrimitive(propLit.toString()));
+        obj.add("prop", new JsonPrimitive(toPropString()));
         return obj;
     }
 
@@ -34,7 +35,11 @@ public class PropFormula extends Formula {
 
     @Override
     public String toPropString() {
-        return propLit.toString();
+        // The literal is not expected to change once propositionalized
+        String prop = propString;
+        if (prop == null)
+            propString = prop = propLit.toString();
+        return prop;
     }
 
     @Override
@@ -54,9 +59,9 @@ public class PropFormula extends Formula {
     }
 
     @Override
-    public int hashCode() {
-        int result = super.hashCode();
-        result = 31 * result + (propLit != null ? propLit.toString().hashCode() : 0);
+    protected int calcHashCode() {
+        int result = super.calcHashCode();
+        result = 31 * result + (propLit != null ? toPropString().hashCode() : 0);
         return result;
     }
 }
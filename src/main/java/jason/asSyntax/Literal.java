@@ -13,8 +13,10 @@ import javax.json.JsonValue;
 import jason.JasonException;
 import jason.architecture.AgArch;
 import jason.asSemantics.Agent;
+import jason.asSemantics.QueryCacheSimple;
 import jason.asSemantics.RewriteUnifier;
 import jason.asSemantics.Unifier;
+import jason.asSemantics.epistemic.RewriteTable;
 import jason.asSemantics.epistemic.reasoner.formula.*;
 import jason.asSyntax.parser.as2j;
 import jason.util.Pair;
@@ -454,6 +456,11 @@ public abstract class Literal extends DefaultTerm implements LogicalFormula {
 
     @Override
     public Iterator<RewriteUnifier> rewriteConsequences(Agent ag, Unifier un) {
+        // Completed sub-goals are replayed from the table while the model is created (see RewriteTable)
+        RewriteTable table = ag.getEpistemic() == null ? null : ag.getEpistemic().getRewriteTable();
+        if (table != null)
+            return table.rewriteConsequences(this, un, () -> this.rewriteConsequences(ag, un, (u) -> true));
+
         // Rewrite consequences where we use all rules
         return this.rewriteConsequences(ag, un, (u) -> true);
     }
@@ -634,10 +641,10 @@ public abstract class Literal extends DefaultTerm implements LogicalFormula {
 
         Literal simplified = (Literal) this.simplify();
 
-        Formula litFormula = new PropFormula(new Pred(simplified));
+        Formula litFormula = FormulaFactory.prop(new Pred(simplified));
 
         if (negated())
-            return new NotFormula(litFormula);
+            return FormulaFactory.not(litFormula);
 
         return litFormula;
     }
@@ -649,11 +656,23 @@ public abstract class Literal extends DefaultTerm implements LogicalFormula {
      * Returns an iterator for all unifiers that are logCons.
      */
     public Iterator<Unifier> logicalConsequence(final Agent ag, final Unifier un) {
-        final boolean isInDebug = ag.getLogger().isLoggable(Level.FINE);
-        final boolean isEpistemic = ag.isEpistemic();
+        // Plain predicates are valued by the belief base only (see ManagedPredicates)
+        if (!ag.isEpistemicallyManaged(this)) {
+            QueryCacheSimple qCache = ag.getQueryCache();
+            if (qCache == null)
+                return unificationConsequence(ag, un, null);
+
+            Iterator<Unifier> cached = qCache.getCache(this, un);
+            if (cached != null)
+                return cached;
+            return qCache.record(this, un, unificationConsequence(ag, un, qCache));
+        }
 
-        if (isEpistemic)
-            System.out.println("Epistemic logical consequences called");
+        // the value depends on the epistemic model, not only on the belief base
+        if (ag.getQueryCache() != null)
+            ag.getQueryCache().notCacheable();
+
+        final boolean isInDebug = ag.getLogger().isLoggable(Level.FINE);
 
         // Handles 'poss'
         Pair<EpistemicModality, Literal> parsedForm = parseEpistemicLiteral(this);
@@ -668,45 +687,172 @@ public abstract class Literal extends DefaultTerm implements LogicalFormula {
         }
 
 
+        final int maxBatchSize = ag.getTS().getEpistemic().getEvaluationBatchSize();
+
         return new Iterator<Unifier>() {
 
-            RewriteUnifier current = null;
+            // Unifiers of candidates already evaluated to true, in the order of the rewrite iterator
+            final Deque<Unifier> current = new ArrayDeque<>();
+            // Batches start with a single candidate (first solution queries) and double up to maxBatchSize
+            int batchSize = 1;
 
             public boolean hasNext() {
-                if (current == null)
+                while (current.isEmpty() && il.hasNext())
                     get();
-                return current != null;
+                return !current.isEmpty();
             }
 
             public Unifier next() {
-                if (current != null) {
-                    Unifier c = current.getUnifier();
-                    current = null;
-                    return c;
-                }
+                if (hasNext())
+                    return current.poll();
 
                 return null;
             }
 
             private void get() {
+                List<RewriteUnifier> candidates = new ArrayList<>(batchSize);
+                List<Formula> candidateForms = new ArrayList<>(batchSize);
+
+                // Look ahead in the rewrite iterator, so that the candidates are model-checked in a single batch
+                while (candidates.size() < batchSize && il.hasNext()) {
+                    RewriteUnifier checkUnif = il.next();
+                    candidates.add(checkUnif);
+                    candidateForms.add(checkUnif.getFormula().simplify().toPropFormula());
+                }
+
+                boolean[] results = ag.getTS().getEpistemic().evaluate(parsedForm.getFirst(), Literal.this, candidateForms);
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i])
+                        current.add(candidates.get(i).getUnifier());
+                }
+
+                batchSize = Math.min(batchSize * 2, maxBatchSize);
+            }
+
+
+            public void remove() {
+            }
+        };
+    }
+
+    /**
+     * Logical consequences of a literal that is not epistemically managed: the unifiers are found by unification
+     * with the beliefs and the rules of the belief base, as in the classic Jason engine, without building formulas.
+     */
+    private Iterator<Unifier> unificationConsequence(final Agent ag, final Unifier un, final QueryCacheSimple qCache) {
+        final boolean isInDebug = ag.getLogger().isLoggable(Level.FINE);
+
+        final Iterator<Literal> il = ag.getBB().getCandidateBeliefs(this, un);
+        if (il == null) { // no relevant bels
+            if (isInDebug) ag.getLogger().log(Level.FINE, "     | no candidate belief for " + this + " with " + un);
+            return LogExpr.EMPTY_UNIF_LIST.iterator();
+        }
+
+        final AgArch arch = (ag.getTS() != null ? ag.getTS().getAgArch() : null);
+        final int nbAnnots = (hasAnnot() && getAnnots().getTail() == null ? getAnnots().size() : 0); // if annots contains a tail (as in p[A|R]), do not backtrack on annots
+
+        return new Iterator<Unifier>() {
+            Unifier current = null;
+            Iterator<Unifier> ruleIt = null; // current rule solutions iterator
+            Literal cloneAnnon = null; // a copy of the literal with makeVarsAnnon
+            Rule rule; // current rule
+            boolean needsUpdate = true;
+
+            Iterator<List<Term>> annotsOptions = null;
+            Literal belInBB = null;
+
+            public boolean hasNext() {
+                if (needsUpdate)
+                    get();
+                return current != null;
+            }
+
+            public Unifier next() {
+                if (needsUpdate)
+                    get();
+                if (current != null)
+                    needsUpdate = true;
+                return current;
+            }
+
+            private void get() {
+                needsUpdate = false;
                 current = null;
 
-                if (!il.hasNext())
-                    return;
+                beginloop:
+                while (current == null) {
 
-                // Find next valid formula
-                while (il.hasNext()) {
-                    RewriteUnifier checkUnif = il.next();
+                    if (arch != null && !arch.isRunning()) return;
+
+                    // try annots iterator
+                    if (annotsOptions != null) {
+                        while (annotsOptions.hasNext()) {
+                            Literal belToTry = belInBB.copy().setAnnots(null).addAnnots(annotsOptions.next());
+                            Unifier u = un.clone();
+                            if (u.unifiesNoUndo(Literal.this, belToTry)) {
+                                current = u;
+                                return;
+                            }
+                        }
+                        annotsOptions = null;
+                    }
+
+                    // try rule iterator
+                    if (ruleIt != null) {
+                        while (ruleIt.hasNext()) {
+                            // unifies the rule head with the result of rule evaluation
+                            Unifier ruleUn = ruleIt.next();
+                            Literal rhead = rule.headCApply(ruleUn);
+                            useDerefVars(rhead, ruleUn);
+                            rhead.makeVarsAnnon();
+
+                            Unifier unC = un.clone();
+                            if (unC.unifiesNoUndo(Literal.this, rhead)) {
+                                current = unC;
+                                if (isInDebug)
+                                    ag.getLogger().log(Level.FINE, "     | for " + Literal.this + ", rule " + rhead + " is an option -- " + unC);
+                                return;
+                            }
+                        }
+                        ruleIt = null;
+                    }
 
-                    // Model-check current formula. Return first available formula
-                    if (ag.getTS().getEpistemic().evaluate(parsedForm.getFirst(), Literal.this, checkUnif.getFormula().simplify().toPropFormula())) {
-                        current = checkUnif;
-                        return;
+                    // try literal iterator
+                    while (il.hasNext()) {
+                        belInBB = il.next();
+                        if (belInBB.isRule()) {
+                            rule = (Rule) belInBB;
+                            if (cloneAnnon == null) {
+                                cloneAnnon = (Literal) Literal.this.capply(un);
+                                cloneAnnon.makeVarsAnnon();
+                            }
+                            Unifier ruleUn = new Unifier();
+                            if (ruleUn.unifiesNoUndo(cloneAnnon, rule)) { // the rule head unifies with the literal
+                                if (qCache != null)
+                                    qCache.ruleUsed(rule);
+                                ruleIt = rule.getBody().logicalConsequence(ag, ruleUn);
+                                continue beginloop;
+                            }
+                        } else if (nbAnnots > 0) { // try annots backtracking
+                            if (belInBB.hasAnnot() && belInBB.getAnnots().size() >= nbAnnots) {
+                                annotsOptions = belInBB.getAnnots().subSets(nbAnnots);
+                                continue beginloop;
+                            }
+                        } else { // it is an ordinary query on a belief
+                            Unifier u = un.clone();
+                            if (u.unifiesNoUndo(Literal.this, belInBB)) {
+                                current = u;
+                                if (isInDebug)
+                                    ag.getLogger().log(Level.FINE, "     | for " + Literal.this + ", belief " + belInBB + " is an option -- " + u);
+                                return;
+                            }
+                        }
                     }
+                    if (isInDebug) ag.getLogger().log(Level.FINE, "     | NO more options for " + Literal.this);
+                    break; // do not repeat! the loop is used by 'continue' only
                 }
             }
 
-
             public void remove() {
             }
         };
@@ -878,7 +1024,7 @@ public abstract class Literal extends DefaultTerm implements LogicalFormula {
 
         @Override
         public Formula toPropFormula() {
-            return new PropFormula(new Pred(this));
+            return FormulaFactory.prop(new Pred(this));
         }
 
         @Override
@@ -916,7 +1062,7 @@ public abstract class Literal extends DefaultTerm implements LogicalFormula {
 
         @Override
         public Formula toPropFormula() {
-            return new PropFormula(new Pred(this));
+            return FormulaFactory.prop(new Pred(this));
         }
 
         @Override
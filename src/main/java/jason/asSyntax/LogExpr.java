@@ -3,10 +3,8 @@ package jason.asSyntax;
 import jason.asSemantics.Agent;
 import jason.asSemantics.RewriteUnifier;
 import jason.asSemantics.Unifier;
-import jason.asSemantics.epistemic.reasoner.formula.AndFormula;
 import jason.asSemantics.epistemic.reasoner.formula.Formula;
-import jason.asSemantics.epistemic.reasoner.formula.NotFormula;
-import jason.asSemantics.epistemic.reasoner.formula.OrFormula;
+import jason.asSemantics.epistemic.reasoner.formula.FormulaFactory;
 import jason.asSyntax.parser.as2j;
 
 import java.io.StringReader;
@@ -90,13 +88,13 @@ public class LogExpr extends BinaryStructure implements LogicalFormula {
 
         switch (getOp()) {
             case not -> {
-                return new NotFormula(getLHS().toPropFormula());
+                return FormulaFactory.not(getLHS().toPropFormula());
             }
             case and -> {
-                return new AndFormula(getLHS().toPropFormula(), getRHS().toPropFormula());
+                return FormulaFactory.and(getLHS().toPropFormula(), getRHS().toPropFormula());
             }
             case or -> {
-                return new OrFormula(getLHS().toPropFormula(), getRHS().toPropFormula());
+                return FormulaFactory.or(getLHS().toPropFormula(), getRHS().toPropFormula());
             }
             default -> {
                 return getLHS().toPropFormula();
@@ -132,6 +132,14 @@ public abstract class BeliefBase implements Iterable<Literal>, Cloneable, ToDOM
 
     public abstract BeliefBase clone();
 
+    /**
+     * Returns a read-only version of the current content of the BB that is not changed by later
+     * changes and can be queried without the lock of the BB, or null if the BB has no such versions.
+     */
+    public BeliefBase getSnapshot() {
+        return null;
+    }
+
     transient Object lock = new Object();
 
     /** Gets a lock for the BB */
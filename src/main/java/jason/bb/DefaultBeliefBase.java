@@ -1,16 +1,20 @@
 package jason.bb;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,7 +25,10 @@ import jason.asSemantics.Agent;
 import jason.asSemantics.Unifier;
 import jason.asSyntax.Atom;
 import jason.asSyntax.Literal;
+import jason.asSyntax.NumberTermImpl;
 import jason.asSyntax.PredicateIndicator;
+import jason.asSyntax.StringTermImpl;
+import jason.asSyntax.Term;
 
 /**
  * Default implementation of Jason BB.
@@ -32,6 +39,12 @@ public class DefaultBeliefBase extends BeliefBase implements Serializable {
 
     private static Logger logger = Logger.getLogger(DefaultBeliefBase.class.getSimpleName());
 
+    /** minimum number of beliefs of a predicate indicator for its arguments to be indexed */
+    static final int INDEX_MIN_BELIEFS = 64;
+
+    /** number of queries that bind an argument before it is indexed */
+    static final int INDEX_MIN_QUERIES = 8;
+
     /**
      * belsMap is a table where the key is the bel.getFunctorArity and the value
      * is a list of literals with the same functorArity.
@@ -222,7 +235,7 @@ public class DefaultBeliefBase extends BeliefBase implements Serializable {
             private void goNext() {
                 while (il == null || !il.hasNext()) {
                     if (ibe.hasNext()) {
-                        il = ibe.next().list.iterator();
+                        il = ibe.next().iterator();
                     } else if (ins.hasNext()) {
                         ibe = ins.next().values().iterator();
                     } else {
@@ -302,8 +315,11 @@ public class DefaultBeliefBase extends BeliefBase implements Serializable {
         BelEntry entry = null;
 
         public EntryIteratorWrapper(BelEntry e) {
+            this(e, e.iterator());
+        }
+        public EntryIteratorWrapper(BelEntry e, Iterator<Literal> il) {
             entry = e;
-            il = entry.list.iterator();
+            this.il = il;
         }
         @Override public boolean hasNext() {
             return il.hasNext();
@@ -314,7 +330,6 @@ public class DefaultBeliefBase extends BeliefBase implements Serializable {
         }
         @Override public void remove() {
             il.remove();
-            entry.remove(last);
             if (last.hasAnnot(TPercept)) {
                 percepts.remove(last);
             }
@@ -344,8 +359,7 @@ public class DefaultBeliefBase extends BeliefBase implements Serializable {
                 return null;
             BelEntry entry = belsMap.get(l.getPredicateIndicator());
             if (entry != null) {
-                //System.out.println(l.getNS() + "::::"+ l+ "  ==> " + entry.list);
-                return new EntryIteratorWrapper(entry);
+                return new EntryIteratorWrapper(entry, entry.candidates(l, u));
             } else {
                 return null;
             }
@@ -397,7 +411,7 @@ public class DefaultBeliefBase extends BeliefBase implements Serializable {
                         List<PredicateIndicator> allPI = new ArrayList<>(pis.keySet());
                         Collections.sort(allPI);
                         for (PredicateIndicator pi: allPI) {
-                            for (Literal l: pis.get(pi).list) {
+                            for (Literal l: pis.get(pi)) {
                                 eDOMbels.appendChild(l.getAsDOM(document));
                             }
                         }
@@ -417,27 +431,95 @@ public class DefaultBeliefBase extends BeliefBase implements Serializable {
         return eDOMbels;
     }
 
-    /** each predicate indicator has one BelEntry assigned to it */
-    final class BelEntry implements Serializable {
+    /**
+     * each predicate indicator has one BelEntry assigned to it.
+     *
+     * The beliefs are kept in a map from their structure to the nodes of a doubly linked list that
+     * maintains their order, so add, remove and contains take constant time. Iterators are weakly
+     * consistent (as those of concurrent collections): they never throw ConcurrentModificationException
+     * and a removed node keeps its link to its successor, so iterators positioned on it can continue.
+     *
+     * Entries with many beliefs index the arguments that queries bind: once an entry has
+     * {@link #INDEX_MIN_BELIEFS} beliefs and an argument was bound by {@link #INDEX_MIN_QUERIES} queries,
+     * a hash index from the values of that argument to the nodes is built and then maintained by add and
+     * remove. Only atomic values (numbers, strings and atoms) are indexed, since they unify only with equal
+     * values (or variables); an argument that is not atomic in some belief is not indexed.
+     */
+    final class BelEntry implements Serializable, Iterable<Literal> {
+
+        private static final long serialVersionUID = 213020035116603828L;
+
+        private transient Map<StructureWrapperForLiteral,Node> map = new ConcurrentHashMap<>(); // to find content faster
+        private transient volatile Node head = null; // maintains the order of the beliefs
+        private transient volatile Node tail = null;
 
-        private static final long serialVersionUID = 213020035116603827L;
+        // order of the nodes in the indexes: nodes added in the end get increasing numbers, in the begin decreasing
+        private transient long first = 0, last = 0;
 
-        final private Deque<Literal> list = new LinkedBlockingDeque<>();  // maintains the order of the beliefs
-        final private Map<StructureWrapperForLiteral,Literal> map = new ConcurrentHashMap<>(); // to find content faster
+        private transient volatile ArgIndex[] indexes = null; // copied on write, null for arguments not indexed
+        private transient AtomicIntegerArray boundQueries = null; // number of queries that bound each argument
+        private transient boolean[] unindexable = null; // arguments that are not atomic in some belief
 
-        public void add(Literal l, boolean addInEnd) {
-            map.put(new StructureWrapperForLiteral(l), l);
+        public synchronized void add(Literal l, boolean addInEnd) {
+            if (indexes == null) {
+                int arity = l.getArity();
+                indexes = new ArgIndex[arity];
+                boundQueries = new AtomicIntegerArray(arity);
+                unindexable = new boolean[arity];
+            }
+            Node n = new Node(l, addInEnd ? ++last : --first);
+            Node old = map.put(new StructureWrapperForLiteral(l), n);
+            if (old != null) {
+                unlink(old);
+            }
             if (addInEnd) {
-                list.addLast(l);
+                n.prev = tail;
+                if (tail == null) {
+                    head = n;
+                } else {
+                    tail.next = n;
+                }
+                tail = n;
             } else {
-                list.addFirst(l);
+                n.next = head;
+                if (head == null) {
+                    tail = n;
+                } else {
+                    head.prev = n;
+                }
+                head = n;
+            }
+            indexAdd(n);
+        }
+
+        public synchronized void remove(Literal l) {
+            Node n = map.remove(new StructureWrapperForLiteral(l));
+            if (n != null) {
+                unlink(n);
             }
         }
 
-        public void remove(Literal l) {
-            Literal linmap = map.remove(new StructureWrapperForLiteral(l));
-            if (linmap != null) {
-                list.remove(linmap);
+        private synchronized void remove(Node n) {
+            if (!n.removed && map.remove(new StructureWrapperForLiteral(n.lit), n)) {
+                unlink(n);
+            }
+        }
+
+        /** removes the node from the list, its link to the next node is kept for the iterators on it */
+        private void unlink(Node n) {
+            n.removed = true;
+            indexRemove(n);
+            Node p = n.prev;
+            Node s = n.next;
+            if (p == null) {
+                head = s;
+            } else {
+                p.next = s;
+            }
+            if (s == null) {
+                tail = p;
+            } else {
+                s.prev = p;
             }
         }
 
@@ -446,16 +528,204 @@ public class DefaultBeliefBase extends BeliefBase implements Serializable {
         }
 
         public boolean isEmpty() {
-            return list.isEmpty();
+            return head == null;
         }
 
         public Literal contains(Literal l) {
-            return map.get(new StructureWrapperForLiteral(l));
+            Node n = map.get(new StructureWrapperForLiteral(l));
+            return n == null ? null : n.lit;
+        }
+
+        public Iterator<Literal> iterator() {
+            return candidates(nodes(), null);
+        }
+
+        /** @return the nodes in order, the next node is found when it is used so that nodes removed meanwhile are skipped */
+        private Iterator<Node> nodes() {
+            return new Iterator<Node>() {
+                Node pos = null; // the last node returned, the iteration continues from it even if it is removed
+
+                private Node following() {
+                    return live(pos == null ? head : pos.next);
+                }
+
+                public boolean hasNext() {
+                    return following() != null;
+                }
+
+                public Node next() {
+                    Node n = following();
+                    if (n == null) {
+                        throw new NoSuchElementException();
+                    }
+                    pos = n;
+                    return n;
+                }
+            };
+        }
+
+        /**
+         * @return the beliefs that may unify with l (under u): if some bound arguments of l are indexed,
+         * the beliefs with the same values for these arguments, otherwise all the beliefs; in both cases
+         * the beliefs with other atomic values for the bound arguments are skipped.
+         */
+        public Iterator<Literal> candidates(Literal l, Unifier u) {
+            ArgIndex[] idx = indexes;
+            if (idx == null || idx.length == 0 || idx.length != l.getArity()) {
+                return iterator();
+            }
+
+            // the values of the bound arguments
+            Object[] keys = new Object[idx.length];
+            boolean bound = false;
+            for (int i = 0; i < keys.length; i++) {
+                Term t = l.getTerm(i);
+                if (t.isVar() && u != null) {
+                    t = t.capply(u);
+                }
+                keys[i] = indexKey(t);
+                if (keys[i] != null) {
+                    bound = true;
+                    if (idx[i] == null && !unindexable[i] && size() >= INDEX_MIN_BELIEFS
+                            && (boundQueries.get(i) >= INDEX_MIN_QUERIES || boundQueries.incrementAndGet(i) >= INDEX_MIN_QUERIES)) {
+                        buildIndex(i);
+                    }
+                }
+            }
+            if (!bound) {
+                return iterator();
+            }
+            idx = indexes;
+
+            // the smallest set of nodes of the indexed arguments, the others bound arguments are checked for each node
+            Bucket smallest = null;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null && idx[i] != null) {
+                    Bucket b = idx[i].buckets.get(keys[i]);
+                    if (b == null) {
+                        return Collections.emptyIterator();
+                    }
+                    if (smallest == null || b.size < smallest.size) {
+                        smallest = b;
+                    }
+                }
+            }
+            if (smallest == null) {
+                return candidates(nodes(), keys);
+            }
+            return candidates(smallest.nodes.values().iterator(), keys);
+        }
+
+        /** @return the literals of the nodes that match the keys (all of them if keys is null) */
+        private Iterator<Literal> candidates(Iterator<Node> nodes, Object[] keys) {
+            return new Iterator<Literal>() {
+                Node next = null;
+                Node last = null;
+
+                public boolean hasNext() {
+                    if (next != null && next.removed) {
+                        next = null; // removed after it was read
+                    }
+                    while (next == null && nodes.hasNext()) {
+                        Node n = nodes.next();
+                        if (!n.removed && matches(n.lit, keys)) {
+                            next = n;
+                        }
+                    }
+                    return next != null;
+                }
+
+                public Literal next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    last = next;
+                    next = null;
+                    return last.lit;
+                }
+
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    BelEntry.this.remove(last);
+                    last = null;
+                }
+            };
+        }
+
+        /** @return false if some argument of l has an atomic value other than the key of the argument */
+        private boolean matches(Literal l, Object[] keys) {
+            if (keys == null) {
+                return true;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    Object k = indexKey(l.getTerm(i));
+                    if (k != null && !k.equals(keys[i])) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private synchronized void buildIndex(int arg) {
+            if (indexes[arg] != null || unindexable[arg]) {
+                return;
+            }
+            ArgIndex index = new ArgIndex();
+            for (Node n = head; n != null; n = n.next) {
+                Object k = indexKey(n.lit.getTerm(arg));
+                if (k == null) {
+                    unindexable[arg] = true;
+                    return;
+                }
+                index.add(k, n);
+            }
+            ArgIndex[] copy = indexes.clone();
+            copy[arg] = index;
+            indexes = copy;
+        }
+
+        private void indexAdd(Node n) {
+            ArgIndex[] idx = indexes;
+            for (int i = 0; i < idx.length; i++) {
+                if (idx[i] != null) {
+                    Object k = indexKey(n.lit.getTerm(i));
+                    if (k == null) {
+                        // the argument can not be indexed anymore
+                        unindexable[i] = true;
+                        ArgIndex[] copy = indexes.clone();
+                        copy[i] = null;
+                        indexes = copy;
+                    } else {
+                        idx[i].add(k, n);
+                    }
+                }
+            }
+        }
+
+        private void indexRemove(Node n) {
+            ArgIndex[] idx = indexes;
+            for (int i = 0; i < idx.length; i++) {
+                if (idx[i] != null) {
+                    idx[i].remove(indexKey(n.lit.getTerm(i)), n);
+                }
+            }
+        }
+
+        /** @return the first node, from n, that was not removed */
+        private Node live(Node n) {
+            while (n != null && n.removed) {
+                n = n.next;
+            }
+            return n;
         }
 
         protected Object clone() {
             BelEntry be = new BelEntry();
-            for (Literal l: list) {
+            for (Literal l: this) {
                 be.add(l.copy(), false);
             }
             return be;
@@ -463,10 +733,86 @@ public class DefaultBeliefBase extends BeliefBase implements Serializable {
 
         public String toString() {
             StringBuilder s = new StringBuilder();
-            for (Literal l: list) {
+            for (Literal l: this) {
                 s.append(l+":"+l.hashCode()+",");
             }
             return s.toString();
         }
+
+        // the beliefs are written in order, instead of the (recursive) nodes
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            List<Literal> bels = new ArrayList<>(size());
+            for (Literal l: this) {
+                bels.add(l);
+            }
+            out.writeInt(bels.size());
+            for (Literal l: bels) {
+                out.writeObject(l);
+            }
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            map = new ConcurrentHashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                add((Literal) in.readObject(), true);
+            }
+        }
+    }
+
+    private static final class Node {
+        final Literal lit;
+        final long seq; // order of the node in the entry
+        volatile Node prev;
+        volatile Node next;
+        volatile boolean removed = false;
+
+        Node(Literal lit, long seq) {
+            this.lit = lit;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * @return the key of an atomic term in the argument indexes, or null if the term is not atomic
+     * (it may unify with terms of other values)
+     */
+    static Object indexKey(Term t) {
+        if (t instanceof NumberTermImpl) {
+            return ((NumberTermImpl) t).solve();
+        } else if (t instanceof StringTermImpl) {
+            return "s" + ((StringTermImpl) t).getString();
+        } else if (t.isAtom()) {
+            return "a" + t;
+        } else {
+            return null;
+        }
+    }
+
+    /** the nodes of an entry by the value of one argument */
+    private static final class ArgIndex {
+        final Map<Object, Bucket> buckets = new ConcurrentHashMap<>();
+
+        void add(Object key, Node n) {
+            Bucket b = buckets.computeIfAbsent(key, k -> new Bucket());
+            b.nodes.put(n.seq, n);
+            b.size++;
+        }
+
+        void remove(Object key, Node n) {
+            Bucket b = buckets.get(key);
+            if (b != null && b.nodes.remove(n.seq, n)) {
+                if (--b.size == 0) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    /** nodes with the same value of an argument, in the order of the entry */
+    private static final class Bucket {
+        final ConcurrentSkipListMap<Long, Node> nodes = new ConcurrentSkipListMap<>();
+        volatile int size = 0; // updated with the lock of the entry
     }
 }
@@ -1,12 +1,17 @@
 package jason.bb;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import jason.asSemantics.Agent;
 import jason.asSemantics.Unifier;
 import jason.asSyntax.Literal;
+import jason.asSyntax.PredicateIndicator;
 import jason.asSyntax.Structure;
 import jason.asSyntax.Term;
 
@@ -24,12 +29,19 @@ import jason.asSyntax.Term;
  * When some belief with the same key than another belief in BB is added,
  * the most recent remains in the BB and the older is removed.
  *
+ * <p>The beliefs are indexed by their key (a hash table from the values of the key arguments to the belief),
+ * which is used to find the belief replaced by add, by contains, and by getCandidateBeliefs when the
+ * key arguments are bound. Only keys whose values are atomic (numbers, strings and atoms) are indexed:
+ * once a belief with other values or a rule is added for some predicate indicator, its beliefs are
+ * searched as in the next BB.
+ *
  * @author jomi
  */
 public class IndexedBB extends ChainBBAdapter {
 
     Map<String,Structure> indexedBels = new HashMap<>();
-    Unifier               u = new Unifier();
+
+    private Map<PredicateIndicator, KeyIndex> indexes = new ConcurrentHashMap<>();
 
     public IndexedBB() {  }
     public IndexedBB(BeliefBase next) {
@@ -42,58 +54,260 @@ public class IndexedBB extends ChainBBAdapter {
             Structure bel = Structure.parse(args[i]);
             indexedBels.put(bel.getFunctor(), bel);
         }
+        reindex();
     }
 
-    // TODO: access indexes
-
     @Override
     public boolean add(Literal bel) {
-        Structure kb = indexedBels.get(bel.getFunctor());
-        if (kb != null && kb.getArity() == bel.getArity()) { // is a constrained bel?
+        return add(bel, false);
+    }
+
+    @Override
+    public boolean add(int index, Literal bel) {
+        return add(bel, index != 0);
+    }
+
+    private synchronized boolean add(Literal bel, boolean addInEnd) {
+        KeyIndex ki = getIndex(bel);
+        if (ki != null) { // is a constrained bel?
+            List<Object> key = ki.key(bel, null);
+            if (key == null || bel.isRule()) {
+                ki.disable();
+            }
 
             // find the bel in BB and eventually remove it
-            u.clear();
-            Literal linbb = null;
-            boolean remove = false;
-
-            Iterator<Literal> relevant = getCandidateBeliefs(bel, null);
-            if (relevant != null) {
-                final int kbArity = kb.getArity();
-                while (relevant.hasNext() && !remove) {
-                    linbb = relevant.next();
-
-                    if (!linbb.isRule()) {
-                        // check equality of all terms that are "key"
-                        // if some key is different, no problem
-                        // otherwise, remove the current bel
-                        boolean equals = true;
-                        for (int i = 0; i<kbArity; i++) {
-                            Term kbt = kb.getTerm(i);
-                            if (!kbt.isVar()) { // is key?
-                                if (!u.unifies(bel.getTerm(i), linbb.getTerm(i))) {
-                                    equals = false;
-                                    break;
-                                }
+            Literal linbb = ki.complete ? ki.bels.get(key) : findByKey(ki, bel);
+            if (linbb != null) {
+                remove(linbb);
+            }
+        }
+
+        boolean r = addInEnd ? super.add(1, bel) : super.add(bel);
+        if (ki != null && ki.complete && !bel.isRule()) {
+            Literal linbb = nextBB.contains(bel);
+            if (linbb != null) {
+                ki.bels.put(ki.key(linbb, null), linbb);
+            }
+        }
+        return r;
+    }
+
+    /** finds the belief with the same key as bel in the next BB (used when the key is not indexed) */
+    private Literal findByKey(KeyIndex ki, Literal bel) {
+        Iterator<Literal> relevant = nextBB.getCandidateBeliefs(bel.getPredicateIndicator()); // all of them, the arguments that are not key may differ
+        if (relevant != null) {
+            Unifier u = new Unifier();
+            final int kbArity = ki.keys.getArity();
+            while (relevant.hasNext()) {
+                Literal linbb = relevant.next();
+
+                if (!linbb.isRule()) {
+                    // check equality of all terms that are "key"
+                    // if some key is different, no problem
+                    // otherwise, it is the current bel
+                    boolean equals = true;
+                    for (int i = 0; i<kbArity; i++) {
+                        Term kbt = ki.keys.getTerm(i);
+                        if (!kbt.isVar()) { // is key?
+                            if (!u.unifies(bel.getTerm(i), linbb.getTerm(i))) {
+                                equals = false;
+                                break;
                             }
                         }
-                        if (equals) {
-                            remove = true;
-                        }
+                    }
+                    if (equals) {
+                        return linbb;
                     }
                 }
             }
-            if (remove) {
-                remove(linbb);
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized boolean remove(Literal l) {
+        boolean r = super.remove(l);
+        if (r) {
+            unindex(l);
+        }
+        return r;
+    }
+
+    @Override
+    public synchronized boolean abolish(PredicateIndicator pi) {
+        indexes.remove(pi);
+        return super.abolish(pi);
+    }
+
+    @Override
+    public synchronized void clear() {
+        indexes.clear();
+        super.clear();
+    }
+
+    @Override
+    public Literal contains(Literal l) {
+        KeyIndex ki = getIndex(l);
+        if (ki != null && ki.complete) {
+            List<Object> key = ki.key(l, null);
+            if (key != null) {
+                Literal linbb = ki.bels.get(key);
+                return linbb != null && linbb.equalsAsStructure(l) ? linbb : null;
+            }
+        }
+        return super.contains(l);
+    }
+
+    @Override
+    public Iterator<Literal> getCandidateBeliefs(Literal l, Unifier u) {
+        if (!l.isVar() && !l.getNS().isVar()) {
+            KeyIndex ki = getIndex(l);
+            if (ki != null && ki.complete) {
+                List<Object> key = ki.key(l, u);
+                if (key != null) {
+                    Literal linbb = ki.bels.get(key);
+                    return linbb == null ? null : new IndexIterator(Collections.singleton(linbb).iterator(), true);
+                }
+            }
+        }
+        return wrap(super.getCandidateBeliefs(l, u));
+    }
+
+    @Override
+    public Iterator<Literal> getCandidateBeliefs(PredicateIndicator pi) {
+        return wrap(super.getCandidateBeliefs(pi));
+    }
+
+    @Override
+    public Iterator<Literal> iterator() {
+        return wrap(super.iterator());
+    }
+
+    @Override
+    public Iterator<Literal> getPercepts() {
+        return wrap(super.getPercepts());
+    }
+
+    private Iterator<Literal> wrap(Iterator<Literal> i) {
+        return i == null ? null : new IndexIterator(i, false);
+    }
+
+    /** @return the index of the predicate indicator of l, or null if l has no key */
+    private KeyIndex getIndex(Literal l) {
+        Structure kb = indexedBels.get(l.getFunctor());
+        if (kb == null || kb.getArity() != l.getArity()) {
+            return null;
+        }
+        return indexes.computeIfAbsent(l.getPredicateIndicator(), pi -> new KeyIndex(kb));
+    }
+
+    /** removes l from the index if it is not in the BB anymore (removing only some annots keeps the belief) */
+    private void unindex(Literal l) {
+        KeyIndex ki = getIndex(l);
+        if (ki != null && ki.complete) {
+            List<Object> key = ki.key(l, null);
+            if (key != null) {
+                Literal linbb = ki.bels.get(key);
+                if (linbb != null && nextBB.contains(linbb) == null) {
+                    ki.bels.remove(key, linbb);
+                }
+            }
+        }
+    }
+
+    /** builds the indexes for the beliefs of the next BB */
+    private synchronized void reindex() {
+        indexes.clear();
+        for (Literal l: nextBB) {
+            KeyIndex ki = getIndex(l);
+            if (ki != null && ki.complete) {
+                List<Object> key = ki.key(l, null);
+                if (key == null || l.isRule()) {
+                    ki.disable();
+                } else {
+                    ki.bels.put(key, l);
+                }
             }
         }
-        return super.add(bel);
     }
 
     @Override
     public BeliefBase clone() {
         IndexedBB nbb = new IndexedBB(nextBB.clone());
         nbb.indexedBels = new HashMap<>(this.indexedBels);
+        nbb.reindex();
         return nbb;
     }
 
+    /** the beliefs of a predicate indicator by their key */
+    private static final class KeyIndex {
+        final Structure keys;
+        final Map<List<Object>, Literal> bels = new ConcurrentHashMap<>();
+        volatile boolean complete = true; // false if some belief is not in the index
+
+        KeyIndex(Structure keys) {
+            this.keys = keys;
+        }
+
+        void disable() {
+            complete = false;
+            bels.clear();
+        }
+
+        /** @return the values of the key arguments of l (under u), or null if some of them is not atomic */
+        List<Object> key(Literal l, Unifier u) {
+            List<Object> key = new ArrayList<>(keys.getArity());
+            for (int i = 0; i < keys.getArity(); i++) {
+                if (!keys.getTerm(i).isVar()) {
+                    Term t = l.getTerm(i);
+                    if (t.isVar() && u != null) {
+                        t = t.capply(u);
+                    }
+                    Object k = DefaultBeliefBase.indexKey(t);
+                    if (k == null) {
+                        return null;
+                    }
+                    key.add(k);
+                }
+            }
+            return key;
+        }
+    }
+
+    /** iterator that keeps the indexes when beliefs are removed with it */
+    private final class IndexIterator implements Iterator<Literal> {
+        final Iterator<Literal> i;
+        final boolean fromIndex; // the beliefs come from the index (not the next BB)
+        Literal last = null;
+
+        IndexIterator(Iterator<Literal> i, boolean fromIndex) {
+            this.i = i;
+            this.fromIndex = fromIndex;
+        }
+
+        public boolean hasNext() {
+            return i.hasNext();
+        }
+
+        public Literal next() {
+            last = i.next();
+            return last;
+        }
+
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            if (fromIndex) {
+                // removes the belief with all its annots
+                IndexedBB.this.remove(last.copy());
+            } else {
+                synchronized (IndexedBB.this) {
+                    i.remove();
+                    unindex(last);
+                }
+            }
+            last = null;
+        }
+    }
 }
@@ -0,0 +1,432 @@
+package jason.bb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import jason.asSemantics.Agent;
+import jason.asSemantics.Unifier;
+import jason.asSyntax.ASSyntax;
+import jason.asSyntax.Atom;
+import jason.asSyntax.Literal;
+import jason.asSyntax.PredicateIndicator;
+import jason.asSyntax.Term;
+import jason.asSyntax.UnnamedVar;
+
+/**
+ * Implementation of BB that writes every change of the beliefs in a journal, so that the BB
+ * survives crashes of the agent. The changes (add, remove, abolish, clear) are appended as
+ * binary records to memory mapped files (segments) of a directory, and when the agent starts the
+ * journal is replayed into the next BB.
+ *
+ * <p>The records are written in memory mapped files, so they are kept by the OS if the agent (or the
+ * JVM) crashes; they are forced to the disk at checkpoints, when a new segment is started, and when
+ * the agent stops.
+ *
+ * <p>After a number of changes, the current beliefs are written in a new segment (a checkpoint)
+ * and the previous segments are deleted, so the journal does not grow forever. A checkpoint is
+ * also written when the agent starts.
+ *
+ * <p>As in {@link TextPersistentBB}, rules, beliefs of the kqml namespace and the percept
+ * annotations are not stored (the rules come from the source of the agent and the percepts from
+ * the environment).
+ *
+ * <p>The parameters for this customisation are:
+ * <ul>
+ * <li>args[0] is the directory of the journal, it can use the agent name as parameter as in "%s.journal"
+ *     (the default)
+ * <li>args[1] is the size of the segments in bytes (default is 4MB)
+ * <li>args[2] is the number of changes between checkpoints (default is 100000)
+ * </ul>
+ *
+ * <p>E.g. in a .mas2j project file:<br/>
+ * <code>agents: bob beliefBaseClass jason.bb.JournalPersistentBB("/tmp/%s.journal")</code>
+ */
+public class JournalPersistentBB extends ChainBBAdapter {
+    private static Logger logger = Logger.getLogger(JournalPersistentBB.class.getName());
+
+    // record types
+    static final byte ADD_FIRST        = 1;
+    static final byte ADD_END          = 2;
+    static final byte REMOVE           = 3;
+    static final byte ABOLISH          = 4;
+    static final byte CLEAR            = 5;
+    static final byte CHECKPOINT_BEGIN = 6;
+    static final byte CHECKPOINT_END   = 7;
+
+    /** size of the header of the records: payload length (int), type (byte), CRC32 of type and payload (int) */
+    static final int HEADER = 9;
+
+    static final String SEGMENT_SUFFIX = ".jnl";
+
+    private static final Atom KQML = new Atom("kqml");
+
+    protected File dir;
+    protected int segmentSize = 4 * 1024 * 1024;
+    protected int checkpointEvery = 100000;
+
+    private long segmentNumber = 0;
+    private MappedByteBuffer segment = null;
+    private int changes = 0; // changes since the last checkpoint
+
+    public JournalPersistentBB() { }
+    public JournalPersistentBB(BeliefBase next) {
+        super(next);
+    }
+
+    @Override
+    public void init(Agent ag, String[] args) {
+        String agentName;
+        try {
+            agentName = ag.getTS().getAgArch().getAgName();
+        } catch (Exception e) {
+            logger.warning("Can not get the agent name!");
+            agentName = "none";
+        }
+        dir = new File(String.format(args.length > 0 ? args[0] : "%s.journal", agentName));
+        if (args.length > 1) {
+            segmentSize = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            checkpointEvery = Integer.parseInt(args[2]);
+        }
+        nextBB.init(ag, args);
+
+        try {
+            dir.mkdirs();
+            synchronized (this) {
+                replay();
+                checkpoint();
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error initialising JournalPersistentBB in " + dir, e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (this) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+        nextBB.stop();
+    }
+
+    @Override
+    public boolean add(Literal l) {
+        boolean r = nextBB.add(l);
+        if (r) {
+            journal(ADD_FIRST, l); // l has only the annots that were added
+        }
+        return r;
+    }
+
+    @Override
+    public boolean add(int index, Literal l) {
+        boolean r = nextBB.add(index, l);
+        if (r) {
+            journal(index == 0 ? ADD_FIRST : ADD_END, l);
+        }
+        return r;
+    }
+
+    @Override
+    public boolean remove(Literal l) {
+        boolean r = nextBB.remove(l);
+        if (r) {
+            journal(REMOVE, l);
+        }
+        return r;
+    }
+
+    @Override
+    public boolean abolish(PredicateIndicator pi) {
+        boolean r = nextBB.abolish(pi);
+        if (r) {
+            Term[] args = new Term[pi.getArity()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = new UnnamedVar();
+            }
+            append(ABOLISH, ASSyntax.createLiteral(pi.getNS(), pi.getFunctor(), args).toString());
+        }
+        return r;
+    }
+
+    @Override
+    public void clear() {
+        nextBB.clear();
+        append(CLEAR, "");
+    }
+
+    @Override
+    public Iterator<Literal> iterator() {
+        return wrap(nextBB.iterator());
+    }
+
+    @Override
+    public Iterator<Literal> getCandidateBeliefs(PredicateIndicator pi) {
+        return wrap(nextBB.getCandidateBeliefs(pi));
+    }
+
+    @Override
+    public Iterator<Literal> getCandidateBeliefs(Literal l, Unifier u) {
+        return wrap(nextBB.getCandidateBeliefs(l, u));
+    }
+
+    /** @return an iterator that writes the beliefs removed by it in the journal */
+    private Iterator<Literal> wrap(final Iterator<Literal> i) {
+        if (i == null)
+            return null;
+        return new Iterator<Literal>() {
+            Literal last;
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+            public Literal next() {
+                last = i.next();
+                return last;
+            }
+            public void remove() {
+                // the belief is removed with all its annots
+                Literal l = last.copy();
+                i.remove();
+                journal(REMOVE, l);
+            }
+        };
+    }
+
+    /** the clone is not stored in the journal of this BB */
+    @Override
+    public BeliefBase clone() {
+        return nextBB.clone();
+    }
+
+    /** @return l as it is stored in the journal, or null if it is not stored */
+    static Literal stored(Literal l) {
+        if (l.isRule() || l.getNS().equals(KQML)) {
+            return null;
+        }
+        if (l.hasAnnot(TPercept)) {
+            l = l.copy();
+            l.delAnnot(TPercept);
+            if (!l.hasSource()) {
+                return null;
+            }
+        }
+        return l;
+    }
+
+    private void journal(byte type, Literal l) {
+        l = stored(l);
+        if (l != null) {
+            append(type, l.toString());
+        }
+    }
+
+    private synchronized void append(byte type, String payload) {
+        if (segment == null) {
+            return; // not initialised
+        }
+        try {
+            byte[] record = record(type, payload);
+            if (segment.remaining() < record.length) {
+                segment.force();
+                newSegment(record.length);
+            }
+            segment.put(record);
+            if (++changes >= checkpointEvery) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error writing in the journal " + dir, e);
+        }
+    }
+
+    static byte[] record(byte type, String payload) {
+        byte[] p = payload.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(p);
+        byte[] r = new byte[HEADER + p.length];
+        writeInt(r, 0, p.length);
+        r[4] = type;
+        writeInt(r, 5, (int) crc.getValue());
+        System.arraycopy(p, 0, r, HEADER, p.length);
+        return r;
+    }
+
+    private static void writeInt(byte[] b, int pos, int v) {
+        b[pos]     = (byte) (v >>> 24);
+        b[pos + 1] = (byte) (v >>> 16);
+        b[pos + 2] = (byte) (v >>> 8);
+        b[pos + 3] = (byte) v;
+    }
+
+    /** writes the current beliefs in a new segment and deletes the previous segments */
+    private void checkpoint() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(record(CHECKPOINT_BEGIN, ""));
+        for (Literal b: nextBB) {
+            b = stored(b);
+            if (b != null) {
+                out.write(record(ADD_END, b.toString()));
+            }
+        }
+        out.write(record(CHECKPOINT_END, ""));
+
+        newSegment(out.size());
+        segment.put(out.toByteArray());
+        segment.force();
+        changes = 0;
+
+        for (File f: segments()) {
+            if (number(f) < segmentNumber && !f.delete()) {
+                logger.warning("Can not delete the old segment " + f);
+            }
+        }
+    }
+
+    private void newSegment(int minSize) throws IOException {
+        segmentNumber++;
+        File f = new File(dir, String.format("%012d", segmentNumber) + SEGMENT_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            // the mapping remains valid after the file is closed
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minSize));
+        }
+    }
+
+    /** @return the segments of the journal, in the order they were written */
+    private File[] segments() {
+        File[] fs = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (fs == null) {
+            return new File[0];
+        }
+        Arrays.sort(fs, (a, b) -> Long.compare(number(a), number(b)));
+        return fs;
+    }
+
+    private static long number(File f) {
+        String n = f.getName();
+        try {
+            return Long.parseLong(n.substring(0, n.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** applies the journal to the next BB, starting from the last complete checkpoint */
+    private void replay() throws IOException {
+        File[] fs = segments();
+        List<List<Record>> segs = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < fs.length; i++) {
+            List<Record> rs = read(fs[i]);
+            segs.add(rs);
+            if (!rs.isEmpty() && rs.get(0).type == CHECKPOINT_BEGIN && contains(rs, CHECKPOINT_END)) {
+                start = i;
+            }
+            segmentNumber = Math.max(segmentNumber, number(fs[i]));
+        }
+
+        int n = 0;
+        for (int i = start; i < segs.size(); i++) {
+            List<Record> rs = segs.get(i);
+            if (!rs.isEmpty() && rs.get(0).type == CHECKPOINT_BEGIN && !contains(rs, CHECKPOINT_END)) {
+                continue; // incomplete checkpoint
+            }
+            for (Record r: rs) {
+                if (apply(r)) {
+                    n++;
+                }
+            }
+        }
+        if (n > 0) {
+            logger.info("replayed " + n + " changes of the journal " + dir);
+        }
+    }
+
+    private static boolean contains(List<Record> rs, byte type) {
+        for (Record r: rs) {
+            if (r.type == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean apply(Record r) {
+        try {
+            switch (r.type) {
+            case ADD_FIRST:
+                nextBB.add(ASSyntax.parseLiteral(r.payload));
+                return true;
+            case ADD_END:
+                nextBB.add(1, ASSyntax.parseLiteral(r.payload));
+                return true;
+            case REMOVE:
+                nextBB.remove(ASSyntax.parseLiteral(r.payload));
+                return true;
+            case ABOLISH:
+                nextBB.abolish(ASSyntax.parseLiteral(r.payload).getPredicateIndicator());
+                return true;
+            case CLEAR:
+                nextBB.clear();
+                return true;
+            default:
+                return false;
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error replaying '" + r.payload + "' from the journal " + dir, e);
+            return false;
+        }
+    }
+
+    /** @return the records of a segment, up to the first one that is not complete (e.g. written during a crash) */
+    private static List<Record> read(File f) throws IOException {
+        List<Record> rs = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            MappedByteBuffer b = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            while (b.remaining() >= HEADER) {
+                int length = b.getInt();
+                byte type = b.get();
+                int crc = b.getInt();
+                if (type == 0 || length < 0 || length > b.remaining()) {
+                    break; // end of the written records
+                }
+                byte[] p = new byte[length];
+                b.get(p);
+                CRC32 c = new CRC32();
+                c.update(type);
+                c.update(p);
+                if ((int) c.getValue() != crc) {
+                    logger.warning("Ignoring the end of the segment " + f + ", it is corrupted");
+                    break;
+                }
+                rs.add(new Record(type, new String(p, StandardCharsets.UTF_8)));
+            }
+        }
+        return rs;
+    }
+
+    private static final class Record {
+        final byte type;
+        final String payload;
+
+        Record(byte type, String payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package jason.bb;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable hash map (a hash array mapped trie): put and remove return a new map that shares all the
+ * nodes of this map except those on the path to the key, so versions are cheap and can be read by any
+ * thread without locks.
+ * <p>
+ * Each node has up to 32 slots, selected by 5 bits of the hash of the keys, and a bitmap of the used
+ * slots; keys with the same hash are kept in a collision node.
+ */
+final class PersistentHashTrie<K, V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashTrie EMPTY = new PersistentHashTrie<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashTrie<K, V> empty() {
+        return EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(K key) {
+        return root == null ? null : (V) root.get(key, hash(key), 0);
+    }
+
+    PersistentHashTrie<K, V> put(K key, V value) {
+        boolean[] added = new boolean[1];
+        Node r = (root == null ? BitmapNode.EMPTY : root).put(key, value, hash(key), 0, added);
+        if (r == root) {
+            return this;
+        }
+        return new PersistentHashTrie<>(r, added[0] ? size + 1 : size);
+    }
+
+    PersistentHashTrie<K, V> remove(K key) {
+        if (root == null) {
+            return this;
+        }
+        Node r = root.remove(key, hash(key), 0);
+        if (r == root) {
+            return this;
+        }
+        return r == null ? empty() : new PersistentHashTrie<>(r, size - 1);
+    }
+
+    Iterator<K> keys() {
+        return new SlotIterator<>(root, 0);
+    }
+
+    Iterator<V> values() {
+        return new SlotIterator<>(root, 1);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    /** the slots of a node are pairs (key, value) in array; a null key means that the value is a sub-node */
+    private abstract static class Node {
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object get(Object key, int hash, int shift);
+        abstract Node put(Object key, Object value, int hash, int shift, boolean[] added);
+        /** @return this node if key is absent, null if the node becomes empty */
+        abstract Node remove(Object key, int hash, int shift);
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Object get(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = index(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                return ((Node) v).get(key, hash, shift + 5);
+            }
+            return key.equals(k) ? v : null;
+        }
+
+        Node put(Object key, Object value, int hash, int shift, boolean[] added) {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] a = new Object[array.length + 2];
+                System.arraycopy(array, 0, a, 0, 2 * i);
+                a[2 * i] = key;
+                a[2 * i + 1] = value;
+                System.arraycopy(array, 2 * i, a, 2 * i + 2, array.length - 2 * i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, a);
+            }
+
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                Node sub = ((Node) v).put(key, value, hash, shift + 5, added);
+                return sub == v ? this : with(i, null, sub);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : with(i, key, value);
+            }
+            added[0] = true;
+            return with(i, null, create(shift + 5, k, v, hash(k), key, value, hash));
+        }
+
+        Node remove(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = index(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                Node sub = ((Node) v).remove(key, hash, shift + 5);
+                if (sub == v) {
+                    return this;
+                }
+                return sub == null ? without(i, bit) : with(i, null, sub);
+            }
+            return key.equals(k) ? without(i, bit) : this;
+        }
+
+        private Node with(int i, Object key, Object value) {
+            Object[] a = array.clone();
+            a[2 * i] = key;
+            a[2 * i + 1] = value;
+            return new BitmapNode(bitmap, a);
+        }
+
+        private Node without(int i, int bit) {
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] a = new Object[array.length - 2];
+            System.arraycopy(array, 0, a, 0, 2 * i);
+            System.arraycopy(array, 2 * i + 2, a, 2 * i, a.length - 2 * i);
+            return new BitmapNode(bitmap & ~bit, a);
+        }
+
+        /** @return a node with two keys of different slots in the current node */
+        private static Node create(int shift, Object k1, Object v1, int h1, Object k2, Object v2, int h2) {
+            if (h1 == h2) {
+                return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+            }
+            int b1 = bit(h1, shift);
+            int b2 = bit(h2, shift);
+            if (b1 == b2) {
+                return new BitmapNode(b1, new Object[] { null, create(shift + 5, k1, v1, h1, k2, v2, h2) });
+            }
+            Object[] a = Integer.compareUnsigned(b1, b2) < 0 ? new Object[] { k1, v1, k2, v2 } : new Object[] { k2, v2, k1, v1 };
+            return new BitmapNode(b1 | b2, a);
+        }
+    }
+
+    /** keys with the same hash */
+    private static final class CollisionNode extends Node {
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int find(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Object get(Object key, int hash, int shift) {
+            int i = hash == this.hash ? find(key) : -1;
+            return i < 0 ? null : array[i + 1];
+        }
+
+        Node put(Object key, Object value, int hash, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                // the keys differ in some bit not used yet
+                return new BitmapNode(bit(this.hash, shift), new Object[] { null, this }).put(key, value, hash, shift, added);
+            }
+            int i = find(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] a = array.clone();
+                a[i + 1] = value;
+                return new CollisionNode(hash, a);
+            }
+            Object[] a = new Object[array.length + 2];
+            System.arraycopy(array, 0, a, 0, array.length);
+            a[array.length] = key;
+            a[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, a);
+        }
+
+        Node remove(Object key, int hash, int shift) {
+            int i = hash == this.hash ? find(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] a = new Object[array.length - 2];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 2, a, i, a.length - i);
+            return new CollisionNode(hash, a);
+        }
+    }
+
+    /** iterates the keys (part 0) or values (part 1) of the slots, depth first */
+    private static final class SlotIterator<T> implements Iterator<T> {
+        final int part;
+        final Deque<Node> nodes = new ArrayDeque<>();
+        final Deque<Integer> positions = new ArrayDeque<>();
+        Node node;
+        int pos = 0;
+        Object next;
+
+        SlotIterator(Node root, int part) {
+            this.part = part;
+            this.node = root;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (node != null) {
+                if (pos < node.array.length) {
+                    Object k = node.array[pos];
+                    Object v = node.array[pos + 1];
+                    pos += 2;
+                    if (k == null && node instanceof BitmapNode) {
+                        nodes.push(node);
+                        positions.push(pos);
+                        node = (Node) v;
+                        pos = 0;
+                    } else {
+                        next = part == 0 ? k : v;
+                        return;
+                    }
+                } else if (nodes.isEmpty()) {
+                    node = null;
+                } else {
+                    node = nodes.pop();
+                    pos = positions.pop();
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T r = (T) next;
+            advance();
+            return r;
+        }
+    }
+}
@@ -0,0 +1,656 @@
+package jason.bb;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import jason.asSemantics.Agent;
+import jason.asSemantics.Unifier;
+import jason.asSyntax.Atom;
+import jason.asSyntax.Literal;
+import jason.asSyntax.PredicateIndicator;
+
+/**
+ * Belief base with multi-version reads: its content is an immutable {@link Snapshot} that is replaced
+ * by a new one at each change, so queries never lock and see a consistent version of the beliefs, while
+ * add, remove and abolish are serialized on {@link #getLock()}.
+ *
+ * <p>The beliefs of each predicate indicator are kept in persistent structures (a hash trie from the
+ * structure of the beliefs and a tree that keeps their order), so a new version copies only the path to
+ * the belief that changed and shares everything else with the previous version.
+ *
+ * <p>Since the literals are shared by all versions, they must not be changed outside the BB: changes of
+ * annotations (by add and remove) are made on copies of the literals.
+ *
+ * <p>E.g. in a .mas2j project file:<br/>
+ * <code>agents: bob beliefBaseClass jason.bb.SnapshotBeliefBase</code>
+ */
+public class SnapshotBeliefBase extends BeliefBase {
+
+    private static Logger logger = Logger.getLogger(SnapshotBeliefBase.class.getSimpleName());
+
+    private volatile Snapshot current = Snapshot.EMPTY;
+
+    @Override
+    public void init(Agent ag, String[] args) {
+        if (ag != null) {
+            logger = Logger.getLogger(ag.getTS().getAgArch().getAgName() + "-"+SnapshotBeliefBase.class.getSimpleName());
+        }
+    }
+
+    /** @return the current version of the BB, which is not changed by later changes of this BB */
+    @Override
+    public Snapshot getSnapshot() {
+        return current;
+    }
+
+    @Override
+    public Set<Atom> getNameSpaces() {
+        return current.getNameSpaces();
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    @Override
+    public void clear() {
+        synchronized (getLock()) {
+            current = new Snapshot(Snapshot.EMPTY.nameSpaces, Snapshot.EMPTY.percepts, 0, current.version + 1);
+        }
+    }
+
+    @Override
+    public boolean add(Literal l) {
+        return add(l, false);
+    }
+
+    @Override
+    public boolean add(int index, Literal l) {
+        return add(l, index != 0);
+    }
+
+    protected boolean add(Literal l, boolean addInEnd) {
+        if (!l.canBeAddedInBB()) {
+            logger.log(Level.SEVERE, "Error: '"+l+"' can not be added in the belief base.");
+            return false;
+        }
+
+        synchronized (getLock()) {
+            Snapshot s = current;
+            Bel b = s.find(l);
+            if (b != null && !b.lit.isRule()) {
+                // add only annots (in a copy, the literal is shared with the previous versions)
+                Literal bl = b.lit.copy();
+                if (bl.importAnnots(l)) {
+                    current = s.replace(b, bl);
+                    return true;
+                }
+                return false;
+            }
+            current = s.add(l.copy(), addInEnd);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean remove(Literal l) {
+        synchronized (getLock()) {
+            Snapshot s = current;
+            Bel b = s.find(l);
+            if (b != null && l.hasSubsetAnnot(b.lit)) {
+                Literal bl = b.lit.copy();
+                boolean result = bl.delAnnots(l.getAnnots()); // l annots can be empty, in this case, nothing is deleted
+                if (!bl.hasSource()) {
+                    current = s.remove(b);
+                    return true;
+                }
+                if (result) {
+                    current = s.replace(b, bl);
+                }
+                return result;
+            }
+            return false;
+        }
+    }
+
+    /** removes the belief with the structure of l, whatever its annotations (used by the iterators) */
+    private void removeBel(Literal l) {
+        synchronized (getLock()) {
+            Snapshot s = current;
+            Bel b = s.find(l);
+            if (b != null) {
+                current = s.remove(b);
+            }
+        }
+    }
+
+    /** removes the percept annotation of l, and the belief if it has no other source */
+    private void removePercept(Literal l) {
+        synchronized (getLock()) {
+            Snapshot s = current;
+            Bel b = s.find(l);
+            if (b != null) {
+                Literal bl = b.lit.copy();
+                bl.delAnnot(TPercept);
+                current = bl.hasSource() ? s.replace(b, bl) : s.remove(b);
+            }
+        }
+    }
+
+    @Override
+    public boolean abolish(Atom namespace, PredicateIndicator pi) {
+        if (pi.getNS() != namespace) {
+            pi = new PredicateIndicator(namespace, pi.getFunctor(), pi.getArity());
+        }
+        synchronized (getLock()) {
+            Snapshot s = current.without(pi);
+            if (s == null) {
+                return false;
+            }
+            current = s;
+            return true;
+        }
+    }
+
+    @Override
+    public Literal contains(Literal l) {
+        return current.contains(l);
+    }
+
+    @Override
+    public Iterator<Literal> iterator() {
+        return removing(current.iterator(), false);
+    }
+
+    @Override
+    public Iterator<Literal> getCandidateBeliefs(PredicateIndicator pi) {
+        return removing(current.getCandidateBeliefs(pi), false);
+    }
+
+    @Override
+    public Iterator<Literal> getCandidateBeliefs(Literal l, Unifier u) {
+        return removing(current.getCandidateBeliefs(l, u), false);
+    }
+
+    @Override
+    public Iterator<Literal> getPercepts() {
+        return removing(current.getPercepts(), true);
+    }
+
+    /** @return an iterator on a snapshot whose remove changes this BB */
+    private Iterator<Literal> removing(final Iterator<Literal> i, final boolean percept) {
+        if (i == null)
+            return null;
+        return new Iterator<Literal>() {
+            Literal last = null;
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+            public Literal next() {
+                last = i.next();
+                return last;
+            }
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                if (percept) {
+                    removePercept(last);
+                } else {
+                    removeBel(last);
+                }
+                last = null;
+            }
+        };
+    }
+
+    @Override
+    public Element getAsDOM(Document document) {
+        return current.getAsDOM(document);
+    }
+
+    @Override
+    public String toString() {
+        return current.toString();
+    }
+
+    @Override
+    public BeliefBase clone() {
+        SnapshotBeliefBase bb = new SnapshotBeliefBase();
+        for (Literal b: this) {
+            bb.add(1, b.copy());
+        }
+        return bb;
+    }
+
+    /**
+     * A version of the belief base: it is immutable, so it can be read by any thread without locks
+     * (its methods that change beliefs throw UnsupportedOperationException).
+     */
+    public static final class Snapshot extends BeliefBase {
+
+        static final Snapshot EMPTY = new Snapshot(
+                PersistentHashTrie.<Atom, PersistentHashTrie<PredicateIndicator, Entry>>empty().put(Literal.DefaultNS, PersistentHashTrie.empty()),
+                PersistentHashTrie.empty(), 0, 0);
+
+        final PersistentHashTrie<Atom, PersistentHashTrie<PredicateIndicator, Entry>> nameSpaces;
+        final PersistentHashTrie<StructureWrapperForLiteral, Literal> percepts;
+        final int size;
+        final long version;
+
+        private Snapshot(PersistentHashTrie<Atom, PersistentHashTrie<PredicateIndicator, Entry>> nameSpaces,
+                PersistentHashTrie<StructureWrapperForLiteral, Literal> percepts, int size, long version) {
+            this.nameSpaces = nameSpaces;
+            this.percepts = percepts;
+            this.size = size;
+            this.version = version;
+        }
+
+        /** @return the number of changes of the BB before this version */
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public Snapshot getSnapshot() {
+            return this;
+        }
+
+        @Override
+        public Set<Atom> getNameSpaces() {
+            Set<Atom> r = new LinkedHashSet<>();
+            r.add(Literal.DefaultNS);
+            nameSpaces.keys().forEachRemaining(r::add);
+            return Collections.unmodifiableSet(r);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Literal contains(Literal l) {
+            Bel b = find(l);
+            return b == null ? null : b.lit;
+        }
+
+        @Override
+        public Iterator<Literal> iterator() {
+            return flatten(nameSpaces.values(), pis -> flatten(pis.values(), Entry::iterator));
+        }
+
+        @Override
+        public Iterator<Literal> getCandidateBeliefs(PredicateIndicator pi) {
+            Entry e = entry(pi);
+            return e == null ? null : e.iterator();
+        }
+
+        @Override
+        public Iterator<Literal> getCandidateBeliefs(Literal l, Unifier u) {
+            if (l.isVar()) {
+                // all bels are relevant
+                return iterator();
+            }
+            if (l.getNS().isVar()) {
+                l = (Literal)l.capply(u);
+                if (l.getNS().isVar()) { // still a var
+                    return iterator();
+                }
+            }
+            return getCandidateBeliefs(l.getPredicateIndicator());
+        }
+
+        @Override
+        public Iterator<Literal> getPercepts() {
+            return percepts.values();
+        }
+
+        @Override
+        public boolean add(Literal l) {
+            throw new UnsupportedOperationException("snapshots of the belief base are read-only");
+        }
+
+        @Override
+        public boolean add(int index, Literal l) {
+            throw new UnsupportedOperationException("snapshots of the belief base are read-only");
+        }
+
+        @Override
+        public boolean remove(Literal l) {
+            throw new UnsupportedOperationException("snapshots of the belief base are read-only");
+        }
+
+        @Override
+        public boolean abolish(Atom namespace, PredicateIndicator pi) {
+            throw new UnsupportedOperationException("snapshots of the belief base are read-only");
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("snapshots of the belief base are read-only");
+        }
+
+        /** a snapshot does not change, it is its own clone */
+        @Override
+        public BeliefBase clone() {
+            return this;
+        }
+
+        @Override
+        public Element getAsDOM(Document document) {
+            Element eDOMbels = document.createElement("beliefs");
+            // declare namespaces
+            Element enss = document.createElement("namespaces");
+            Set<Atom> nss = getNameSpaces(); // the default is the first
+            for (Atom ns: nss) {
+                Element ens = document.createElement("namespace");
+                ens.setAttribute("id", ns.getFunctor());
+                enss.appendChild(ens);
+            }
+            eDOMbels.appendChild(enss);
+
+            for (Atom ns: nss) {
+                // sort by PI
+                PersistentHashTrie<PredicateIndicator, Entry> pis = nameSpaces.get(ns);
+                List<PredicateIndicator> allPI = new ArrayList<>(pis.size());
+                pis.keys().forEachRemaining(allPI::add);
+                Collections.sort(allPI);
+                for (PredicateIndicator pi: allPI) {
+                    Iterator<Literal> i = pis.get(pi).iterator();
+                    while (i.hasNext()) {
+                        eDOMbels.appendChild(i.next().getAsDOM(document));
+                    }
+                }
+            }
+            return eDOMbels;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder("[");
+            Iterator<Literal> i = iterator();
+            while (i.hasNext()) {
+                s.append(i.next());
+                if (i.hasNext())
+                    s.append(", ");
+            }
+            return s.append("]").toString();
+        }
+
+        private Entry entry(PredicateIndicator pi) {
+            PersistentHashTrie<PredicateIndicator, Entry> pis = nameSpaces.get(pi.getNS());
+            return pis == null ? null : pis.get(pi);
+        }
+
+        Bel find(Literal l) {
+            Entry e = entry(l.getPredicateIndicator());
+            return e == null ? null : e.bels.get(new StructureWrapperForLiteral(l));
+        }
+
+        /** @return a version with l (a new belief, that replaces a rule with the same structure) */
+        Snapshot add(Literal l, boolean addInEnd) {
+            PredicateIndicator pi = l.getPredicateIndicator();
+            Entry e = entry(pi);
+            int nsize = size + 1;
+            PersistentHashTrie<StructureWrapperForLiteral, Literal> p = percepts;
+            if (e == null) {
+                e = Entry.EMPTY;
+            } else {
+                Bel old = e.bels.get(new StructureWrapperForLiteral(l));
+                if (old != null) {
+                    e = e.remove(old);
+                    p = p.remove(new StructureWrapperForLiteral(old.lit));
+                    nsize--;
+                }
+            }
+            if (l.hasAnnot(TPercept)) {
+                p = p.put(new StructureWrapperForLiteral(l), l);
+            }
+            return with(pi, e.add(l, addInEnd), p, nsize);
+        }
+
+        /** @return a version where b has the annotations of l */
+        Snapshot replace(Bel b, Literal l) {
+            StructureWrapperForLiteral k = new StructureWrapperForLiteral(l);
+            PersistentHashTrie<StructureWrapperForLiteral, Literal> p = l.hasAnnot(TPercept) ? percepts.put(k, l) : percepts.remove(k);
+            PredicateIndicator pi = l.getPredicateIndicator();
+            return with(pi, entry(pi).replace(b, l), p, size);
+        }
+
+        /** @return a version without b */
+        Snapshot remove(Bel b) {
+            PredicateIndicator pi = b.lit.getPredicateIndicator();
+            return with(pi, entry(pi).remove(b), percepts.remove(new StructureWrapperForLiteral(b.lit)), size - 1);
+        }
+
+        /** @return a version without the beliefs of pi, or null if there is none */
+        Snapshot without(PredicateIndicator pi) {
+            Entry e = entry(pi);
+            if (e == null) {
+                return null;
+            }
+            PersistentHashTrie<StructureWrapperForLiteral, Literal> p = percepts;
+            if (!p.isEmpty()) {
+                Iterator<Literal> i = e.iterator();
+                while (i.hasNext()) {
+                    p = p.remove(new StructureWrapperForLiteral(i.next()));
+                }
+            }
+            return with(pi, Entry.EMPTY, p, size - e.size());
+        }
+
+        private Snapshot with(PredicateIndicator pi, Entry e, PersistentHashTrie<StructureWrapperForLiteral, Literal> p, int nsize) {
+            PersistentHashTrie<PredicateIndicator, Entry> pis = nameSpaces.get(pi.getNS());
+            if (pis == null) {
+                pis = PersistentHashTrie.empty();
+            }
+            pis = e.size() == 0 ? pis.remove(pi) : pis.put(pi, e);
+            return new Snapshot(nameSpaces.put(pi.getNS(), pis), p, nsize, version + 1);
+        }
+    }
+
+    /** a belief and its position in the order of its predicate indicator */
+    static final class Bel {
+        final Literal lit;
+        final long seq;
+
+        Bel(Literal lit, long seq) {
+            this.lit = lit;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * The beliefs of a predicate indicator: a map from their structure and a tree ordered by their
+     * position (a treap, balanced by priorities computed from the positions).
+     */
+    static final class Entry {
+        static final Entry EMPTY = new Entry(PersistentHashTrie.empty(), null, 0, 0);
+
+        final PersistentHashTrie<StructureWrapperForLiteral, Bel> bels;
+        final Order order;
+        final long first, last; // positions of the first and last beliefs
+
+        Entry(PersistentHashTrie<StructureWrapperForLiteral, Bel> bels, Order order, long first, long last) {
+            this.bels = bels;
+            this.order = order;
+            this.first = first;
+            this.last = last;
+        }
+
+        int size() {
+            return bels.size();
+        }
+
+        Entry add(Literal l, boolean addInEnd) {
+            long seq = addInEnd ? last + 1 : first - 1;
+            Bel b = new Bel(l, seq);
+            return new Entry(bels.put(new StructureWrapperForLiteral(l), b), Order.insert(order, b),
+                    addInEnd ? first : seq, addInEnd ? seq : last);
+        }
+
+        Entry replace(Bel old, Literal l) {
+            Bel b = new Bel(l, old.seq);
+            return new Entry(bels.put(new StructureWrapperForLiteral(l), b), Order.replace(order, b), first, last);
+        }
+
+        Entry remove(Bel b) {
+            return new Entry(bels.remove(new StructureWrapperForLiteral(b.lit)), Order.delete(order, b.seq), first, last);
+        }
+
+        Iterator<Literal> iterator() {
+            return new Order.InOrder(order);
+        }
+    }
+
+    /** immutable node of a treap of beliefs by their position */
+    static final class Order {
+        final Bel bel;
+        final int priority;
+        final Order left, right;
+
+        private Order(Bel bel, int priority, Order left, Order right) {
+            this.bel = bel;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+        }
+
+        private Order with(Order left, Order right) {
+            return new Order(bel, priority, left, right);
+        }
+
+        private static int priority(long seq) {
+            long h = seq * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 32;
+            return (int) h;
+        }
+
+        static Order insert(Order t, Bel b) {
+            int p = priority(b.seq);
+            if (t == null || p > t.priority) {
+                Order[] s = split(t, b.seq);
+                return new Order(b, p, s[0], s[1]);
+            }
+            if (b.seq < t.bel.seq) {
+                return t.with(insert(t.left, b), t.right);
+            }
+            return t.with(t.left, insert(t.right, b));
+        }
+
+        /** @return the nodes before and after seq */
+        private static Order[] split(Order t, long seq) {
+            if (t == null) {
+                return new Order[2];
+            }
+            if (t.bel.seq < seq) {
+                Order[] s = split(t.right, seq);
+                s[0] = t.with(t.left, s[0]);
+                return s;
+            }
+            Order[] s = split(t.left, seq);
+            s[1] = t.with(s[1], t.right);
+            return s;
+        }
+
+        /** all the nodes of a are before those of b */
+        private static Order merge(Order a, Order b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            if (a.priority > b.priority) {
+                return a.with(a.left, merge(a.right, b));
+            }
+            return b.with(merge(a, b.left), b.right);
+        }
+
+        static Order delete(Order t, long seq) {
+            if (t == null) {
+                return null;
+            }
+            if (seq < t.bel.seq) {
+                return t.with(delete(t.left, seq), t.right);
+            }
+            if (seq > t.bel.seq) {
+                return t.with(t.left, delete(t.right, seq));
+            }
+            return merge(t.left, t.right);
+        }
+
+        static Order replace(Order t, Bel b) {
+            if (b.seq < t.bel.seq) {
+                return t.with(replace(t.left, b), t.right);
+            }
+            if (b.seq > t.bel.seq) {
+                return t.with(t.left, replace(t.right, b));
+            }
+            return new Order(b, t.priority, t.left, t.right);
+        }
+
+        static final class InOrder implements Iterator<Literal> {
+            private final Deque<Order> path = new ArrayDeque<>();
+
+            InOrder(Order t) {
+                pushLeft(t);
+            }
+
+            private void pushLeft(Order t) {
+                while (t != null) {
+                    path.push(t);
+                    t = t.left;
+                }
+            }
+
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            public Literal next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Order t = path.pop();
+                pushLeft(t.right);
+                return t.bel.lit;
+            }
+        }
+    }
+
+    private static <T> Iterator<Literal> flatten(final Iterator<T> outer, final Function<T, Iterator<Literal>> inner) {
+        return new Iterator<Literal>() {
+            Iterator<Literal> i = Collections.emptyIterator();
+
+            public boolean hasNext() {
+                while (!i.hasNext() && outer.hasNext()) {
+                    i = inner.apply(outer.next());
+                }
+                return i.hasNext();
+            }
+
+            public Literal next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return i.next();
+            }
+        };
+    }
+}
@@ -39,6 +39,11 @@ import javax.swing.JTextField;
 import jason.JasonException;
 import jason.architecture.AgArch;
 import jason.asSemantics.Agent;
+import jason.asSemantics.epistemic.metrics.EpistemicMetrics;
+import jason.asSemantics.epistemic.reasoner.HttpEpistemicReasoner;
+import jason.asSemantics.epistemic.reasoner.ReasonerConfiguration;
+import jason.asSemantics.epistemic.reasoner.ReasonerTrace;
+import jason.asSemantics.epistemic.reasoner.SharedModels;
 import jason.asSyntax.NumberTermImpl;
 import jason.asSyntax.PlanLibrary;
 import jason.asSyntax.Trigger;
@@ -926,6 +931,16 @@ public class RunLocalMAS extends BaseLocalMAS implements RunLocalMASMBean {
                         env = null;
                     }
 
+                    // release the reasoner connections shared by the agents
+                    HttpEpistemicReasoner.closeSharedClient();
+                    SharedModels.clear();
+                    ReasonerTrace.closeAll();
+
+                    String metricsFile = ReasonerConfiguration.getInstance().getMetricsFile();
+                    if (metricsFile != null)
+                        EpistemicMetrics.dumpCsv(metricsFile);
+                    EpistemicMetrics.unregisterAll();
+
                     // remove the .stop___MAS file  (note that GUI console.close(), above, creates this file)
                     File stop = new File(stopMASFileName);
                     if (stop.exists()) {
@@ -127,6 +127,9 @@ public class add_plan extends DefaultInternalAction {
             ts.getAg().getPL().add( transform2plan(args[0]), source, before);
         }
 
+        if (ts.getAg().getEpistemic() != null)
+            ts.getAg().getEpistemic().plansChanged();
+
         if (ts.getAg().getPL().hasMetaEventPlans())
             ts.addGoalListener(new GoalListenerForMetaEvents(ts));
 
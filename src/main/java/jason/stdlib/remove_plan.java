@@ -116,6 +116,8 @@ public class remove_plan extends DefaultInternalAction {
         } else { // args[0] is a plan label
         	ts.getAg().getPL().remove(fixLabel(label), source);
         }
+        if (ts.getAg().getEpistemic() != null)
+            ts.getAg().getEpistemic().plansChanged();
         return true;
     }
 
@@ -0,0 +1,79 @@
+package jason.asSemantics.epistemic;
+
+import jason.asSemantics.Unifier;
+import jason.asSemantics.epistemic.reasoner.LocalEpistemicReasoner;
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicFormulaLiteral;
+import jason.asSemantics.epistemic.reasoner.formula.Formula;
+import jason.asSyntax.ASSyntax;
+import jason.asSyntax.Literal;
+import jason.bb.DefaultBeliefBase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ChainedEpistemicBBTest {
+
+    private static final int RANGE = 20;
+
+    private final List<Integer> chunks = new ArrayList<>();
+    private ChainedEpistemicBB bb;
+
+    @Before
+    public void setUp() {
+        var reasoner = new LocalEpistemicReasoner(1000) {
+            @Override
+            public synchronized Map<EpistemicFormulaLiteral, Boolean> evaluateFormulas(Collection<EpistemicFormulaLiteral> formulas) {
+                chunks.add(formulas.size());
+                return super.evaluateFormulas(formulas);
+            }
+        };
+
+        var groundBase = new DefaultBeliefBase();
+        List<Formula> constraints = new ArrayList<>();
+        for (int i = 1; i <= RANGE; i++) {
+            Literal loc = ASSyntax.createLiteral("loc", ASSyntax.createNumber(i));
+            groundBase.add(1, loc); // in the end, so groundings are iterated in order
+            // only the even locations are known
+            if (i % 2 == 0)
+                constraints.add(loc.toPropFormula());
+        }
+        assertTrue(reasoner.createModel(constraints));
+
+        bb = new ChainedEpistemicBB(groundBase, reasoner);
+    }
+
+    @Test
+    public void firstCandidateEvaluatesOneChunk() {
+        var it = bb.getCandidateBeliefs(ASSyntax.createLiteral("loc", ASSyntax.createVar("X")), new Unifier());
+        assertNotNull(it);
+        assertTrue(it.hasNext());
+        assertEquals(ASSyntax.createLiteral("loc", ASSyntax.createNumber(2)), it.next());
+
+        // loc(1) is evaluated alone, then loc(2) and loc(3)
+        assertEquals(List.of(1, 2), chunks);
+    }
+
+    @Test
+    public void allCandidates() {
+        var it = bb.getCandidateBeliefs(ASSyntax.createLiteral("loc", ASSyntax.createVar("X")), new Unifier());
+        int count = 0;
+        while (it.hasNext()) {
+            assertTrue(it.next().toString().matches("loc\\(\\d*[02468]\\)"));
+            count++;
+        }
+        assertEquals(RANGE / 2, count);
+        assertEquals(RANGE, chunks.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    public void noCandidates() {
+        assertNull(bb.getCandidateBeliefs(ASSyntax.createLiteral("loc", ASSyntax.createNumber(3)), new Unifier()));
+        assertNull(bb.getCandidateBeliefs(ASSyntax.createLiteral("wall", ASSyntax.createVar("X")), new Unifier()));
+    }
+}
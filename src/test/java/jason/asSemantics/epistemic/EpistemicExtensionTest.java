@@ -5,6 +5,7 @@ import jason.asSemantics.Agent;
 import jason.asSemantics.Circumstance;
 import jason.asSemantics.TransitionSystem;
 import jason.asSyntax.ASSyntax;
+import jason.asSyntax.Literal;
 import jason.asSyntax.LiteralImpl;
 import jason.asSyntax.Rule;
 import jason.runtime.Settings;
@@ -12,6 +13,8 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+
 import static org.junit.Assert.*;
 
 public class EpistemicExtensionTest {
@@ -70,4 +73,34 @@ public class EpistemicExtensionTest {
 
         System.out.println();
     }
+
+    @Test
+    public void applicableOnEvents() throws Exception {
+        var ag = new Agent();
+        ag.initAg();
+        ag.getBB().add(1, ASSyntax.parseLiteral("loc(1)"));
+        ag.getBB().add(1, ASSyntax.parseLiteral("loc(2)"));
+        ag.getPL().add(ASSyntax.parsePlan("@p1 +on(door(open)) : loc(X) <- +seen(X)."));
+        ag.getPL().add(ASSyntax.parsePlan("@p2 +on(door(open)) : loc(3) <- +seen(3)."));
+        ag.getPL().add(ASSyntax.parsePlan("@p3 +on(door(open)) <- -alarm."));
+
+        var relevant = ag.getTS().relevantPlans(ASSyntax.parseTrigger("+on(door(open))"), null);
+        var events = new ArrayList<>(ag.getEpistemic().applicableOnEvents(relevant));
+
+        // one event for each rewrite of the contexts, in the order of the plans
+        assertEquals(3, events.size());
+        assertEquals(ASSyntax.parseLiteral("loc(1)").toPropFormula().toPropString(), events.get(0).getPreCondition().toPropString());
+        assertEquals(ASSyntax.parseLiteral("loc(2)").toPropFormula().toPropString(), events.get(1).getPreCondition().toPropString());
+        assertTrue(events.get(0).getEventId().contains("seen(1)"));
+        assertTrue(events.get(1).getEventId().contains("seen(2)"));
+        assertFalse(events.get(0).getEventId().contains("p1"));
+        assertEquals(1, events.get(0).getPostCondition().size());
+
+        // plans without context are always applicable
+        assertTrue(events.get(2).getEventId().contains("alarm"));
+        assertEquals(Literal.LTrue.toPropFormula().toPropString(), events.get(2).getPreCondition().toPropString());
+        assertEquals(Literal.LFalse.toPropFormula().toPropString(), events.get(2).getPostCondition().values().iterator().next().toPropString());
+
+        assertNull(ag.getEpistemic().applicableOnEvents(null));
+    }
 }
@@ -0,0 +1,52 @@
+package jason.asSemantics.epistemic;
+
+import jason.asSemantics.epistemic.reasoner.formula.EpistemicModality;
+import jason.asSemantics.epistemic.reasoner.formula.ModalPropFormula;
+import jason.asSyntax.ASSyntax;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EpistemicQueryCacheTest {
+
+    private static ModalPropFormula poss(int loc) {
+        return new ModalPropFormula(EpistemicModality.POSSIBLE, ASSyntax.createLiteral("loc", ASSyntax.createNumber(loc)).toPropFormula());
+    }
+
+    @Test
+    public void versioning() {
+        var cache = new EpistemicQueryCache(10);
+        long version = cache.getModelVersion();
+
+        assertNull(cache.get(poss(1)));
+        cache.put(poss(1), true, version);
+        assertEquals(Boolean.TRUE, cache.get(poss(1)));
+
+        // a new model invalidates the entries
+        cache.newModelVersion();
+        assertNull(cache.get(poss(1)));
+
+        // results evaluated against an outdated model are not cached
+        cache.put(poss(1), false, version);
+        assertNull(cache.get(poss(1)));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void lruEviction() {
+        var cache = new EpistemicQueryCache(2);
+        long version = cache.getModelVersion();
+
+        cache.put(poss(1), true, version);
+        cache.put(poss(2), true, version);
+        cache.get(poss(1)); // poss(2) is now the least recently used
+        cache.put(poss(3), false, version);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(poss(1)));
+        assertNull(cache.get(poss(2)));
+        assertEquals(Boolean.FALSE, cache.get(poss(3)));
+    }
+}
@@ -0,0 +1,73 @@
+package jason.asSemantics.epistemic;
+
+import jason.asSemantics.Agent;
+import jason.asSemantics.Unifier;
+import jason.asSyntax.ASSyntax;
+import jason.asSyntax.Literal;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ManagedPredicatesTest {
+
+    private Agent ag;
+    private ManagedPredicates managed;
+
+    @Before
+    public void setUp() throws Exception {
+        ag = new Agent();
+        ag.initAg();
+
+        ag.getBB().add(ASSyntax.parseLiteral("edge(1, 2)"));
+        // 'safe' is declared before the rule it depends on, so it is only found at the second iteration
+        ag.getBB().add(ASSyntax.parseRule("safe :- not near(1)."));
+        ag.getBB().add(ASSyntax.parseRule("near(X) :- loc(X) & X < 3."));
+        ag.getBB().add(ASSyntax.parseRule("adj(X, Y) :- edge(X, Y) | edge(Y, X)."));
+        ag.getBB().add(ASSyntax.parseRule("reachable(L) :- .findall(X, adj(X, _), L)."));
+
+        ag.getPL().add(ASSyntax.parsePlan("+on(door(open)) <- +alarm."));
+        ag.getPL().add(ASSyntax.parsePlan("+!go <- +visited(1)."));
+
+        managed = new ManagedPredicates(ag, List.of(
+                ASSyntax.parseLiteral("loc(1)"), ASSyntax.parseLiteral("~loc(1)")), "on");
+    }
+
+    @Test
+    public void classification() throws Exception {
+        // range values, with both signs
+        assertTrue(managed.isManaged(ASSyntax.parseLiteral("loc(3)")));
+        assertTrue(managed.isManaged(ASSyntax.parseLiteral("~loc(X)")));
+
+        // 'on' plans
+        assertTrue(managed.isManaged(ASSyntax.parseLiteral("door(closed)")));
+        assertTrue(managed.isManaged(ASSyntax.parseLiteral("alarm")));
+        assertFalse(managed.isManaged(ASSyntax.parseLiteral("visited(1)")));
+
+        // rules
+        assertTrue(managed.isManaged(ASSyntax.parseLiteral("near(2)")));
+        assertTrue(managed.isManaged(ASSyntax.parseLiteral("safe")));
+        assertFalse(managed.isManaged(ASSyntax.parseLiteral("adj(1, 2)")));
+        assertFalse(managed.isManaged(ASSyntax.parseLiteral("reachable(L)")));
+        assertFalse(managed.isManaged(ASSyntax.parseLiteral("edge(1, 2)")));
+
+        assertTrue(managed.isManaged(ASSyntax.parseLiteral("poss(edge(1, 2))")));
+        assertFalse(managed.isEmpty());
+    }
+
+    @Test
+    public void plainConsequences() throws Exception {
+        // no model has been created: consequences are found by unification
+        Literal adj = ASSyntax.parseLiteral("adj(2, X)");
+        assertFalse(ag.isEpistemicallyManaged(adj));
+
+        var it = adj.logicalConsequence(ag, new Unifier());
+        assertTrue(it.hasNext());
+        assertEquals(ASSyntax.createNumber(1), it.next().get("X"));
+        assertFalse(it.hasNext());
+
+        assertFalse(ASSyntax.parseLiteral("adj(3, X)").logicalConsequence(ag, new Unifier()).hasNext());
+    }
+}
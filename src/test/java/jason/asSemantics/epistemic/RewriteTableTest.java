@@ -0,0 +1,93 @@
+package jason.asSemantics.epistemic;
+
+import jason.asSemantics.Agent;
+import jason.asSemantics.RewriteUnifier;
+import jason.asSemantics.Unifier;
+import jason.asSyntax.ASSyntax;
+import jason.asSyntax.Literal;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RewriteTableTest {
+
+    private Agent ag;
+    private RewriteTable table;
+    private int derivations;
+
+    @Before
+    public void setUp() throws Exception {
+        ag = new Agent();
+        ag.initAg();
+        ag.getBB().add(ASSyntax.parseLiteral("edge(1, 2)"));
+        ag.getBB().add(ASSyntax.parseLiteral("edge(2, 3)"));
+        ag.getBB().add(ASSyntax.parseRule("adj(X, Y) :- edge(X, Y) | edge(Y, X)."));
+
+        table = new RewriteTable();
+        derivations = 0;
+    }
+
+    private List<String> rewrite(Literal goal, Unifier un) {
+        Iterator<RewriteUnifier> it = table.rewriteConsequences(goal, un, () -> {
+            derivations++;
+            return goal.rewriteConsequences(ag, un, l -> true);
+        });
+        List<String> answers = new ArrayList<>();
+        while (it.hasNext()) {
+            RewriteUnifier next = it.next();
+            answers.add(goal.capply(next.getUnifier()) + " <- " + next.getFormula());
+        }
+        return answers;
+    }
+
+    @Test
+    public void variantKey() throws Exception {
+        Unifier un = new Unifier();
+        assertEquals(RewriteTable.variantKey(ASSyntax.parseLiteral("p(X, Y, X)"), un),
+                RewriteTable.variantKey(ASSyntax.parseLiteral("p(A, _, A)"), un));
+        assertNotEquals(RewriteTable.variantKey(ASSyntax.parseLiteral("p(X, Y, X)"), un),
+                RewriteTable.variantKey(ASSyntax.parseLiteral("p(X, Y, Y)"), un));
+        assertNotEquals(RewriteTable.variantKey(ASSyntax.parseLiteral("p(X, \"X\")"), un),
+                RewriteTable.variantKey(ASSyntax.parseLiteral("p(X, \"Y\")"), un));
+
+        // bound arguments are part of the key
+        un.unifies(ASSyntax.createVar("X"), ASSyntax.createNumber(1));
+        assertEquals("p(1,V0)", RewriteTable.variantKey(ASSyntax.parseLiteral("p(X, Y)"), un));
+    }
+
+    @Test
+    public void variantsAreReplayed() throws Exception {
+        List<String> derived = rewrite(ASSyntax.parseLiteral("adj(2, X)"), new Unifier());
+        assertEquals(1, derivations);
+        assertEquals(2, derived.size());
+
+        // a variant of the goal: the answers are replayed
+        List<String> replayed = rewrite(ASSyntax.parseLiteral("adj(2, Y)"), new Unifier());
+        assertEquals(1, derivations);
+        assertEquals(derived.size(), replayed.size());
+        assertEquals(1, table.getHits());
+
+        // the same goal, with its variable bound by the unifier
+        Unifier un = new Unifier();
+        un.unifies(ASSyntax.createVar("Z"), ASSyntax.createNumber(3));
+        assertEquals(List.of("adj(2,3) <- edge(2,3)"), rewrite(ASSyntax.parseLiteral("adj(2, Z)"), un));
+        assertEquals(2, derivations);
+
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void partialEnumerationsAreNotTabled() throws Exception {
+        Literal goal = ASSyntax.parseLiteral("edge(X, Y)");
+        Iterator<RewriteUnifier> it = table.rewriteConsequences(goal, new Unifier(), () -> goal.rewriteConsequences(ag, new Unifier(), l -> true));
+        assertTrue(it.hasNext());
+        it.next();
+
+        assertEquals(0, table.size());
+    }
+}
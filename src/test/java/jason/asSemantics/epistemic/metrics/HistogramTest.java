@@ -0,0 +1,54 @@
+package jason.asSemantics.epistemic.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void buckets() {
+        for (long v : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+            long lower = Histogram.lowerBoundOf(Histogram.bucketOf(v));
+            assertTrue(lower <= v);
+            // relative error below 1/16
+            assertTrue(v - lower <= v / 16);
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        Histogram h = new Histogram(EpistemicMetrics.NANOSECONDS);
+        assertEquals(0, h.getPercentile(50));
+
+        for (int i = 1; i <= 100; i++)
+            h.record(i);
+
+        assertEquals(100, h.getCount());
+        assertEquals(5050, h.getSum());
+        assertEquals(1, h.getMin());
+        assertEquals(100, h.getMax());
+        assertEquals(50.5, h.getMean(), 0.001);
+        assertEquals(50, h.getPercentile(50), 50 / 16);
+        assertEquals(99, h.getPercentile(99), 99 / 16);
+        assertEquals(100, h.getPercentile(100), 100 / 16);
+    }
+
+    @Test
+    public void metricsCsv() {
+        EpistemicMetrics metrics = new EpistemicMetrics("bob");
+        metrics.increment(EpistemicMetrics.EVALUATIONS);
+        metrics.add(EpistemicMetrics.EVALUATIONS, 2);
+        metrics.record(EpistemicMetrics.FORMULAS_PER_BATCH, 4, EpistemicMetrics.ITEMS);
+        metrics.gauge(EpistemicMetrics.QUERY_CACHE_HIT_RATIO, () -> 0.5);
+
+        assertEquals(3, metrics.getCounter(EpistemicMetrics.EVALUATIONS));
+        assertEquals(4, metrics.getPercentile(EpistemicMetrics.FORMULAS_PER_BATCH, 50));
+
+        String[] lines = metrics.toCsv().split("\n");
+        assertEquals(4, lines.length);
+        for (String line : lines)
+            assertEquals(12, line.split(",", -1).length);
+        assertTrue(lines[1].startsWith("bob," + EpistemicMetrics.EVALUATIONS + ",counter,,3,"));
+    }
+}
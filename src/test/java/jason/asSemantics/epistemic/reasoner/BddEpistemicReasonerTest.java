@@ -0,0 +1,166 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.DELEvent;
+import jason.asSemantics.epistemic.DELEventModel;
+import jason.asSemantics.epistemic.reasoner.formula.*;
+import jason.asSyntax.ASSyntax;
+import jason.asSyntax.Literal;
+import jason.asSyntax.Pred;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class BddEpistemicReasonerTest {
+
+    private BddEpistemicReasoner reasoner;
+    private Formula loc1;
+    private Formula loc2;
+
+    @Before
+    public void setUp() {
+        reasoner = new BddEpistemicReasoner(1 << 16);
+        loc1 = ASSyntax.createLiteral("loc", ASSyntax.createNumber(1)).toPropFormula();
+        loc2 = ASSyntax.createLiteral("loc", ASSyntax.createNumber(2)).toPropFormula();
+
+        // exactly one of loc(1), loc(2)
+        assertTrue(reasoner.createModel(List.of(
+                new OrFormula(loc1, loc2),
+                new ImpliesFormula(loc1, new NotFormula(loc2)),
+                new ImpliesFormula(loc2, new NotFormula(loc1)))));
+    }
+
+    @Test
+    public void createModel() {
+        assertEquals(BigInteger.valueOf(2), reasoner.getWorldCount());
+
+        assertTrue(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, loc1)));
+        assertFalse(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, loc1)));
+        assertTrue(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, new OrFormula(loc1, loc2))));
+        assertFalse(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, new AndFormula(loc1, loc2))));
+
+        // inconsistent constraints
+        assertFalse(new BddEpistemicReasoner(1 << 16).createModel(List.of(loc1, new NotFormula(loc1))));
+    }
+
+    @Test
+    public void applyEventModel() {
+        // public announcement of loc(2)
+        assertTrue(reasoner.applyEventModel(new DELEventModel(Set.of(new DELEvent("announce", loc2)))));
+        assertEquals(BigInteger.ONE, reasoner.getWorldCount());
+        assertTrue(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, loc2)));
+
+        // ontic change: loc(2) becomes false and loc(1) true
+        DELEvent move = new DELEvent("move", loc2);
+        move.addPostCondition((PropFormula) loc2, new PropFormula(new Pred(Literal.LFalse)));
+        move.addPostCondition((PropFormula) loc1, new PropFormula(new Pred(Literal.LTrue)));
+        assertTrue(reasoner.applyEventModel(new DELEventModel(Set.of(move))));
+        assertTrue(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, loc1)));
+        assertFalse(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, loc2)));
+
+        // events that are not applicable in any world do not change the model
+        assertFalse(reasoner.applyEventModel(new DELEventModel(Set.of(new DELEvent("none", loc2)))));
+        assertTrue(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, loc1)));
+    }
+
+    @Test
+    public void applyEventModels() {
+        DELEvent move = new DELEvent("move", loc2);
+        move.addPostCondition((PropFormula) loc2, new PropFormula(new Pred(Literal.LFalse)));
+        move.addPostCondition((PropFormula) loc1, new PropFormula(new Pred(Literal.LTrue)));
+
+        // the event models are applied in order: the second one is not applicable after the first one
+        var res = reasoner.applyEventModels(List.of(
+                new DELEventModel(Set.of(new DELEvent("announce", loc2))),
+                new DELEventModel(Set.of(new DELEvent("none", loc1))),
+                new DELEventModel(Set.of(move))));
+        assertEquals(List.of(true, false, true), res);
+        assertTrue(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, loc1)));
+    }
+
+    @Test
+    public void evaluateFormulas() {
+        var know = EpistemicFormulaLiteral.fromLiteral(ASSyntax.createLiteral("loc", ASSyntax.createNumber(1)));
+        var poss = EpistemicFormulaLiteral.fromLiteral(ASSyntax.createLiteral("poss", ASSyntax.createLiteral("loc", ASSyntax.createNumber(1))));
+        var notPoss = EpistemicFormulaLiteral.fromLiteral(ASSyntax.createLiteral(Literal.LNeg, "poss", ASSyntax.createLiteral("loc", ASSyntax.createNumber(3))));
+
+        var res = reasoner.evaluateFormulas(List.of(know, poss, notPoss));
+        assertFalse(res.get(know));
+        assertTrue(res.get(poss));
+        assertTrue(res.get(notPoss));
+    }
+
+    @Test
+    public void evaluateModalFormulas() {
+        var res = reasoner.evaluateModalFormulas(List.of(
+                new ModalPropFormula(EpistemicModality.POSSIBLE, loc1),
+                new ModalPropFormula(EpistemicModality.KNOW, loc1),
+                new ModalPropFormula(EpistemicModality.KNOW, new OrFormula(loc1, loc2))));
+        assertEquals(List.of(true, false, true), res);
+    }
+
+    @Test
+    public void worldDependentPostConditions() {
+        // the agent learns that it was at loc(1), then swaps loc(1) and loc(2)
+        assertTrue(reasoner.applyEventModel(new DELEventModel(Set.of(new DELEvent("announce", loc1)))));
+        DELEvent swap = new DELEvent("swap");
+        swap.addPostCondition((PropFormula) loc1, loc2);
+        swap.addPostCondition((PropFormula) loc2, loc1);
+        assertTrue(reasoner.applyEventModel(new DELEventModel(Set.of(swap))));
+
+        assertTrue(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, loc2)));
+        assertFalse(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, loc1)));
+        assertEquals(BigInteger.ONE, reasoner.getWorldCount());
+    }
+
+    @Test
+    public void largeRange() {
+        // a(i) | b(i) for 2n propositions: 3^n worlds, which can not be enumerated
+        int n = 5000;
+        List<Formula> constraints = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            constraints.add(new OrFormula(
+                    ASSyntax.createLiteral("a", ASSyntax.createNumber(i)).toPropFormula(),
+                    ASSyntax.createLiteral("b", ASSyntax.createNumber(i)).toPropFormula()));
+        }
+
+        var large = new BddEpistemicReasoner(1 << 20);
+        assertTrue(large.createModel(constraints));
+        assertEquals(BigInteger.valueOf(3).pow(n), large.getWorldCount());
+        assertTrue(large.getNodeCount() >= 2 * n && large.getNodeCount() < 4 * n);
+
+        Formula last = ASSyntax.createLiteral("a", ASSyntax.createNumber(n - 1)).toPropFormula();
+        assertTrue(large.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, last)));
+        assertFalse(large.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, last)));
+
+        assertTrue(large.applyEventModel(new DELEventModel(Set.of(new DELEvent("announce", last)))));
+        assertTrue(large.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, last)));
+        assertEquals(BigInteger.valueOf(3).pow(n - 1).shiftLeft(1), large.getWorldCount());
+    }
+
+    @Test
+    public void extendModel() {
+        Formula loc3 = ASSyntax.createLiteral("loc", ASSyntax.createNumber(3)).toPropFormula();
+
+        // a new location, only possible together with loc(1)
+        assertTrue(reasoner.extendModel(List.of((PropFormula) loc3), List.of(new ImpliesFormula(loc3, loc1))));
+        assertEquals(BigInteger.valueOf(3), reasoner.getWorldCount());
+        assertTrue(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, loc3)));
+        assertFalse(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, new AndFormula(loc2, loc3))));
+
+        // wall(2) is not a new proposition, so it is false and loc(2) is no longer possible
+        Formula wall2 = ASSyntax.createLiteral("wall", ASSyntax.createNumber(2)).toPropFormula();
+        assertTrue(reasoner.extendModel(List.of(), List.of(new ImpliesFormula(loc2, wall2))));
+        assertEquals(BigInteger.valueOf(2), reasoner.getWorldCount());
+        assertTrue(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, loc1)));
+
+        // inconsistent constraints leave the model unchanged
+        assertFalse(reasoner.extendModel(List.of(), List.of(new NotFormula(loc1))));
+        assertEquals(BigInteger.valueOf(2), reasoner.getWorldCount());
+    }
+}
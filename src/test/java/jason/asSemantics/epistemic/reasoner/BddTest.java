@@ -0,0 +1,69 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class BddTest {
+
+    private Bdd bdd;
+    private int x;
+    private int y;
+    private int z;
+
+    @Before
+    public void setUp() {
+        bdd = new Bdd(1 << 16);
+        x = bdd.newVar();
+        y = bdd.newVar();
+        z = bdd.newVar();
+    }
+
+    @Test
+    public void canonicity() {
+        int f = bdd.or(bdd.and(bdd.var(x), bdd.var(y)), bdd.and(bdd.var(x), bdd.var(z)));
+        int g = bdd.and(bdd.var(x), bdd.or(bdd.var(z), bdd.var(y)));
+        assertEquals(f, g);
+
+        assertEquals(Bdd.TRUE, bdd.or(bdd.var(x), bdd.notVar(x)));
+        assertEquals(Bdd.FALSE, bdd.and(bdd.var(x), bdd.not(bdd.var(x))));
+        assertEquals(Bdd.TRUE, bdd.apply(Bdd.IMPLIES, bdd.and(bdd.var(x), bdd.var(y)), bdd.var(y)));
+        assertEquals(bdd.not(bdd.apply(Bdd.XOR, bdd.var(x), bdd.var(z))), bdd.apply(Bdd.EQUIV, bdd.var(x), bdd.var(z)));
+    }
+
+    @Test
+    public void quantification() {
+        int f = bdd.and(bdd.var(x), bdd.apply(Bdd.EQUIV, bdd.var(y), bdd.var(z)));
+
+        BitSet vars = new BitSet();
+        vars.set(y);
+        assertEquals(bdd.var(x), bdd.exists(f, vars));
+        // the relational product is the quantification of the conjunction
+        assertEquals(bdd.exists(bdd.and(f, bdd.var(z)), vars), bdd.relProd(f, bdd.var(z), vars));
+        assertEquals(bdd.and(bdd.var(x), bdd.var(z)), bdd.relProd(f, bdd.var(z), vars));
+    }
+
+    @Test
+    public void renameAndCount() {
+        int f = bdd.and(bdd.var(z), bdd.notVar(y));
+
+        int[] renaming = new int[bdd.getVarCount()];
+        Arrays.fill(renaming, -1);
+        renaming[z] = x;
+        renaming[y] = z;
+        assertEquals(bdd.and(bdd.var(x), bdd.notVar(z)), bdd.rename(f, renaming));
+
+        assertEquals(BigInteger.valueOf(2), bdd.satCount(f, bdd.getVarCount()));
+        assertEquals(BigInteger.valueOf(8), bdd.satCount(Bdd.TRUE, bdd.getVarCount()));
+
+        Bdd compacted = new Bdd(1 << 16);
+        int copy = bdd.copyTo(compacted, f);
+        assertEquals(bdd.nodeCount(f), compacted.nodeCount(copy));
+        assertEquals(bdd.satCount(f, bdd.getVarCount()), compacted.satCount(copy, compacted.getVarCount()));
+    }
+}
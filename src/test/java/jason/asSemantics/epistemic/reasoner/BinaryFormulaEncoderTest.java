@@ -0,0 +1,94 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.reasoner.formula.*;
+import jason.asSyntax.ASSyntax;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinaryFormulaEncoderTest {
+
+    private BinaryFormulaEncoder encoder;
+    private Formula loc1;
+    private Formula loc2;
+
+    @Before
+    public void setUp() {
+        encoder = new BinaryFormulaEncoder();
+        loc1 = ASSyntax.createLiteral("loc", ASSyntax.createNumber(1)).toPropFormula();
+        loc2 = ASSyntax.createLiteral("loc", ASSyntax.createNumber(2)).toPropFormula();
+    }
+
+    @Test
+    public void postfixEncoding() throws IOException {
+        var out = new ByteArrayOutputStream();
+        assertEquals(2, encoder.write(List.of(new ImpliesFormula(loc1, new AndFormula(loc2, new NotFormula(loc1)))), out).cardinality());
+
+        var expected = new ByteArrayOutputStream();
+        expected.write(new byte[]{'E', 'P', 'F', 2});
+        expected.write(1); // formula count
+        expected.write(24); // code length
+        // propositions are defined where they are first used
+        expected.write(BinaryFormulaEncoder.DEFINE);
+        expected.write(0);
+        expected.write(6);
+        expected.write("loc(1)".getBytes(StandardCharsets.UTF_8));
+        expected.write(BinaryFormulaEncoder.DEFINE);
+        expected.write(1);
+        expected.write(6);
+        expected.write("loc(2)".getBytes(StandardCharsets.UTF_8));
+        expected.write(new byte[]{
+                BinaryFormulaEncoder.PROP, 0,
+                BinaryFormulaEncoder.NOT,
+                BinaryFormulaEncoder.AND, 2,
+                BinaryFormulaEncoder.IMPLIES
+        });
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+
+        // propositions of a message that was not acknowledged are defined again
+        var again = new ByteArrayOutputStream();
+        encoder.write(List.of(new ImpliesFormula(loc1, new AndFormula(loc2, new NotFormula(loc1)))), again);
+        assertArrayEquals(out.toByteArray(), again.toByteArray());
+    }
+
+    @Test
+    public void propositionsSentOnce() throws IOException {
+        var first = new ByteArrayOutputStream();
+        encoder.acknowledge(encoder.write(List.of(new OrFormula(loc1, loc2)), first));
+
+        // only the opcodes are sent for acknowledged propositions
+        var second = new ByteArrayOutputStream();
+        encoder.write(List.of(new ModalPropFormula(EpistemicModality.KNOW, loc1)), second);
+        assertTrue(second.size() < first.size());
+
+        // after a reset, propositions are sent again
+        encoder.reset();
+        var third = new ByteArrayOutputStream();
+        encoder.write(List.of(new OrFormula(loc1, loc2)), third);
+        assertTrue(Arrays.equals(first.toByteArray(), third.toByteArray()));
+    }
+
+    @Test
+    public void failedMessageNotAcknowledged() throws IOException {
+        // the message defining loc(1) is never answered
+        encoder.write(List.of(loc1), new ByteArrayOutputStream());
+        encoder.acknowledge(encoder.write(List.of(loc2), new ByteArrayOutputStream()));
+
+        // loc(1) is still defined, loc(2) is only referred to
+        var out = new ByteArrayOutputStream();
+        assertEquals(1, encoder.write(List.of(new AndFormula(loc1, loc2)), out).cardinality());
+
+        var expected = new ByteArrayOutputStream();
+        expected.write(new byte[]{'E', 'P', 'F', 2, 1, 13, BinaryFormulaEncoder.DEFINE, 0, 6});
+        expected.write("loc(1)".getBytes(StandardCharsets.UTF_8));
+        expected.write(new byte[]{BinaryFormulaEncoder.PROP, 1, BinaryFormulaEncoder.AND, 2});
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+}
@@ -0,0 +1,97 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.reasoner.formula.*;
+import jason.asSyntax.ASSyntax;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ModelCacheTest {
+
+    private Path folder;
+    private List<Formula> constraints;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("models");
+
+        Formula loc1 = ASSyntax.createLiteral("loc", ASSyntax.createNumber(1)).toPropFormula();
+        Formula loc2 = ASSyntax.createLiteral("loc", ASSyntax.createNumber(2)).toPropFormula();
+        constraints = List.of(new OrFormula(loc1, loc2), new ImpliesFormula(loc1, new NotFormula(loc2)));
+    }
+
+    @Test
+    public void key() {
+        assertEquals(ModelCache.key(constraints), ModelCache.key(List.copyOf(constraints)));
+        assertNotEquals(ModelCache.key(constraints), ModelCache.key(constraints.subList(0, 1)));
+    }
+
+    @Test
+    public void storeAndLoad() throws Exception {
+        ModelCache cache = new ModelCache(folder);
+        String key = ModelCache.key(constraints);
+        assertNull(cache.load(key, new PropositionIndex()));
+
+        LocalEpistemicReasoner created = new LocalEpistemicReasoner(1000, cache);
+        assertTrue(created.createModel(constraints));
+
+        KripkeModel loaded = cache.load(key, new PropositionIndex());
+        assertNotNull(loaded);
+        assertEquals(created.getModel().getWorlds(), loaded.getWorlds());
+    }
+
+    @Test
+    public void loadRemapsPropositions() throws Exception {
+        ModelCache cache = new ModelCache(folder);
+        String key = ModelCache.key(constraints);
+        LocalEpistemicReasoner created = new LocalEpistemicReasoner(1000, cache);
+        assertTrue(created.createModel(constraints));
+
+        // the propositions of the index are remapped when they are interned in a different order
+        PropositionIndex stored = created.getModel().getPropositions();
+        PropositionIndex index = new PropositionIndex();
+        index.intern("other");
+        index.intern(stored.getProposition(1));
+        KripkeModel loaded = cache.load(key, index);
+
+        assertNotNull(loaded);
+        assertEquals(created.getModel().size(), loaded.size());
+        for (Formula c : constraints)
+            assertTrue(loaded.knows(c));
+
+        for (BitSet world : loaded.getWorlds()) {
+            assertFalse(world.get(index.intern("other")));
+            assertEquals(1, world.cardinality());
+        }
+    }
+
+    @Test
+    public void invalidWorldTable() throws Exception {
+        ModelCache cache = new ModelCache(folder);
+        String key = ModelCache.key(constraints);
+        LocalEpistemicReasoner created = new LocalEpistemicReasoner(1000, cache);
+        assertTrue(created.createModel(constraints));
+
+        // overwrite the number of words per world, which follows the proposition table and the world count
+        PropositionIndex stored = created.getModel().getPropositions();
+        int offset = 3 * Integer.BYTES;
+        for (int i = 0; i < stored.size(); i++)
+            offset += Integer.BYTES + stored.getProposition(i).getBytes(StandardCharsets.UTF_8).length;
+        offset += Integer.BYTES;
+
+        Path file = folder.resolve(key + ".model");
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file));
+        content.putInt(offset, Integer.MAX_VALUE);
+        Files.write(file, content.array());
+
+        assertNull(cache.load(key, new PropositionIndex()));
+    }
+}
@@ -0,0 +1,100 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.DELEvent;
+import jason.asSemantics.epistemic.DELEventModel;
+import jason.asSemantics.epistemic.reasoner.formula.*;
+import jason.asSyntax.ASSyntax;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ReplayEpistemicReasonerTest {
+
+    private Path trace;
+    private Formula loc1;
+    private Formula loc2;
+    private List<Formula> constraints;
+
+    @Before
+    public void setUp() throws Exception {
+        trace = ReasonerTrace.file(Files.createTempDirectory("trace"), "bob");
+        loc1 = ASSyntax.createLiteral("loc", ASSyntax.createNumber(1)).toPropFormula();
+        loc2 = ASSyntax.createLiteral("loc", ASSyntax.createNumber(2)).toPropFormula();
+
+        // exactly one of loc(1), loc(2)
+        constraints = List.of(
+                new OrFormula(loc1, loc2),
+                new ImpliesFormula(loc1, new NotFormula(loc2)),
+                new ImpliesFormula(loc2, new NotFormula(loc1)));
+    }
+
+    private List<Boolean> run(EpistemicReasoner reasoner) {
+        List<ModalPropFormula> formulas = List.of(
+                new ModalPropFormula(EpistemicModality.POSSIBLE, loc1),
+                new ModalPropFormula(EpistemicModality.KNOW, loc2));
+
+        assertTrue(reasoner.createModel(constraints));
+        List<Boolean> results = new ArrayList<>(reasoner.evaluateModalFormulas(formulas));
+        assertTrue(reasoner.applyEventModel(new DELEventModel(Set.of(new DELEvent("announce", loc2)))));
+        results.addAll(reasoner.evaluateModalFormulas(formulas));
+        results.add(reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, loc1)));
+        return results;
+    }
+
+    @Test
+    public void recordAndReplay() throws Exception {
+        List<Boolean> recorded;
+        try (ReasonerTrace writer = new ReasonerTrace(trace)) {
+            recorded = run(new RecordingEpistemicReasoner(new LocalEpistemicReasoner(1000), writer));
+        }
+        assertEquals(List.of(true, false, false, true, false), recorded);
+
+        ReplayEpistemicReasoner replay = new ReplayEpistemicReasoner(trace, false);
+        assertEquals(recorded, run(replay));
+        assertEquals(0, replay.getMisses());
+
+        // the responses of each request are consumed in order
+        assertFalse(replay.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, loc1)));
+        assertEquals(1, replay.getMisses());
+    }
+
+    @Test
+    public void unrecordedRequest() throws Exception {
+        try (ReasonerTrace writer = new ReasonerTrace(trace)) {
+            new RecordingEpistemicReasoner(new LocalEpistemicReasoner(1000), writer).createModel(constraints);
+        }
+
+        ReplayEpistemicReasoner replay = new ReplayEpistemicReasoner(trace, false);
+        // other constraints
+        assertFalse(replay.createModel(List.of(loc1)));
+        assertEquals(List.of(false), replay.evaluateModalFormulas(List.of(new ModalPropFormula(EpistemicModality.POSSIBLE, loc1))));
+        assertEquals(2, replay.getMisses());
+        assertTrue(replay.createModel(constraints));
+    }
+
+    @Test
+    public void truncatedTrace() throws Exception {
+        try (ReasonerTrace writer = new ReasonerTrace(trace)) {
+            RecordingEpistemicReasoner reasoner = new RecordingEpistemicReasoner(new LocalEpistemicReasoner(1000), writer);
+            reasoner.createModel(constraints);
+            reasoner.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, loc1));
+        }
+
+        // the last record is cut, e.g. by an interrupted run
+        byte[] content = Files.readAllBytes(trace);
+        Files.write(trace, Arrays.copyOf(content, content.length - 3));
+
+        ReplayEpistemicReasoner replay = new ReplayEpistemicReasoner(trace, false);
+        assertTrue(replay.createModel(constraints));
+        assertFalse(replay.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, loc1)));
+        assertEquals(1, replay.getMisses());
+    }
+}
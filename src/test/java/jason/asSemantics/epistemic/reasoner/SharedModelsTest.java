@@ -0,0 +1,98 @@
+package jason.asSemantics.epistemic.reasoner;
+
+import jason.asSemantics.epistemic.DELEvent;
+import jason.asSemantics.epistemic.DELEventModel;
+import jason.asSemantics.epistemic.reasoner.formula.*;
+import jason.asSyntax.ASSyntax;
+import jason.asSyntax.Literal;
+import jason.asSyntax.Pred;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SharedModelsTest {
+
+    private static final int RANGE = 4;
+
+    @After
+    public void tearDown() {
+        SharedModels.clear();
+    }
+
+    private static Formula loc(int i) {
+        return ASSyntax.createLiteral("loc", ASSyntax.createNumber(i)).toPropFormula();
+    }
+
+    /**
+     * @return the constraints of a single location in 1..RANGE.
+     */
+    private static List<Formula> constraints() {
+        List<Formula> constraints = new ArrayList<>();
+        Formula some = loc(1);
+        for (int i = 2; i <= RANGE; i++)
+            some = new OrFormula(some, loc(i));
+        constraints.add(some);
+        for (int i = 1; i <= RANGE; i++)
+            for (int j = i + 1; j <= RANGE; j++)
+                constraints.add(new NotFormula(new AndFormula(loc(i), loc(j))));
+        return constraints;
+    }
+
+    @Test
+    public void sameConstraintsShareTheModel() {
+        var first = new LocalEpistemicReasoner(1000, null, true);
+        var second = new LocalEpistemicReasoner(1000, null, true);
+        assertTrue(first.createModel(constraints()));
+        assertTrue(second.createModel(constraints()));
+
+        assertSame(first.getModel(), second.getModel());
+        assertEquals(1, SharedModels.size());
+        assertEquals(RANGE, first.getModel().size());
+
+        // models that are not shared are created again
+        var own = new LocalEpistemicReasoner(1000);
+        assertTrue(own.createModel(constraints()));
+        assertNotSame(first.getModel(), own.getModel());
+    }
+
+    @Test
+    public void updatesArePerAgent() {
+        var first = new LocalEpistemicReasoner(1000, null, true);
+        var second = new LocalEpistemicReasoner(1000, null, true);
+        assertTrue(first.createModel(constraints()));
+        assertTrue(second.createModel(constraints()));
+        KripkeModel initial = first.getModel();
+
+        // announcing that the location is not 1 only removes worlds: the result is a delta of the shared model
+        assertTrue(first.applyEventModel(new DELEventModel(Set.of(new DELEvent("announce", new NotFormula(loc(1)))))));
+        assertTrue(first.getModel().isDelta());
+        assertEquals(RANGE - 1, first.getModel().size());
+        assertEquals(RANGE - 1, first.getModel().getWorlds().size());
+        assertFalse(first.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, loc(1))));
+
+        // deltas of deltas are masks over the shared model too
+        assertTrue(first.applyEventModel(new DELEventModel(Set.of(new DELEvent("announce", loc(3))))));
+        assertTrue(first.getModel().isDelta());
+        assertTrue(first.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, loc(3))));
+
+        // the other agent and the shared model are not changed
+        assertSame(initial, second.getModel());
+        assertEquals(RANGE, initial.size());
+        assertTrue(second.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, loc(1))));
+        assertFalse(second.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, loc(3))));
+
+        // ontic changes materialise the worlds of the agent
+        DELEvent move = new DELEvent("move", loc(3));
+        move.addPostCondition((PropFormula) loc(3), new PropFormula(new Pred(Literal.LFalse)));
+        move.addPostCondition((PropFormula) loc(4), new PropFormula(new Pred(Literal.LTrue)));
+        assertTrue(first.applyEventModel(new DELEventModel(Set.of(move))));
+        assertFalse(first.getModel().isDelta());
+        assertTrue(first.evaluateFormula(new ModalPropFormula(EpistemicModality.KNOW, loc(4))));
+        assertTrue(second.evaluateFormula(new ModalPropFormula(EpistemicModality.POSSIBLE, loc(3))));
+    }
+}
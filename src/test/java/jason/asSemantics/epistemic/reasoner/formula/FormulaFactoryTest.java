@@ -0,0 +1,43 @@
+package jason.asSemantics.epistemic.reasoner.formula;
+
+import jason.asSyntax.ASSyntax;
+import jason.asSyntax.Pred;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FormulaFactoryTest {
+
+    private static Pred loc(int i) {
+        return new Pred(ASSyntax.createLiteral("loc", ASSyntax.createNumber(i)));
+    }
+
+    @Test
+    public void structurallyEqualFormulasAreShared() {
+        var a = FormulaFactory.implies(FormulaFactory.or(FormulaFactory.prop(loc(1)), FormulaFactory.prop(loc(2))), FormulaFactory.not(FormulaFactory.prop(loc(3))));
+        var b = FormulaFactory.implies(FormulaFactory.or(FormulaFactory.prop(loc(1)), FormulaFactory.prop(loc(2))), FormulaFactory.not(FormulaFactory.prop(loc(3))));
+
+        assertSame(a, b);
+        assertSame(a.getAntecedent(), b.getAntecedent());
+        assertTrue(a.isInterned());
+
+        assertNotSame(FormulaFactory.or(FormulaFactory.prop(loc(1))), FormulaFactory.and(FormulaFactory.prop(loc(1))));
+        assertNotEquals(FormulaFactory.prop(loc(1)), FormulaFactory.prop(loc(2)));
+    }
+
+    @Test
+    public void internFormulaBuiltWithConstructors() {
+        var built = new AndFormula(List.of(new PropFormula(loc(1)), new NotFormula(loc(2))));
+        var interned = FormulaFactory.intern(built);
+
+        assertEquals(built, interned);
+        assertEquals(built.hashCode(), interned.hashCode());
+        assertSame(interned, FormulaFactory.and(FormulaFactory.prop(loc(1)), FormulaFactory.not(FormulaFactory.prop(loc(2)))));
+
+        // children of interned formulas are interned too
+        for (Formula f : interned.getFormulas())
+            assertTrue(f.isInterned());
+    }
+}
@@ -1,5 +1,7 @@
 package test;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -24,7 +26,10 @@ import jason.asSyntax.VarTerm;
 import jason.asSyntax.parser.ParseException;
 import jason.bb.BeliefBase;
 import jason.bb.DefaultBeliefBase;
+import jason.bb.IndexedBB;
 import jason.bb.JDBCPersistentBB;
+import jason.bb.JournalPersistentBB;
+import jason.bb.SnapshotBeliefBase;
 import junit.framework.TestCase;
 
 /** JUnit test case for syntax package */
@@ -127,7 +132,8 @@ public class BeliefBaseTest extends TestCase {
         l4.addTerm(new Structure("6"));
         l4.addAnnot(BeliefBase.TPercept);
         assertTrue(bb.remove(l4));
-        assertEquals(iteratorSize(bb.getCandidateBeliefs(l4, null)), 1);
+        assertEquals(iteratorSize(bb.getCandidateBeliefs(l4, null)), 0); // pos(1,2) does not unify with pos(5,6)
+        assertEquals(iteratorSize(bb.getCandidateBeliefs(l4.getPredicateIndicator())), 1);
         assertEquals(bb.size(), 2);
         assertEquals(iteratorSize(bb.iterator()), 2);
 
@@ -567,6 +573,82 @@ public class BeliefBaseTest extends TestCase {
     }
 
 
+    public void testJournalBB() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        String[] args = new String[] { dir.getAbsolutePath(), "4096", "10" };
+
+        BeliefBase bb = new JournalPersistentBB();
+        bb.init(null, args);
+        assertTrue(bb.add(Literal.parseLiteral("b(1)[source(self)]")));
+        assertTrue(bb.add(1, Literal.parseLiteral("b(2)[source(self)]")));
+        assertTrue(bb.add(Literal.parseLiteral("b(0)[source(self)]")));
+        assertTrue(bb.add(Literal.parseLiteral("b(2)[source(bob),source(percept)]")));
+        assertTrue(bb.add(Literal.parseLiteral("p(a)[source(percept)]")));
+        assertTrue(bb.add(Literal.parseLiteral("ns::c(\"a string\")[source(self)]")));
+        assertTrue(bb.remove(Literal.parseLiteral("b(1)[source(self)]")));
+        for (int i = 0; i < 100; i++) { // more than one checkpoint and segment
+            assertTrue(bb.add(1, Literal.parseLiteral("v(" + i + ")[source(self)]")));
+        }
+        assertTrue(bb.abolish(new PredicateIndicator("v", 1)));
+        assertTrue(bb.add(Literal.parseLiteral("v(last)[source(self)]")));
+        Iterator<Literal> i = bb.getCandidateBeliefs(new PredicateIndicator("b", 1));
+        i.next();
+        i.remove();
+        bb.stop();
+
+        // the beliefs are recovered, but the percepts
+        BeliefBase bb2 = new JournalPersistentBB();
+        bb2.init(null, args);
+        assertEquals(3, bb2.size());
+        assertEquals("[b(2)[source(bob),source(self)]]", bels(bb2.getCandidateBeliefs(new PredicateIndicator("b", 1))).toString());
+        assertNotNull(bb2.contains(Literal.parseLiteral("ns::c(\"a string\")")));
+        assertNotNull(bb2.contains(Literal.parseLiteral("v(last)")));
+        assertNull(bb2.contains(Literal.parseLiteral("p(a)")));
+
+        bb2.clear();
+        bb2.stop();
+        BeliefBase bb3 = new JournalPersistentBB();
+        bb3.init(null, args);
+        assertEquals(0, bb3.size());
+        bb3.stop();
+    }
+
+    public void testJournalBBOldSegment() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        String[] args = new String[] { dir.getAbsolutePath(), "4096", "10" };
+
+        BeliefBase bb = new JournalPersistentBB();
+        bb.init(null, args);
+        assertTrue(bb.add(Literal.parseLiteral("z(1)[source(self)]")));
+        bb.stop();
+        File[] old = dir.listFiles();
+        assertEquals(1, old.length);
+        byte[] oldSegment = Files.readAllBytes(old[0].toPath());
+
+        // z(1) is removed in a segment that is deleted by the next checkpoint
+        BeliefBase bb2 = new JournalPersistentBB();
+        bb2.init(null, args);
+        assertTrue(bb2.remove(Literal.parseLiteral("z(1)[source(self)]")));
+        assertTrue(bb2.add(Literal.parseLiteral("y(1)[source(self)]")));
+        bb2.stop();
+
+        // changes are appended to the segment of the checkpoint
+        BeliefBase bb3 = new JournalPersistentBB();
+        bb3.init(null, args);
+        assertTrue(bb3.add(Literal.parseLiteral("w(1)[source(self)]")));
+        bb3.stop();
+
+        // the oldest segment could not be deleted: the journal is replayed from the last checkpoint
+        Files.write(old[0].toPath(), oldSegment);
+        BeliefBase bb4 = new JournalPersistentBB();
+        bb4.init(null, args);
+        assertEquals(2, bb4.size());
+        assertNull(bb4.contains(Literal.parseLiteral("z(1)")));
+        assertNotNull(bb4.contains(Literal.parseLiteral("y(1)")));
+        assertNotNull(bb4.contains(Literal.parseLiteral("w(1)")));
+        bb4.stop();
+    }
+
     public void testBelBRF() throws RevisionFailedException {
         Agent ag = new Agent();
         ag.initAg();
@@ -650,6 +732,191 @@ public class BeliefBaseTest extends TestCase {
         assertEquals(ag.getBB().size(), c.size());
     }
 
+    public void testRemoveKeepsOrder() {
+        BeliefBase bb = new DefaultBeliefBase();
+        bb.add(1, Literal.parseLiteral("p(2)"));
+        bb.add(1, Literal.parseLiteral("p(3)"));
+        bb.add(Literal.parseLiteral("p(1)"));
+        bb.add(1, Literal.parseLiteral("p(4)"));
+        assertEquals("[p(1), p(2), p(3), p(4)]", bels(bb.getCandidateBeliefs(new PredicateIndicator("p", 1))).toString());
+
+        // removing the first, a middle and the last belief
+        assertTrue(bb.remove(Literal.parseLiteral("p(3)")));
+        assertEquals("[p(1), p(2), p(4)]", bels(bb.getCandidateBeliefs(new PredicateIndicator("p", 1))).toString());
+        assertTrue(bb.remove(Literal.parseLiteral("p(1)")));
+        assertTrue(bb.remove(Literal.parseLiteral("p(4)")));
+        assertEquals("[p(2)]", bels(bb.getCandidateBeliefs(new PredicateIndicator("p", 1))).toString());
+        assertNull(bb.contains(Literal.parseLiteral("p(4)")));
+        assertEquals(1, bb.size());
+
+        bb.add(Literal.parseLiteral("p(1)"));
+        bb.add(1, Literal.parseLiteral("p(3)"));
+        assertEquals("[p(1), p(2), p(3)]", bels(bb.getCandidateBeliefs(new PredicateIndicator("p", 1))).toString());
+
+        // beliefs removed while iterating are skipped, the iteration continues after the current belief
+        Iterator<Literal> i = bb.getCandidateBeliefs(new PredicateIndicator("p", 1));
+        assertEquals("p(1)", i.next().toString());
+        bb.remove(Literal.parseLiteral("p(1)"));
+        bb.remove(Literal.parseLiteral("p(2)"));
+        assertEquals("p(3)", i.next().toString());
+        assertFalse(i.hasNext());
+
+        // removing with the iterator
+        i = bb.getCandidateBeliefs(new PredicateIndicator("p", 1));
+        i.next();
+        i.remove();
+        assertNull(bb.contains(Literal.parseLiteral("p(3)")));
+        assertEquals(0, bb.size());
+    }
+
+    public void testArgumentIndex() {
+        BeliefBase bb = new DefaultBeliefBase();
+        for (int x = 0; x < 20; x++)
+            for (int y = 0; y < 10; y++)
+                bb.add(1, ASSyntax.createLiteral("pos", ASSyntax.createNumber(x), ASSyntax.createNumber(y)));
+
+        // the first argument is indexed after some queries, the results are the same
+        Literal q = Literal.parseLiteral("pos(3,Y)");
+        for (int i = 0; i < 20; i++)
+            assertEquals(10, bels(bb.getCandidateBeliefs(q, new Unifier())).size());
+        assertEquals("[pos(3,0), pos(3,1), pos(3,2)]", bels(bb.getCandidateBeliefs(q, new Unifier())).subList(0, 3).toString());
+
+        // bound by the unifier, and arguments not indexed
+        Unifier u = new Unifier();
+        u.unifies(new VarTerm("X"), ASSyntax.createNumber(5));
+        assertEquals("[pos(5,7)]", bels(bb.getCandidateBeliefs(Literal.parseLiteral("pos(X,7)"), u)).toString());
+        assertTrue(bels(bb.getCandidateBeliefs(Literal.parseLiteral("pos(30,Y)"), new Unifier())).isEmpty());
+        assertEquals(200, bels(bb.getCandidateBeliefs(Literal.parseLiteral("pos(X,Y)"), new Unifier())).size());
+
+        // the index follows additions and removals
+        bb.add(1, Literal.parseLiteral("pos(3,10)"));
+        assertTrue(bb.remove(Literal.parseLiteral("pos(3,0)")));
+        Iterator<Literal> i = bb.getCandidateBeliefs(q, new Unifier());
+        assertEquals("pos(3,1)", i.next().toString());
+        i.remove();
+        List<Literal> l = bels(bb.getCandidateBeliefs(q, new Unifier()));
+        assertEquals(9, l.size());
+        assertEquals("pos(3,10)", l.get(8).toString());
+        assertEquals(199, bb.size());
+
+        // a belief with a non atomic argument disables the index of that argument
+        bb.add(Literal.parseLiteral("pos(f(3),0)"));
+        assertEquals(10, bels(bb.getCandidateBeliefs(q, new Unifier())).size());
+        assertEquals(bb.size(), bels(bb.getCandidateBeliefs(Literal.parseLiteral("pos(f(3),Y)"), new Unifier())).size());
+    }
+
+    public void testIndexedBB() {
+        BeliefBase bb = new IndexedBB(new DefaultBeliefBase());
+        bb.init(null, new String[] { "student(key,_)" });
+        assertTrue(bb.add(Literal.parseLiteral("student(1,a)")));
+        assertTrue(bb.add(Literal.parseLiteral("student(2,b)")));
+        assertTrue(bb.add(1, Literal.parseLiteral("student(1,c)")));
+        assertEquals(2, bb.size());
+        assertNull(bb.contains(Literal.parseLiteral("student(1,a)")));
+        assertEquals("student(1,c)", bb.contains(Literal.parseLiteral("student(1,c)")).toString());
+
+        // candidates by key
+        assertEquals("[student(1,c)]", bels(bb.getCandidateBeliefs(Literal.parseLiteral("student(1,N)"), new Unifier())).toString());
+        Unifier u = new Unifier();
+        u.unifies(new VarTerm("K"), ASSyntax.createNumber(2));
+        assertEquals("[student(2,b)]", bels(bb.getCandidateBeliefs(Literal.parseLiteral("student(K,N)"), u)).toString());
+        assertNull(bb.getCandidateBeliefs(Literal.parseLiteral("student(3,N)"), new Unifier()));
+        assertEquals(2, bels(bb.getCandidateBeliefs(Literal.parseLiteral("student(K,N)"), new Unifier())).size());
+
+        // removing with the iterator
+        Iterator<Literal> i = bb.getCandidateBeliefs(Literal.parseLiteral("student(2,N)"), new Unifier());
+        i.next();
+        i.remove();
+        assertNull(bb.contains(Literal.parseLiteral("student(2,b)")));
+        assertEquals(1, bb.size());
+        assertTrue(bb.add(Literal.parseLiteral("student(2,d)")));
+        assertEquals(2, bb.size());
+
+        // keys that are not atomic are not indexed, but still unique
+        assertTrue(bb.add(Literal.parseLiteral("student(f(3),e)")));
+        assertTrue(bb.add(Literal.parseLiteral("student(f(3),g)")));
+        assertTrue(bb.add(Literal.parseLiteral("student(1,h)")));
+        assertEquals(3, bb.size());
+        assertNull(bb.contains(Literal.parseLiteral("student(1,c)")));
+        assertNotNull(bb.contains(Literal.parseLiteral("student(1,h)")));
+        assertNotNull(bb.contains(Literal.parseLiteral("student(f(3),g)")));
+
+        // index 0 adds at the beginning, other indexes at the end
+        assertTrue(bb.add(0, Literal.parseLiteral("student(4,i)")));
+        assertTrue(bb.add(1, Literal.parseLiteral("student(5,j)")));
+        List<Literal> all = bels(bb.getCandidateBeliefs(new PredicateIndicator("student", 2)));
+        assertEquals(5, all.size());
+        assertEquals("student(4,i)", all.get(0).toString());
+        assertEquals("student(5,j)", all.get(4).toString());
+    }
+
+    public void testSnapshotBB() {
+        SnapshotBeliefBase bb = new SnapshotBeliefBase();
+        assertTrue(bb.add(Literal.parseLiteral("b(2)[source(self)]")));
+        assertTrue(bb.add(Literal.parseLiteral("b(1)[source(self)]")));
+        assertTrue(bb.add(1, Literal.parseLiteral("b(3)[source(self)]")));
+        assertTrue(bb.add(Literal.parseLiteral("ns::c[source(self)]")));
+        assertEquals(4, bb.size());
+        assertEquals("[b(1)[source(self)], b(2)[source(self)], b(3)[source(self)]]", bels(bb.getCandidateBeliefs(new PredicateIndicator("b", 1))).toString());
+        assertEquals(2, bb.getNameSpaces().size());
+
+        // changes do not affect the previous versions
+        BeliefBase s = bb.getSnapshot();
+        assertTrue(bb.add(Literal.parseLiteral("b(2)[source(bob),source(percept)]")));
+        assertFalse(bb.add(Literal.parseLiteral("b(2)[source(bob)]")));
+        assertTrue(bb.remove(Literal.parseLiteral("b(1)[source(self)]")));
+        assertTrue(bb.abolish(new Atom("ns"), new PredicateIndicator("c", 0)));
+        assertEquals(2, bb.size());
+        assertEquals("[b(2)[source(bob),source(percept),source(self)], b(3)[source(self)]]", bels(bb.getCandidateBeliefs(new PredicateIndicator("b", 1))).toString());
+        assertEquals(1, bels(bb.getPercepts()).size());
+
+        assertEquals(4, s.size());
+        assertEquals("b(2)[source(self)]", s.contains(Literal.parseLiteral("b(2)")).toString());
+        assertEquals("[b(1)[source(self)], b(2)[source(self)], b(3)[source(self)]]", bels(s.getCandidateBeliefs(new PredicateIndicator("b", 1))).toString());
+        assertNotNull(s.contains(Literal.parseLiteral("ns::c")));
+        assertEquals(0, bels(s.getPercepts()).size());
+        try {
+            s.add(Literal.parseLiteral("d"));
+            fail("snapshots are read-only");
+        } catch (UnsupportedOperationException e) { }
+
+        // removing the percept annot keeps the other sources
+        Iterator<Literal> i = bb.getPercepts();
+        i.next();
+        i.remove();
+        assertEquals("b(2)[source(bob),source(self)]", bb.contains(Literal.parseLiteral("b(2)")).toString());
+
+        // removing with the iterator
+        i = bb.getCandidateBeliefs(Literal.parseLiteral("b(X)"), new Unifier());
+        i.next();
+        i.remove();
+        assertEquals(1, bb.size());
+        assertEquals("[b(3)[source(self)]]", bels(bb.iterator()).toString());
+
+        // many beliefs, in order
+        for (int n = 0; n < 1000; n++) {
+            assertTrue(bb.add(n % 2 == 0 ? 0 : 1, Literal.parseLiteral("v(" + n + ")")));
+        }
+        for (int n = 0; n < 1000; n += 3) {
+            assertTrue(bb.remove(Literal.parseLiteral("v(" + n + ")")));
+        }
+        List<Literal> vs = bels(bb.getCandidateBeliefs(new PredicateIndicator("v", 1)));
+        assertEquals(bb.size() - 1, vs.size());
+        assertEquals("v(998)", vs.get(0).toString());
+        assertEquals("v(997)", vs.get(vs.size() - 1).toString());
+
+        bb.clear();
+        assertEquals(0, bb.size());
+        assertEquals(0, bels(bb.iterator()).size());
+    }
+
+    private List<Literal> bels(Iterator<Literal> i) {
+        List<Literal> bels = new ArrayList<>();
+        while (i != null && i.hasNext())
+            bels.add(i.next());
+        return bels;
+    }
+
     public void testBUF() {
         Agent ag = new Agent();
         ag.initAg();
@@ -860,6 +1127,51 @@ public class BeliefBaseTest extends TestCase {
         ag.getBB().add(1,ASSyntax.parseRule("tower([X,Y|T]) :- on(X,Y) & tower([Y|T])."));
     }
 
+    public void testQueryCacheInvalidation() throws ParseException {
+        Agent ag = new Agent();
+        ag.initAg();
+        ag.getTS().getSettings().setQueryCache(true);
+        ag.initAg();
+
+        ag.getBB().add(1,Literal.parseLiteral("q(1)"));
+        ag.getBB().add(1,Literal.parseLiteral("r(a)"));
+        ag.getBB().add(1,ASSyntax.parseRule("p(X) :- q(X) & X < 10."));
+        ag.getBB().add(1,ASSyntax.parseRule("n(N) :- .count(q(_),N)."));
+
+        Literal q = ASSyntax.parseLiteral("p(X)");
+        assertEquals(1, iteratorSize(q.logicalConsequence(ag, new Unifier())));
+        assertEquals(1, iteratorSize(ASSyntax.parseLiteral("r(Y)").logicalConsequence(ag, new Unifier())));
+        assertEquals(3, ag.getQueryCache().size()); // p(X), q(X) and r(Y)
+
+        // rules with internal actions are not cached
+        assertEquals(1, iteratorSize(ASSyntax.parseLiteral("n(N)").logicalConsequence(ag, new Unifier())));
+        assertEquals(3, ag.getQueryCache().size());
+
+        // only the queries that depend on q are dropped
+        ag.getBB().add(1,Literal.parseLiteral("q(2)"));
+        assertEquals(1, ag.getQueryCache().size());
+        assertEquals(2, iteratorSize(q.logicalConsequence(ag, new Unifier())));
+        assertEquals(3, ag.getQueryCache().size());
+        assertEquals(2, iteratorSize(q.logicalConsequence(ag, new Unifier())));
+
+        assertTrue(ag.getBB().remove(Literal.parseLiteral("q(1)")));
+        assertEquals("[p(2)]", answers(q, ag).toString());
+
+        Iterator<Literal> i = ag.getBB().getCandidateBeliefs(new PredicateIndicator("q", 1));
+        i.next();
+        i.remove();
+        assertEquals("[]", answers(q, ag).toString());
+        assertEquals("[r(a)]", answers(ASSyntax.parseLiteral("r(Y)"), ag).toString());
+    }
+
+    private List<Literal> answers(Literal q, Agent ag) {
+        List<Literal> r = new ArrayList<>();
+        Iterator<Unifier> i = q.logicalConsequence(ag, new Unifier());
+        while (i.hasNext())
+            r.add((Literal)q.capply(i.next()));
+        return r;
+    }
+
     public void testQueryCacheRR() throws ParseException {
         Agent ag = new Agent();
         ag.initAg();